@@ -4,6 +4,8 @@ import com.learn.stream.basic.BasicStreamOperations;
 import com.learn.stream.intermediate.IntermediateStreamOperations;
 import com.learn.stream.advanced.AdvancedStreamOperations;
 import com.learn.stream.example.ComprehensiveExample;
+import com.learn.stream.monitor.ExampleRuns;
+import com.learn.stream.monitor.metrics.MetricsServer;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -518,7 +520,7 @@ public class StreamAPIGUI extends JFrame {
                 printHeader(exampleName + " 示例运行结果");
                 
                 // 运行示例
-                exampleCode.run();
+                ExampleRuns.runInstrumented(exampleName, "gui", exampleCode::run);
                 
                 // 显示完成信息
                 printFooter(exampleName + " 示例运行完成!");
@@ -562,7 +564,7 @@ public class StreamAPIGUI extends JFrame {
                     progressBar.setValue((i+1) * 100 / examples.length);
                     
                     printSectionSeparator(examples[i]);
-                    exampleCodes[i].run();
+                    ExampleRuns.runInstrumented(examples[i], "gui", exampleCodes[i]::run);
                     
                     if (i < examples.length - 1) {
                         printPause();
@@ -805,6 +807,11 @@ public class StreamAPIGUI extends JFrame {
      * 主方法
      */
     public static void main(String[] args) {
+        // 设置了 -Dmetrics.port 时启动本机指标端点，GUI运行期间可以被Prometheus抓取
+        MetricsServer metrics = MetricsServer.startFromSystemProperty();
+        if (metrics != null) {
+            System.out.println("指标端点: " + metrics.getUrl());
+        }
         SwingUtilities.invokeLater(() -> {
             StreamAPIGUI gui = new StreamAPIGUI();
             gui.setVisible(true);
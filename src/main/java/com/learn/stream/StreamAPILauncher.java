@@ -1,9 +1,13 @@
 package com.learn.stream;
 
 import com.learn.stream.basic.BasicStreamOperations;
+import com.learn.stream.cli.BatchRunner;
+import com.learn.stream.cli.CommandLine;
 import com.learn.stream.intermediate.IntermediateStreamOperations;
 import com.learn.stream.advanced.AdvancedStreamOperations;
 import com.learn.stream.example.ComprehensiveExample;
+import com.learn.stream.monitor.ExampleRuns;
+import com.learn.stream.monitor.metrics.MetricsServer;
 
 /**
  * Stream API学习案例启动器
@@ -12,6 +16,15 @@ import com.learn.stream.example.ComprehensiveExample;
 public class StreamAPILauncher {
     
     public static void main(String[] args) {
+        // 带 -- 选项时使用非交互式命令行，不输出横幅，便于脚本解析结果
+        if (CommandLine.isCommandLine(args)) {
+            int status = BatchRunner.run(args);
+            if (status != 0) {
+                System.exit(status);
+            }
+            return;
+        }
+        
         System.out.println("╔══════════════════════════════════════════════════════════════════╗");
         System.out.println("║              Java Stream API 学习案例启动器                     ║");
         System.out.println("║                                                                  ║");
@@ -20,12 +33,25 @@ public class StreamAPILauncher {
         System.out.println("╚══════════════════════════════════════════════════════════════════╝");
         System.out.println();
         
-        if (args.length == 0) {
-            // 如果没有参数，显示菜单
-            showMainMenu();
-        } else {
-            // 如果有参数，直接运行指定示例
-            runExample(args[0]);
+        // 设置了 -Dmetrics.port 时启动本机指标端点，供Prometheus抓取
+        MetricsServer metrics = MetricsServer.startFromSystemProperty();
+        if (metrics != null) {
+            System.out.println("📈 指标端点: " + metrics.getUrl() + "\n");
+        }
+        
+        try {
+            if (args.length == 0) {
+                // 如果没有参数，显示菜单
+                showMainMenu();
+            } else {
+                // 如果有参数，直接运行指定示例
+                runExample(args[0]);
+            }
+        } finally {
+            // HTTP服务的分发线程不是守护线程，运行结束后关闭端点，程序才能正常退出
+            if (metrics != null) {
+                metrics.close();
+            }
         }
     }
     
@@ -85,7 +111,7 @@ public class StreamAPILauncher {
         System.out.println("=".repeat(80) + "\n");
         
         try {
-            BasicStreamOperations.main(new String[]{});
+            ExampleRuns.runInstrumented("basic", "launcher", () -> BasicStreamOperations.main(new String[]{}));
             System.out.println("\n✅ 基础操作示例运行完成!");
         } catch (Exception e) {
             System.err.println("❌ 运行基础操作示例时出错: " + e.getMessage());
@@ -102,7 +128,7 @@ public class StreamAPILauncher {
         System.out.println("=".repeat(80) + "\n");
         
         try {
-            IntermediateStreamOperations.main(new String[]{});
+            ExampleRuns.runInstrumented("intermediate", "launcher", () -> IntermediateStreamOperations.main(new String[]{}));
             System.out.println("\n✅ 中级操作示例运行完成!");
         } catch (Exception e) {
             System.err.println("❌ 运行中级操作示例时出错: " + e.getMessage());
@@ -119,7 +145,7 @@ public class StreamAPILauncher {
         System.out.println("=".repeat(80) + "\n");
         
         try {
-            AdvancedStreamOperations.main(new String[]{});
+            ExampleRuns.runInstrumented("advanced", "launcher", () -> AdvancedStreamOperations.main(new String[]{}));
             System.out.println("\n✅ 高级操作示例运行完成!");
         } catch (Exception e) {
             System.err.println("❌ 运行高级操作示例时出错: " + e.getMessage());
@@ -136,7 +162,7 @@ public class StreamAPILauncher {
         System.out.println("=".repeat(80) + "\n");
         
         try {
-            ComprehensiveExample.main(new String[]{});
+            ExampleRuns.runInstrumented("comprehensive", "launcher", () -> ComprehensiveExample.main(new String[]{}));
             System.out.println("\n✅ 综合应用示例运行完成!");
         } catch (Exception e) {
             System.err.println("❌ 运行综合应用示例时出错: " + e.getMessage());
@@ -207,6 +233,7 @@ public class StreamAPILauncher {
             default:
                 System.out.println("未知的示例类型: " + exampleName);
                 System.out.println("支持的示例类型: basic, intermediate, advanced, comprehensive, all");
+                System.out.println("更多选项请使用 --help 查看");
                 break;
         }
     }
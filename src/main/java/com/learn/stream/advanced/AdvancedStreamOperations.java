@@ -1,7 +1,16 @@
 package com.learn.stream.advanced;
 
+import com.learn.stream.cache.SnapshotStore;
+import com.learn.stream.compile.FusedIntPipeline;
+import com.learn.stream.compile.PipelineCompiler;
+import com.learn.stream.data.StudentDataGenerator;
+import com.learn.stream.grouping.PartitionedGrouping;
+import com.learn.stream.index.CollationKeyCache;
 import com.learn.stream.model.Student;
 import com.learn.stream.model.Course;
+import com.learn.stream.monitor.AllocationProfiler;
+import com.learn.stream.monitor.InstrumentedStream;
+import com.learn.stream.perf.MicroBenchmark;
 
 import java.util.*;
 import java.util.function.*;
@@ -19,27 +28,35 @@ public class AdvancedStreamOperations {
         System.out.println("=== Stream API高级操作示例 ===\n");
         
         // 1. 自定义函数式接口
+        AllocationProfiler.section("demonstrateCustomFunctionalInterfaces");
         demonstrateCustomFunctionalInterfaces();
         
         // 2. 状态操作 (peek, peek复杂用法)
+        AllocationProfiler.section("demonstrateStatefulOperations");
         demonstrateStatefulOperations();
         
         // 3. 自定义Collector
+        AllocationProfiler.section("demonstrateCustomCollector");
         demonstrateCustomCollector();
         
         // 4. 异常处理在Stream中的使用
+        AllocationProfiler.section("demonstrateExceptionHandling");
         demonstrateExceptionHandling();
         
         // 5. 无限Stream
+        AllocationProfiler.section("demonstrateInfiniteStreams");
         demonstrateInfiniteStreams();
         
         // 6. 高级收集操作 (joining, partitioningBy)
+        AllocationProfiler.section("demonstrateAdvancedCollecting");
         demonstrateAdvancedCollecting();
         
         // 7. Stream链式操作
+        AllocationProfiler.section("demonstrateStreamChaining");
         demonstrateStreamChaining();
         
         // 8. 性能优化技巧
+        AllocationProfiler.section("demonstratePerformanceOptimization");
         demonstratePerformanceOptimization();
     }
     
@@ -102,7 +119,16 @@ public class AdvancedStreamOperations {
                 .map(Student::getName)
                 .peek(name -> System.out.println("  映射后: " + name))
                 .collect(Collectors.toList());
-        
+
+        // 使用InstrumentedStream统计各阶段，不在管道中输出，开销低且不改变管道行为
+        System.out.println("\n  使用InstrumentedStream统计各阶段:");
+        InstrumentedStream<Student> instrumented = InstrumentedStream.of(students.stream(), "高GPA学生姓名");
+        instrumented.filter(student -> student.getGpa() > 3.5)
+                .map(Student::getName)
+                .sorted()
+                .collect(Collectors.toList());
+        System.out.print(instrumented.getReport());
+
         // 使用peek修改对象状态（注意：这在并行Stream中可能导致问题）
         System.out.println("\n  使用peek修改状态:");
         students.stream()
@@ -120,7 +146,56 @@ public class AdvancedStreamOperations {
                 student.setName(student.getName().replace("*", ""));
             }
         });
-        
+
+        // 使用不可变快照：修改发布为新版本，正在读旧版本的Stream不受影响
+        System.out.println("\n  使用不可变快照代替原地修改:");
+        SnapshotStore<Student> store = SnapshotStore.ofStudents("学生", students);
+        SnapshotStore.Snapshot<Student> before = store.snapshot();
+        SnapshotStore.Snapshot<Student> after = store.updateIf(student -> student.getGpa() > 4.0, student -> {
+            student.setName(student.getName() + "*");
+            return student;
+        });
+        System.out.println("    版本" + after.getVersion() + " 优秀学生: " + after.stream()
+                .map(Student::getName)
+                .filter(name -> name.endsWith("*"))
+                .collect(Collectors.toList()));
+        System.out.println("    版本" + before.getVersion() + " 中带*的学生数: "
+                + before.stream().filter(student -> student.getName().endsWith("*")).count()
+                + "，原列表带*的学生数: " + students.stream().filter(student -> student.getName().endsWith("*")).count());
+
+        // 写线程每批把所有学生年龄加1并整体发布，读线程检查每个快照中的增量是否一致
+        SnapshotStore.Snapshot<Student> base = store.snapshot();
+        int batches = 200;
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < batches; i++) {
+                store.updateIf(student -> true, student -> {
+                    student.setAge(student.getAge() + 1);
+                    return student;
+                });
+            }
+        }, "snapshot-writer");
+        writer.start();
+        long checked = 0;
+        long torn = 0;
+        while (writer.isAlive() || checked == 0) {
+            SnapshotStore.Snapshot<Student> snapshot = store.snapshot();
+            long distinctDeltas = IntStream.range(0, snapshot.size())
+                    .map(i -> snapshot.get(i).getAge() - base.get(i).getAge())
+                    .distinct()
+                    .count();
+            if (distinctDeltas != 1) {
+                torn++;
+            }
+            checked++;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("    并发读取期间发布了" + batches + "个版本，读到的快照都是完整版本: " + (torn == 0)
+                + "，最新版本号: " + store.getVersion());
+
         System.out.println();
     }
     
@@ -316,8 +391,8 @@ public class AdvancedStreamOperations {
                     else level = "不错";
                     return String.format("%s(%s, %s)", student.getName(), student.getMajor(), level);
                 })
-                // 排序：按姓名排序
-                .sorted()
+                // 排序：按姓名的拼音顺序排序（排序键按字符串缓存）
+                .sorted(CollationKeyCache.chinese())
                 // 限制：只取前5个
                 .limit(5)
                 // 收集结果
@@ -356,7 +431,20 @@ public class AdvancedStreamOperations {
         groupedAndProcessed.forEach((major, studentsList) -> {
             System.out.println("    " + major + ": " + studentsList);
         });
-        
+
+        // 并行时使用两阶段分区分组：先按键哈希分散，再各分区独立聚合，避免逐层合并Map
+        Map<String, List<String>> partitioned = students.parallelStream()
+                .filter(student -> student.getAge() >= 20)
+                .sorted(Comparator.comparingDouble(Student::getGpa).reversed())
+                .collect(PartitionedGrouping.groupingBy(
+                        Student::getMajor,
+                        LinkedHashMap::new,
+                        Collectors.mapping(student -> student.getName() + "(" + student.getGpa() + ")",
+                                Collectors.toList())));
+        System.out.println("\n  并行分区分组: " + partitioned);
+        System.out.println("    键顺序与组内顺序与顺序执行一致: " + (partitioned.equals(groupedAndProcessed)
+                && new ArrayList<>(partitioned.keySet()).equals(new ArrayList<>(groupedAndProcessed.keySet()))));
+
         System.out.println();
     }
     
@@ -371,17 +459,21 @@ public class AdvancedStreamOperations {
                 .boxed()
                 .collect(Collectors.toList());
         
+        // 所有耗时均由MicroBenchmark测量：nanoTime计时、预热后取多个样本的中位数
+        MicroBenchmark benchmark = MicroBenchmark.defaults();
+        
         // 1. 尽早过滤 (early filtering)
         System.out.println("  尽早过滤 vs 延迟过滤:");
         
-        long start = System.currentTimeMillis();
         long countEarly = largeDataSet.stream()
                 .filter(n -> n > 50000) // 尽早过滤
                 .filter(n -> n % 2 == 0)
                 .count();
-        long timeEarly = System.currentTimeMillis() - start;
+        MicroBenchmark.Result early = benchmark.run("尽早过滤", () -> largeDataSet.stream()
+                .filter(n -> n > 50000)
+                .filter(n -> n % 2 == 0)
+                .count());
         
-        start = System.currentTimeMillis();
         long countLate = largeDataSet.stream()
                 .filter(n -> {
                     if (n > 50000 && n % 2 == 0) {
@@ -390,28 +482,46 @@ public class AdvancedStreamOperations {
                     return false;
                 })
                 .count();
-        long timeLate = System.currentTimeMillis() - start;
+        MicroBenchmark.Result late = benchmark.run("延迟过滤", () -> largeDataSet.stream()
+                .filter(n -> {
+                    if (n > 50000 && n % 2 == 0) {
+                        return true;
+                    }
+                    return false;
+                })
+                .count());
         
-        System.out.println("    尽早过滤: " + countEarly + "个数字，耗时" + timeEarly + "ms");
-        System.out.println("    延迟过滤: " + countLate + "个数字，耗时" + timeLate + "ms");
+        System.out.println("    尽早过滤: " + countEarly + "个数字");
+        System.out.println("      " + early);
+        System.out.println("    延迟过滤: " + countLate + "个数字");
+        System.out.println("      " + late);
         
         // 2. 使用合适类型的Stream
         System.out.println("\n  数值Stream优化:");
-        start = System.currentTimeMillis();
         int sumIntStream = IntStream.range(1, 100000)
                 .filter(n -> n % 2 == 0)
                 .sum();
-        long timeIntStream = System.currentTimeMillis() - start;
+        MicroBenchmark.Result intStream = benchmark.runWithBlackhole("IntStream", blackhole -> blackhole.consume(
+                IntStream.range(1, 100000)
+                        .filter(n -> n % 2 == 0)
+                        .sum()));
         
-        start = System.currentTimeMillis();
         int sumBoxedStream = largeDataSet.stream()
                 .filter(n -> n % 2 == 0)
                 .mapToInt(Integer::intValue)
                 .sum();
-        long timeBoxedStream = System.currentTimeMillis() - start;
-        
-        System.out.println("    IntStream: 和=" + sumIntStream + ", 耗时" + timeIntStream + "ms");
-        System.out.println("    boxed Stream: 和=" + sumBoxedStream + ", 耗时" + timeBoxedStream + "ms");
+        MicroBenchmark.Result boxedStream = benchmark.runWithBlackhole("boxed Stream", blackhole -> blackhole.consume(
+                largeDataSet.stream()
+                        .filter(n -> n % 2 == 0)
+                        .mapToInt(Integer::intValue)
+                        .sum()));
+        
+        System.out.println("    IntStream: 和=" + sumIntStream);
+        System.out.println("      " + intStream);
+        System.out.println("    boxed Stream: 和=" + sumBoxedStream);
+        System.out.println("      " + boxedStream);
+        System.out.println("    IntStream相对boxed Stream加速: "
+                + String.format("%.2f", intStream.speedupOver(boxedStream)) + "倍");
         
         // 3. 并行Stream的使用场景
         System.out.println("\n  并行Stream性能对比:");
@@ -421,25 +531,57 @@ public class AdvancedStreamOperations {
             List<Integer> data = IntStream.range(1, size).boxed().collect(Collectors.toList());
             
             // 顺序处理
-            start = System.currentTimeMillis();
-            long sumSequential = data.stream()
-                    .filter(n -> n % 3 == 0)
-                    .mapToLong(Integer::longValue)
-                    .sum();
-            long timeSequential = System.currentTimeMillis() - start;
+            MicroBenchmark.Result sequential = benchmark.runWithBlackhole("顺序", blackhole -> blackhole.consume(
+                    data.stream()
+                            .filter(n -> n % 3 == 0)
+                            .mapToLong(Integer::longValue)
+                            .sum()));
             
             // 并行处理
-            start = System.currentTimeMillis();
-            long sumParallel = data.parallelStream()
-                    .filter(n -> n % 3 == 0)
-                    .mapToLong(Integer::longValue)
-                    .sum();
-            long timeParallel = System.currentTimeMillis() - start;
+            MicroBenchmark.Result parallel = benchmark.runWithBlackhole("并行", blackhole -> blackhole.consume(
+                    data.parallelStream()
+                            .filter(n -> n % 3 == 0)
+                            .mapToLong(Integer::longValue)
+                            .sum()));
             
             System.out.println("    数据量" + size + ":");
-            System.out.println("      顺序: " + timeSequential + "ms, 并行: " + timeParallel + "ms");
+            System.out.println("      顺序: " + MicroBenchmark.Result.formatNanos(sequential.getMedian())
+                    + ", 并行: " + MicroBenchmark.Result.formatNanos(parallel.getMedian())
+                    + ", 加速比: " + String.format("%.2f", parallel.speedupOver(sequential)));
         }
-        
+
+        // 4. 使用合成数据：同一种子下顺序和并行生成的结果完全一致
+        System.out.println("\n  合成学生数据 (seed=42, 100000行):");
+        StudentDataGenerator generator = new StudentDataGenerator(42);
+        Map<String, Long> majorCountSequential = generator.students(100000)
+                .collect(Collectors.groupingBy(Student::getMajor, TreeMap::new, Collectors.counting()));
+        Map<String, Long> majorCountParallel = generator.students(100000)
+                .parallel()
+                .collect(Collectors.groupingBy(Student::getMajor, TreeMap::new, Collectors.counting()));
+        System.out.println("    专业分布: " + majorCountSequential);
+        System.out.println("    并行生成结果一致: " + majorCountSequential.equals(majorCountParallel));
+
+        // 5. 编译融合管道：整条filter/map/归约链生成为一个专用循环，lambda调用点不与其他管道共享
+        System.out.println("\n  编译融合管道:");
+        long fusedCount = FusedIntPipeline.of(largeDataSet)
+                .filter(n -> n > 50000)
+                .filter(n -> n % 2 == 0)
+                .count();
+        long fusedSum = FusedIntPipeline.of(largeDataSet)
+                .filter(n -> n % 3 == 0)
+                .mapToLong(n -> n)
+                .sum();
+        MicroBenchmark.Result fused = benchmark.runWithBlackhole("融合计数", blackhole -> blackhole.consume(
+                FusedIntPipeline.of(largeDataSet)
+                        .filter(n -> n > 50000)
+                        .filter(n -> n % 2 == 0)
+                        .count()));
+        System.out.println("    融合计数=" + fusedCount + " (Stream=" + countEarly + "), 融合求和=" + fusedSum);
+        System.out.println("      " + fused);
+        System.out.println("    相对Stream的加速比: " + String.format("%.2f", fused.speedupOver(early)));
+        System.out.println("    已生成内核: " + PipelineCompiler.getCompiledCount() + "个, 缓存命中: "
+                + PipelineCompiler.getCacheHits() + "次 (第1次执行包含生成类的开销，之后直接复用)");
+
         System.out.println();
     }
     
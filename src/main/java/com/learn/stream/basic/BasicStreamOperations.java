@@ -1,8 +1,13 @@
 package com.learn.stream.basic;
 
+import com.learn.stream.external.ExternalSort;
+import com.learn.stream.external.SpillCodec;
+import com.learn.stream.index.CollationKeyCache;
 import com.learn.stream.model.Student;
+import com.learn.stream.monitor.AllocationProfiler;
 
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Stream;
 import java.util.stream.Collectors;
@@ -17,21 +22,27 @@ public class BasicStreamOperations {
         System.out.println("=== Stream API基础操作示例 ===\n");
         
         // 1. 创建Stream的方式
+        AllocationProfiler.section("demonstrateStreamCreation");
         demonstrateStreamCreation();
         
         // 2. 过滤操作 (filter)
+        AllocationProfiler.section("demonstrateFilterOperation");
         demonstrateFilterOperation();
         
         // 3. 映射操作 (map, flatMap)
+        AllocationProfiler.section("demonstrateMapOperation");
         demonstrateMapOperation();
         
         // 4. 排序操作 (sorted)
+        AllocationProfiler.section("demonstrateSortedOperation");
         demonstrateSortedOperation();
         
         // 5. 查找和匹配操作 (findFirst, anyMatch, allMatch)
+        AllocationProfiler.section("demonstrateFindAndMatchOperations");
         demonstrateFindAndMatchOperations();
         
         // 6. 收集操作 (collect)
+        AllocationProfiler.section("demonstrateCollectOperation");
         demonstrateCollectOperation();
     }
     
@@ -142,19 +153,30 @@ public class BasicStreamOperations {
                 .sorted((s1, s2) -> Double.compare(s2.getGpa(), s1.getGpa()))
                 .forEach(student -> System.out.println("    - " + student.getName() + ", GPA: " + student.getGpa()));
         
-        // 先按专业排序，再按年龄排序
+        // 按姓名排序：String.compareTo比较的是UTF-16编码，中文应按拼音排序
+        CollationKeyCache collation = CollationKeyCache.chinese();
+        System.out.println("\n  按姓名排序 (编码顺序 / 拼音顺序):");
+        System.out.println("    " + students.stream().map(Student::getName).sorted().collect(Collectors.toList())
+                + " / " + collation.sort(students, Student::getName).stream()
+                        .map(Student::getName).collect(Collectors.toList()));
+        
+        // 先按专业（拼音顺序）排序，再按年龄排序
+        // 大数据量下用归一化键基数排序代替多层比较器，见命令行负载 rank-gpa-major-age-radix
         System.out.println("\n  按专业和年龄排序:");
         students.stream()
-                .sorted((s1, s2) -> {
-                    int majorCompare = s1.getMajor().compareTo(s2.getMajor());
-                    if (majorCompare != 0) {
-                        return majorCompare;
-                    }
-                    return Integer.compare(s1.getAge(), s2.getAge());
-                })
+                .sorted(Comparator.comparing(Student::getMajor, CollationKeyCache.chinese())
+                        .thenComparingInt(Student::getAge))
                 .forEach(student -> System.out.println("    - " + student.getMajor() + " - " + 
                                                      student.getName() + ", " + student.getAge() + "岁"));
         
+        // 外部排序：内存中每次只排序2个元素，其余写入临时文件后归并（适合超出堆内存的数据）
+        System.out.println("\n  外部排序 (按GPA降序):");
+        ExternalSort<Student> externalSort = new ExternalSort<>(
+                SpillCodec.students(), (s1, s2) -> Double.compare(s2.getGpa(), s1.getGpa()), 2);
+        try (Stream<Student> sortedStudents = externalSort.sorted(students.stream())) {
+            sortedStudents.forEach(student -> System.out.println("    - " + student.getName() + ", GPA: " + student.getGpa()));
+        }
+        
         System.out.println();
     }
     
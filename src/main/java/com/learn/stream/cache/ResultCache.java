@@ -0,0 +1,185 @@
+package com.learn.stream.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 统计结果缓存
+ * 以 (数据集, 查询ID, 数据集版本) 为键缓存分组、平均值、分布等报表结果，
+ * 数据集发生变化后版本号改变，旧结果自动失效；容量达到上限时按LRU或LFU淘汰。
+ *
+ * <pre>
+ * Map&lt;String, Long&gt; distribution = cache.get("majorDistribution", students,
+ *         data -&gt; data.stream().collect(Collectors.groupingBy(Student::getMajor, Collectors.counting())));
+ * </pre>
+ */
+public class ResultCache {
+
+    /**
+     * 淘汰策略
+     */
+    public enum EvictionPolicy {
+        /** 最近最少使用 */
+        LRU,
+        /** 最不经常使用，使用次数相同时淘汰最久未访问的 */
+        LFU
+    }
+
+    private final int maxEntries;
+    private final EvictionPolicy policy;
+    // accessOrder=true：迭代顺序即从最久未访问到最近访问
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ResultCache(int maxEntries, EvictionPolicy policy) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("缓存容量必须大于0: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.policy = Objects.requireNonNull(policy);
+    }
+
+    /**
+     * 获取查询结果，缓存中没有当前版本的结果时调用query计算并缓存
+     * 计算在锁外进行，并发的相同查询可能各算一次，但结果一致
+     */
+    @SuppressWarnings("unchecked")
+    public <T, R> R get(String queryId, VersionedDataset<T> dataset, Function<? super VersionedDataset<T>, R> query) {
+        long version = dataset.getVersion();
+        Key key = new Key(dataset.getName(), queryId, version);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                entry.frequency++;
+                hits.increment();
+                return (R) entry.value;
+            }
+        }
+        misses.increment();
+        R value = query.apply(dataset);
+        synchronized (this) {
+            // 计算期间数据集可能已被修改，只缓存仍然有效的结果
+            if (dataset.getVersion() == version) {
+                invalidateOlderVersions(key);
+                entries.put(key, new Entry(value));
+                evictIfNeeded();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 删除某个数据集的所有缓存结果
+     */
+    public synchronized void invalidate(VersionedDataset<?> dataset) {
+        Iterator<Key> iterator = entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().dataset.equals(dataset.getName())) {
+                iterator.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+    public long getInvalidations() { return invalidations.sum(); }
+
+    public double getHitRate() {
+        long total = getHits() + getMisses();
+        return total > 0 ? (double) getHits() / total : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResultCache{policy=%s, size=%d/%d, hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d, invalidations=%d}",
+                policy, size(), maxEntries, getHits(), getMisses(), getHitRate() * 100, getEvictions(), getInvalidations());
+    }
+
+    // 同一查询的旧版本结果已不可能再命中，立即清理而不是等待淘汰
+    private void invalidateOlderVersions(Key key) {
+        Iterator<Key> iterator = entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            Key existing = iterator.next();
+            if (existing.sameQuery(key) && existing.version < key.version) {
+                iterator.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    private void evictIfNeeded() {
+        while (entries.size() > maxEntries) {
+            Key victim = policy == EvictionPolicy.LRU ? entries.keySet().iterator().next() : leastFrequent();
+            entries.remove(victim);
+            evictions.increment();
+        }
+    }
+
+    private Key leastFrequent() {
+        Key victim = null;
+        long minFrequency = Long.MAX_VALUE;
+        for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+            if (e.getValue().frequency < minFrequency) {
+                minFrequency = e.getValue().frequency;
+                victim = e.getKey();
+            }
+        }
+        return victim;
+    }
+
+    private static final class Key {
+        final String dataset;
+        final String queryId;
+        final long version;
+
+        Key(String dataset, String queryId, long version) {
+            this.dataset = dataset;
+            this.queryId = queryId;
+            this.version = version;
+        }
+
+        boolean sameQuery(Key other) {
+            return dataset.equals(other.dataset) && queryId.equals(other.queryId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return version == key.version && dataset.equals(key.dataset) && queryId.equals(key.queryId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dataset, queryId, version);
+        }
+    }
+
+    private static final class Entry {
+        final Object value;
+        long frequency = 1;
+
+        Entry(Object value) {
+            this.value = value;
+        }
+    }
+}
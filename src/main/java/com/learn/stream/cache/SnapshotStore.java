@@ -0,0 +1,149 @@
+package com.learn.stream.cache;
+
+import com.learn.stream.collections.PersistentVector;
+import com.learn.stream.model.Student;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * 发布不可变快照的数据集
+ * 数据保存在 {@link PersistentVector} 中，当前版本通过 AtomicReference 发布。
+ * 读者取得的 {@link Snapshot} 永远不会再改变，可以在任意线程中无锁地流式读取，不会看到写了一半的数据；
+ * 写者在当前版本的基础上构造下一个版本（每改一个元素只复制 log32(n) 个节点），再用CAS发布。
+ *
+ * 与 {@link VersionedDataset} 不同，元素不会被原地修改：写入时先用 copier 复制元素，
+ * 修改作用在副本上。因此从快照中读到的元素只能读，不要调用其setter。
+ * CAS失败时写操作会基于最新版本重试，传入的函数可能被调用多次，不应有副作用。
+ *
+ * @param <T> 元素类型
+ */
+public class SnapshotStore<T> {
+
+    private final String name;
+    private final UnaryOperator<T> copier;
+    private final AtomicReference<Snapshot<T>> current;
+
+    public SnapshotStore(String name, Collection<? extends T> initialData, UnaryOperator<T> copier) {
+        this.name = name;
+        this.copier = copier;
+        List<T> copies = new ArrayList<>(initialData.size());
+        for (T element : initialData) {
+            copies.add(copier.apply(element));
+        }
+        this.current = new AtomicReference<>(new Snapshot<>(0, PersistentVector.of(copies)));
+    }
+
+    /**
+     * 学生数据集，初始数据和写入的学生都会被复制，调用方之后修改原对象不影响快照
+     */
+    public static SnapshotStore<Student> ofStudents(String name, Collection<Student> students) {
+        return new SnapshotStore<>(name, students, Student::new);
+    }
+
+    public String getName() { return name; }
+
+    /**
+     * 当前版本，无锁读取
+     */
+    public Snapshot<T> snapshot() {
+        return current.get();
+    }
+
+    public long getVersion() {
+        return current.get().getVersion();
+    }
+
+    public Snapshot<T> add(T element) {
+        T copy = copier.apply(element);
+        Snapshot<T> base;
+        Snapshot<T> next;
+        do {
+            base = current.get();
+            next = new Snapshot<>(base.version + 1, base.data.append(copy));
+        } while (!current.compareAndSet(base, next));
+        return next;
+    }
+
+    /**
+     * 用副本替换index处的元素，operator可以直接修改收到的副本并返回它
+     */
+    public Snapshot<T> update(int index, UnaryOperator<T> operator) {
+        Snapshot<T> base;
+        Snapshot<T> next;
+        do {
+            base = current.get();
+            T updated = operator.apply(copier.apply(base.data.get(index)));
+            next = new Snapshot<>(base.version + 1, base.data.set(index, updated));
+        } while (!current.compareAndSet(base, next));
+        return next;
+    }
+
+    /**
+     * 更新所有满足条件的元素，作为一个版本一起发布，读者要么看到全部修改，要么一个也看不到
+     */
+    public Snapshot<T> updateIf(Predicate<? super T> condition, UnaryOperator<T> operator) {
+        Snapshot<T> base;
+        Snapshot<T> next;
+        do {
+            base = current.get();
+            PersistentVector<T> data = base.data;
+            for (int i = 0; i < data.size(); i++) {
+                T element = data.get(i);
+                if (condition.test(element)) {
+                    data = data.set(i, operator.apply(copier.apply(element)));
+                }
+            }
+            if (data == base.data) {
+                return base;
+            }
+            next = new Snapshot<>(base.version + 1, data);
+        } while (!current.compareAndSet(base, next));
+        return next;
+    }
+
+    /**
+     * 某一时刻的数据，创建后不再改变
+     *
+     * @param <T> 元素类型
+     */
+    public static final class Snapshot<T> {
+        private final long version;
+        private final PersistentVector<T> data;
+
+        Snapshot(long version, PersistentVector<T> data) {
+            this.version = version;
+            this.data = data;
+        }
+
+        public long getVersion() { return version; }
+
+        public int size() {
+            return data.size();
+        }
+
+        public T get(int index) {
+            return data.get(index);
+        }
+
+        /**
+         * 只读的List视图
+         */
+        public List<T> asList() {
+            return data.asList();
+        }
+
+        public Stream<T> stream() {
+            return data.stream();
+        }
+
+        public Stream<T> parallelStream() {
+            return data.parallelStream();
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.learn.stream.cache;
+
+import com.learn.stream.collections.IntDoubleMap;
+import com.learn.stream.collections.PersistentVector;
+import com.learn.stream.model.Student;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * 学生数据的增量覆盖视图（只覆盖GPA）
+ * 基础数据保存在 {@link PersistentVector} 中，成绩更新只写入一个 行号→新GPA 的补丁表，
+ * 查询时补丁优先，不需要为每个学生创建新的Student对象；一批更新的代价只与更新条数和未合并的补丁数有关，与学生总数无关。
+ *
+ * 补丁表会越来越大，因此需要合并（compact）：把补丁写回基础数据后清空补丁表，
+ * 每个被修改的行只复制一条树路径。补丁数超过阈值时在写入时合并，
+ * 也可以调用 {@link #startBackgroundCompaction(long, TimeUnit)} 在后台线程中定期合并。
+ *
+ * 每次修改都发布一个新的不可变 {@link View}，读者持有的视图不会被后续更新或合并改变。
+ */
+public class StudentOverlay implements AutoCloseable {
+
+    private final Map<String, int[]> rowsByName = new HashMap<>();
+    private final int compactionThreshold;
+    private final AtomicLong compactions = new AtomicLong();
+    private volatile View current;
+    private ScheduledExecutorService compactor;
+
+    public StudentOverlay(Collection<? extends Student> students) {
+        this(students, 1024);
+    }
+
+    /**
+     * @param compactionThreshold 补丁数达到该值时在写入时立即合并
+     */
+    public StudentOverlay(Collection<? extends Student> students, int compactionThreshold) {
+        if (compactionThreshold <= 0) {
+            throw new IllegalArgumentException("合并阈值必须大于0: " + compactionThreshold);
+        }
+        this.compactionThreshold = compactionThreshold;
+        List<Student> copies = new ArrayList<>(students.size());
+        Map<String, List<Integer>> rows = new HashMap<>();
+        for (Student student : students) {
+            rows.computeIfAbsent(student.getName(), name -> new ArrayList<>()).add(copies.size());
+            copies.add(new Student(student));
+        }
+        rows.forEach((name, list) -> rowsByName.put(name, list.stream().mapToInt(Integer::intValue).toArray()));
+        this.current = new View(0, PersistentVector.of(copies), new IntDoubleMap());
+    }
+
+    /**
+     * 当前视图，无锁读取
+     */
+    public View view() {
+        return current;
+    }
+
+    /**
+     * 修改同名学生的GPA
+     *
+     * @return 没有该学生时返回false
+     */
+    public boolean setGpa(String name, double gpa) {
+        return applyGpaUpdates(Collections.singletonList(name), n -> n, n -> gpa) == 1;
+    }
+
+    /**
+     * 把一批更新写入补丁表并作为一个新版本发布
+     *
+     * @return 找到对应学生的更新条数
+     */
+    public synchronized <T> int applyGpaUpdates(Collection<? extends T> updates,
+                                                Function<? super T, String> nameMapper,
+                                                ToDoubleFunction<? super T> gpaMapper) {
+        View view = current;
+        IntDoubleMap patches = copyOf(view.patches, updates.size());
+        int applied = 0;
+        for (T update : updates) {
+            int[] rows = rowsByName.get(nameMapper.apply(update));
+            if (rows == null) {
+                continue;
+            }
+            double gpa = gpaMapper.applyAsDouble(update);
+            for (int row : rows) {
+                patches.put(row, gpa);
+            }
+            applied++;
+        }
+        if (applied == 0) {
+            return 0;
+        }
+        current = new View(view.version + 1, view.base, patches);
+        if (patches.size() >= compactionThreshold) {
+            compact();
+        }
+        return applied;
+    }
+
+    /**
+     * 把补丁合并进基础数据
+     *
+     * @return 合并的补丁数
+     */
+    public synchronized int compact() {
+        View view = current;
+        if (view.patches.isEmpty()) {
+            return 0;
+        }
+        PersistentVector<Student> base = view.base;
+        for (int row : view.patches.keys()) {
+            Student old = base.get(row);
+            double gpa = view.patches.getOrDefault(row, old.getGpa());
+            base = base.set(row, new Student(old.getName(), old.getAge(), old.getMajor(), gpa, old.getGender()));
+        }
+        current = new View(view.version + 1, base, new IntDoubleMap());
+        compactions.incrementAndGet();
+        return view.patches.size();
+    }
+
+    /**
+     * 启动后台合并线程（守护线程），每隔period检查一次，有补丁就合并
+     */
+    public synchronized void startBackgroundCompaction(long period, TimeUnit unit) {
+        if (compactor != null) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "overlay-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compact, period, period, unit);
+    }
+
+    /**
+     * 已完成的合并次数
+     */
+    public long getCompactionCount() {
+        return compactions.get();
+    }
+
+    /**
+     * 停止后台合并线程
+     */
+    @Override
+    public synchronized void close() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+            compactor = null;
+        }
+    }
+
+    private static IntDoubleMap copyOf(IntDoubleMap source, int extra) {
+        IntDoubleMap copy = new IntDoubleMap(source.size() + extra);
+        source.forEach(copy::put);
+        return copy;
+    }
+
+    /**
+     * 某一版本的只读视图：基础数据 + 补丁
+     * 按行号访问，只有 {@link #student(int)} 会为打过补丁的行创建新对象。
+     */
+    public static final class View {
+        private final long version;
+        private final PersistentVector<Student> base;
+        private final IntDoubleMap patches;
+
+        View(long version, PersistentVector<Student> base, IntDoubleMap patches) {
+            this.version = version;
+            this.base = base;
+            this.patches = patches;
+        }
+
+        public long getVersion() { return version; }
+
+        public int size() {
+            return base.size();
+        }
+
+        public int patchCount() {
+            return patches.size();
+        }
+
+        public boolean isPatched(int row) {
+            return patches.containsKey(row);
+        }
+
+        public String name(int row) {
+            return base.get(row).getName();
+        }
+
+        public String major(int row) {
+            return base.get(row).getMajor();
+        }
+
+        public int age(int row) {
+            return base.get(row).getAge();
+        }
+
+        /**
+         * 考虑补丁后的GPA
+         */
+        public double gpa(int row) {
+            return patches.getOrDefault(row, base.get(row).getGpa());
+        }
+
+        /**
+         * 基础数据中的学生对象，不包含补丁，只能读
+         */
+        public Student baseStudent(int row) {
+            return base.get(row);
+        }
+
+        /**
+         * 考虑补丁后的学生，只有打过补丁的行会创建新对象
+         */
+        public Student student(int row) {
+            Student student = base.get(row);
+            if (!patches.containsKey(row)) {
+                return student;
+            }
+            return new Student(student.getName(), student.getAge(), student.getMajor(),
+                    patches.getOrDefault(row, student.getGpa()), student.getGender());
+        }
+
+        /**
+         * GPA最高的limit行（考虑补丁），按GPA降序，GPA相同时行号小的在前
+         * 只维护一个大小为limit的int小顶堆，不装箱，也不排序全部行
+         */
+        public int[] topRowsByGpa(int limit) {
+            int k = Math.max(0, Math.min(limit, size()));
+            int[] heap = new int[k];
+            int count = 0;
+            for (int row = 0; row < size() && k > 0; row++) {
+                if (count < k) {
+                    heap[count] = row;
+                    siftUp(heap, count++);
+                } else if (ranksBefore(row, heap[0])) {
+                    heap[0] = row;
+                    siftDown(heap, count);
+                }
+            }
+            // 堆顶是当前最靠后的一行，依次取出后从后往前填充
+            int[] top = new int[count];
+            for (int i = count - 1; i >= 0; i--) {
+                top[i] = heap[0];
+                heap[0] = heap[--count];
+                siftDown(heap, count);
+            }
+            return top;
+        }
+
+        public IntStream rows() {
+            return IntStream.range(0, size());
+        }
+
+        public DoubleStream gpas() {
+            return rows().mapToDouble(this::gpa);
+        }
+
+        public Stream<Student> students() {
+            return rows().mapToObj(this::student);
+        }
+
+        private boolean ranksBefore(int a, int b) {
+            double gpaA = gpa(a);
+            double gpaB = gpa(b);
+            return gpaA > gpaB || (gpaA == gpaB && a < b);
+        }
+
+        private void siftUp(int[] heap, int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!ranksBefore(heap[parent], heap[index])) {
+                    break;
+                }
+                swap(heap, parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int[] heap, int size) {
+            int index = 0;
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && ranksBefore(heap[child], heap[child + 1])) {
+                    child++;
+                }
+                if (!ranksBefore(heap[index], heap[child])) {
+                    break;
+                }
+                swap(heap, index, child);
+                index = child;
+            }
+        }
+
+        private static void swap(int[] heap, int i, int j) {
+            int t = heap[i];
+            heap[i] = heap[j];
+            heap[j] = t;
+        }
+    }
+}
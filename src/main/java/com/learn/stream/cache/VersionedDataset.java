@@ -0,0 +1,92 @@
+package com.learn.stream.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * 带版本号的数据集
+ * 所有修改都必须通过本类的方法进行，每次修改版本号加1，
+ * ResultCache 据此判断缓存的统计结果是否已经过期。
+ *
+ * 注意：Student/Course 本身是可变对象，直接调用元素的setter不会被感知，
+ * 这种情况请使用 {@link #modify(int, Consumer)} 或在修改后调用 {@link #touch()}。
+ *
+ * @param <T> 元素类型
+ */
+public class VersionedDataset<T> {
+
+    private final String name;
+    private final AtomicLong version = new AtomicLong();
+    private volatile List<T> snapshot;
+
+    public VersionedDataset(String name, Collection<? extends T> initialData) {
+        this.name = name;
+        this.snapshot = Collections.unmodifiableList(new ArrayList<>(initialData));
+    }
+
+    public String getName() { return name; }
+    public long getVersion() { return version.get(); }
+
+    /**
+     * 当前数据的只读视图
+     */
+    public List<T> get() {
+        return snapshot;
+    }
+
+    public Stream<T> stream() {
+        return snapshot.stream();
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    public synchronized void add(T element) {
+        List<T> copy = new ArrayList<>(snapshot);
+        copy.add(element);
+        publish(copy);
+    }
+
+    public synchronized void set(int index, T element) {
+        List<T> copy = new ArrayList<>(snapshot);
+        copy.set(index, element);
+        publish(copy);
+    }
+
+    public synchronized void replaceAll(UnaryOperator<T> operator) {
+        List<T> copy = new ArrayList<>(snapshot);
+        copy.replaceAll(operator);
+        publish(copy);
+    }
+
+    public synchronized void reset(Collection<? extends T> data) {
+        publish(new ArrayList<>(data));
+    }
+
+    /**
+     * 原地修改某个可变元素，并使版本号失效
+     */
+    public synchronized void modify(int index, Consumer<? super T> modification) {
+        modification.accept(snapshot.get(index));
+        version.incrementAndGet();
+    }
+
+    /**
+     * 元素在外部被修改后手动使版本号失效
+     */
+    public void touch() {
+        version.incrementAndGet();
+    }
+
+    private void publish(List<T> data) {
+        snapshot = Collections.unmodifiableList(data);
+        version.incrementAndGet();
+    }
+}
@@ -0,0 +1,360 @@
+package com.learn.stream.cli;
+
+import com.learn.stream.advanced.AdvancedStreamOperations;
+import com.learn.stream.basic.BasicStreamOperations;
+import com.learn.stream.data.StudentCsvReader;
+import com.learn.stream.data.StudentDataGenerator;
+import com.learn.stream.example.ComprehensiveExample;
+import com.learn.stream.intermediate.IntermediateStreamOperations;
+import com.learn.stream.model.Student;
+import com.learn.stream.monitor.AllocationProfiler;
+import com.learn.stream.monitor.ExampleRuns;
+import com.learn.stream.monitor.metrics.MetricsServer;
+import com.learn.stream.monitor.metrics.StreamMetrics;
+import com.learn.stream.perf.MicroBenchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 非交互式批量运行
+ * 按命令行参数运行示例、示例中的某一节或基准负载，不读取标准输入，结果按指定格式输出：
+ *
+ * 1. 示例和分节：每次运行的耗时、所有线程分配的字节数和GC次数（来自 {@link AllocationProfiler}）
+ * 2. 负载：用 {@link MicroBenchmark} 测量耗时，吞吐量为 数据集大小 / 中位数耗时，另外单独执行若干次统计分配量
+ *
+ * 并行度大于0时所有任务提交到该大小的ForkJoinPool中执行，其中的 parallelStream() 也使用这个线程池。
+ * 使用 --quiet 时示例自身的输出被丢弃，再配合 --output 可以完全不使用控制台。
+ */
+public final class BatchRunner {
+
+    private static final Map<String, Class<?>> SUITE_CLASSES = new LinkedHashMap<>();
+
+    static {
+        SUITE_CLASSES.put("basic", BasicStreamOperations.class);
+        SUITE_CLASSES.put("intermediate", IntermediateStreamOperations.class);
+        SUITE_CLASSES.put("advanced", AdvancedStreamOperations.class);
+        SUITE_CLASSES.put("comprehensive", ComprehensiveExample.class);
+    }
+
+    private final CommandLine options;
+    private final ForkJoinPool pool;
+    private final List<Measurement> measurements = new ArrayList<>();
+
+    private BatchRunner(CommandLine options) {
+        this.options = options;
+        this.pool = options.getParallelism() > 0 ? new ForkJoinPool(options.getParallelism()) : null;
+        if (pool != null) {
+            StreamMetrics.registerPool("cli", pool);
+        }
+    }
+
+    /**
+     * 解析参数并运行，返回进程退出码：0成功，1有任务失败，2参数错误
+     */
+    public static int run(String[] args) {
+        CommandLine options;
+        try {
+            options = CommandLine.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(CommandLine.usage());
+            return 2;
+        }
+        if (options.isHelp()) {
+            System.out.println(CommandLine.usage());
+            return 0;
+        }
+        return new BatchRunner(options).execute();
+    }
+
+    private int execute() {
+        PrintStream console = System.out;
+        PrintStream consoleErr = System.err;
+        if (options.isQuiet()) {
+            PrintStream discard = new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            });
+            System.setOut(discard);
+            System.setErr(discard);
+        }
+        MetricsServer metrics = startMetrics(consoleErr);
+        try {
+            for (String suite : options.getSuites()) {
+                runSuite(suite);
+            }
+            for (String section : options.getSections()) {
+                runSection(section);
+            }
+            if (!options.getWorkloads().isEmpty()) {
+                runWorkloads();
+            }
+        } finally {
+            System.setOut(console);
+            System.setErr(consoleErr);
+            if (pool != null) {
+                pool.shutdown();
+            }
+            if (metrics != null) {
+                metrics.close();
+            }
+        }
+
+        boolean success = measurements.stream().allMatch(Measurement::isSuccess);
+        ResultWriter writer = new ResultWriter(options);
+        if (options.getOutput() == null) {
+            writer.write(measurements, new PrintWriter(new OutputStreamWriter(console, StandardCharsets.UTF_8)));
+            return success ? 0 : 1;
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(options.getOutput(), StandardCharsets.UTF_8))) {
+            writer.write(measurements, out);
+        } catch (IOException e) {
+            if (!options.isQuiet()) {
+                consoleErr.println("写入结果文件失败: " + e.getMessage());
+            }
+            return 1;
+        }
+        return success ? 0 : 1;
+    }
+
+    /**
+     * --metrics-port 优先，其次是系统属性 metrics.port；都没有时不启动
+     */
+    private MetricsServer startMetrics(PrintStream consoleErr) {
+        if (options.getMetricsPort() < 0) {
+            MetricsServer server = MetricsServer.startFromSystemProperty();
+            if (server != null && !options.isQuiet()) {
+                consoleErr.println("指标端点: " + server.getUrl());
+            }
+            return server;
+        }
+        try {
+            MetricsServer server = MetricsServer.startDefault(options.getMetricsPort());
+            if (!options.isQuiet()) {
+                consoleErr.println("指标端点: " + server.getUrl());
+            }
+            return server;
+        } catch (IOException e) {
+            if (!options.isQuiet()) {
+                consoleErr.println("指标端点启动失败: " + e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 运行整个示例，同时得到示例和其中每一节的统计
+     */
+    private void runSuite(String suite) {
+        Method main;
+        try {
+            main = SUITE_CLASSES.get(suite).getMethod("main", String[].class);
+        } catch (NoSuchMethodException e) {
+            measurements.add(Measurement.failed(Measurement.Kind.SUITE, suite, e));
+            return;
+        }
+        int iterations = options.getIterations();
+        List<AllocationProfiler.Report> reports = new ArrayList<>();
+        try {
+            for (int i = 0; i < iterations; i++) {
+                reports.add(profile(suite, suite, () -> main.invoke(null, (Object) new String[0])));
+            }
+        } catch (Exception e) {
+            measurements.add(Measurement.failed(Measurement.Kind.SUITE, suite, cause(e)));
+            return;
+        }
+        measurements.add(summarize(Measurement.Kind.SUITE, suite, reports));
+
+        // 每一节按名称汇总各次运行
+        Map<String, List<AllocationProfiler.Section>> sections = new LinkedHashMap<>();
+        for (AllocationProfiler.Report report : reports) {
+            for (AllocationProfiler.Section section : report.getSections()) {
+                sections.computeIfAbsent(section.getName(), name -> new ArrayList<>()).add(section);
+            }
+        }
+        sections.forEach((name, runs) -> {
+            double[] samples = new double[runs.size()];
+            long[] bytes = new long[runs.size()];
+            long gcCount = 0;
+            long gcMillis = 0;
+            for (int i = 0; i < runs.size(); i++) {
+                samples[i] = runs.get(i).getElapsedNanos();
+                bytes[i] = runs.get(i).getAllocatedBytes();
+                gcCount += runs.get(i).getGcCount();
+                gcMillis += runs.get(i).getGcMillis();
+            }
+            measurements.add(new Measurement(Measurement.Kind.SECTION, suite + "/" + name,
+                    MicroBenchmark.Result.of(name, samples), -1, median(bytes), gcCount, gcMillis));
+        });
+    }
+
+    /**
+     * 只运行示例中的一节（示例类中同名的无参静态方法）
+     */
+    private void runSection(String section) {
+        Method method = null;
+        String suite = null;
+        for (Map.Entry<String, Class<?>> entry : SUITE_CLASSES.entrySet()) {
+            try {
+                Method candidate = entry.getValue().getDeclaredMethod(section);
+                if (Modifier.isStatic(candidate.getModifiers())) {
+                    method = candidate;
+                    suite = entry.getKey();
+                    break;
+                }
+            } catch (NoSuchMethodException e) {
+                // 继续在下一个示例类中查找
+            }
+        }
+        if (method == null) {
+            measurements.add(Measurement.failed(Measurement.Kind.SECTION, section,
+                    new IllegalArgumentException("找不到这一节，应为示例类中的 demonstrateXxx 方法名")));
+            return;
+        }
+        method.setAccessible(true);
+        Method target = method;
+        String name = suite + "/" + section;
+        List<AllocationProfiler.Report> reports = new ArrayList<>();
+        try {
+            for (int i = 0; i < options.getIterations(); i++) {
+                reports.add(profile(name, name, () -> target.invoke(null)));
+            }
+        } catch (Exception e) {
+            measurements.add(Measurement.failed(Measurement.Kind.SECTION, name, cause(e)));
+            return;
+        }
+        measurements.add(summarize(Measurement.Kind.SECTION, name, reports));
+    }
+
+    private void runWorkloads() {
+        List<Student> data;
+        try {
+            data = loadDataset();
+        } catch (IOException | RuntimeException e) {
+            for (String workload : options.getWorkloads()) {
+                measurements.add(Measurement.failed(Measurement.Kind.WORKLOAD, workload, e));
+            }
+            return;
+        }
+        boolean parallel = pool != null;
+        MicroBenchmark benchmark = new MicroBenchmark(options.getWarmup(),
+                options.getWarmup() == 0 ? 0L : 100_000_000L, options.getIterations(), 1_000_000L);
+        for (String workload : options.getWorkloads()) {
+            try {
+                MicroBenchmark.Result timing = inPool(() ->
+                        benchmark.run(workload, () -> Workloads.run(workload, data, parallel)));
+                // 计时之外再单独执行几次统计分配量，避免统计本身影响计时
+                AllocationProfiler.Report allocation = inPool(() -> {
+                    AllocationProfiler.Run run = AllocationProfiler.start("workload:" + workload);
+                    for (int i = 0; i < options.getIterations(); i++) {
+                        long start = System.nanoTime();
+                        Workloads.run(workload, data, parallel);
+                        StreamMetrics.recordWorkload(workload, parallel, data.size(), System.nanoTime() - start);
+                    }
+                    return run.finish();
+                });
+                long bytes = allocation.getAllThreadsAllocatedBytes();
+                measurements.add(new Measurement(Measurement.Kind.WORKLOAD, workload, timing,
+                        data.size() / (timing.getMedian() / 1e9),
+                        bytes < 0 ? -1 : bytes / options.getIterations(),
+                        allocation.getGcCount(), allocation.getGcMillis()));
+            } catch (Exception e) {
+                measurements.add(Measurement.failed(Measurement.Kind.WORKLOAD, workload, cause(e)));
+            }
+        }
+    }
+
+    private List<Student> loadDataset() throws IOException {
+        String dataset = options.getDataset();
+        if (dataset.startsWith("csv:")) {
+            List<Student> students = StudentCsvReader.read(Paths.get(dataset.substring(4)), options.getSize());
+            if (students.isEmpty()) {
+                throw new IOException("数据文件中没有学生: " + dataset.substring(4));
+            }
+            return students;
+        }
+        return new StudentDataGenerator(options.getSeed()).studentList(options.getSize());
+    }
+
+    /**
+     * 在线程池中运行一次并统计分配
+     */
+    private AllocationProfiler.Report profile(String example, String profileName, Invocation invocation)
+            throws Exception {
+        return inPool(() -> ExampleRuns.profile(example, "cli", "cli:" + profileName, invocation::invoke));
+    }
+
+    private Measurement summarize(Measurement.Kind kind, String name, List<AllocationProfiler.Report> reports) {
+        double[] samples = new double[reports.size()];
+        long[] bytes = new long[reports.size()];
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (int i = 0; i < reports.size(); i++) {
+            AllocationProfiler.Report report = reports.get(i);
+            samples[i] = report.getElapsedNanos();
+            bytes[i] = report.getAllThreadsAllocatedBytes();
+            gcCount += report.getGcCount();
+            gcMillis += report.getGcMillis();
+        }
+        return new Measurement(kind, name, MicroBenchmark.Result.of(name, samples), -1,
+                median(bytes), gcCount, gcMillis);
+    }
+
+    private <R> R inPool(Callable<R> task) throws Exception {
+        if (pool == null) {
+            return task.call();
+        }
+        try {
+            return pool.submit(task).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[0] < 0 ? -1 : sorted[sorted.length / 2];
+    }
+
+    private static Throwable cause(Throwable e) {
+        while ((e instanceof InvocationTargetException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    /**
+     * 通过反射调用示例方法
+     */
+    private interface Invocation {
+        void invoke() throws Exception;
+    }
+}
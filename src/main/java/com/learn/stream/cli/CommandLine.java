@@ -0,0 +1,230 @@
+package com.learn.stream.cli;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 启动器的命令行参数
+ * 解析失败时抛出 IllegalArgumentException，消息可以直接显示给用户。
+ */
+public final class CommandLine {
+
+    /**
+     * 输出格式
+     */
+    public enum Format { TEXT, JSON, CSV }
+
+    static final List<String> SUITES = Collections.unmodifiableList(
+            Arrays.asList("basic", "intermediate", "advanced", "comprehensive"));
+
+    private final List<String> suites = new ArrayList<>();
+    private final List<String> sections = new ArrayList<>();
+    private final List<String> workloads = new ArrayList<>();
+    private String dataset = "generated";
+    private int size = 100_000;
+    private long seed = 42L;
+    private int parallelism;
+    private int iterations = 5;
+    private int warmup = 3;
+    private Format format = Format.TEXT;
+    private Path output;
+    private boolean quiet;
+    private int metricsPort = -1;
+    private boolean help;
+
+    private CommandLine() {
+    }
+
+    /**
+     * 参数中包含以 -- 开头的选项时使用命令行模式，否则保持原来的菜单/示例名方式
+     */
+    public static boolean isCommandLine(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static CommandLine parse(String[] args) {
+        CommandLine options = new CommandLine();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            String name = arg;
+            String value = null;
+            int eq = arg.indexOf('=');
+            if (arg.startsWith("--") && eq > 0) {
+                name = arg.substring(0, eq);
+                value = arg.substring(eq + 1);
+            }
+            switch (name) {
+                case "--help":
+                case "-h":
+                    options.help = true;
+                    break;
+                case "--quiet":
+                case "-q":
+                    options.quiet = true;
+                    break;
+                case "--suite":
+                    for (String suite : list(value != null ? value : next(args, ++i, name))) {
+                        if ("all".equals(suite)) {
+                            options.suites.addAll(SUITES);
+                        } else if (SUITES.contains(suite)) {
+                            options.suites.add(suite);
+                        } else {
+                            throw new IllegalArgumentException("未知的示例类型: " + suite + "，支持 " + SUITES + " 或 all");
+                        }
+                    }
+                    break;
+                case "--section":
+                    options.sections.addAll(list(value != null ? value : next(args, ++i, name)));
+                    break;
+                case "--workload":
+                    for (String workload : list(value != null ? value : next(args, ++i, name))) {
+                        if ("all".equals(workload)) {
+                            options.workloads.addAll(Workloads.names());
+                        } else if (Workloads.names().contains(workload)) {
+                            options.workloads.add(workload);
+                        } else {
+                            throw new IllegalArgumentException("未知的负载: " + workload + "，支持 " + Workloads.names() + " 或 all");
+                        }
+                    }
+                    break;
+                case "--dataset":
+                    options.dataset = value != null ? value : next(args, ++i, name);
+                    if (!"generated".equals(options.dataset) && !options.dataset.startsWith("csv:")) {
+                        throw new IllegalArgumentException("数据源必须是 generated 或 csv:<文件路径>: " + options.dataset);
+                    }
+                    break;
+                case "--size":
+                    options.size = positive(name, value != null ? value : next(args, ++i, name));
+                    break;
+                case "--seed":
+                    options.seed = parseLong(name, value != null ? value : next(args, ++i, name));
+                    break;
+                case "--parallelism":
+                    options.parallelism = nonNegative(name, value != null ? value : next(args, ++i, name));
+                    break;
+                case "--iterations":
+                    options.iterations = positive(name, value != null ? value : next(args, ++i, name));
+                    break;
+                case "--warmup":
+                    options.warmup = nonNegative(name, value != null ? value : next(args, ++i, name));
+                    break;
+                case "--format":
+                    String format = value != null ? value : next(args, ++i, name);
+                    try {
+                        options.format = Format.valueOf(format.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("输出格式必须是 text、json 或 csv: " + format);
+                    }
+                    break;
+                case "--metrics-port":
+                    options.metricsPort = nonNegative(name, value != null ? value : next(args, ++i, name));
+                    if (options.metricsPort > 65535) {
+                        throw new IllegalArgumentException("端口必须在0到65535之间: " + options.metricsPort);
+                    }
+                    break;
+                case "--output":
+                    options.output = Paths.get(value != null ? value : next(args, ++i, name));
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + arg);
+            }
+        }
+        if (options.suites.isEmpty() && options.sections.isEmpty() && options.workloads.isEmpty()) {
+            options.suites.addAll(SUITES);
+        }
+        return options;
+    }
+
+    public static String usage() {
+        return String.join(System.lineSeparator(),
+                "用法: java com.learn.stream.StreamAPILauncher [选项]",
+                "",
+                "  --suite <名称,...>       运行示例: basic, intermediate, advanced, comprehensive 或 all",
+                "  --section <方法名,...>    只运行示例中的某一节，例如 demonstrateParallelStream",
+                "  --workload <名称,...>     在数据集上运行基准负载: " + String.join(", ", Workloads.names()) + " 或 all",
+                "  --dataset <来源>          负载的数据源: generated(默认) 或 csv:<文件路径>",
+                "  --size <N>               数据集大小，默认100000",
+                "  --seed <S>               生成数据的种子，默认42",
+                "  --parallelism <P>        0为顺序执行(默认)，大于0时在P个线程的ForkJoinPool中并行执行",
+                "  --iterations <N>         测量次数，默认5",
+                "  --warmup <N>             预热次数，默认3",
+                "  --format <格式>           text(默认)、json 或 csv",
+                "  --output <文件>           把结果写入文件而不是标准输出",
+                "  --metrics-port <端口>     运行期间在 127.0.0.1:端口/metrics 提供Prometheus格式的指标，0为自动选择",
+                "  --quiet                  不输出示例的运行过程；与 --output 一起使用时完全不使用控制台",
+                "  --help                   显示本帮助",
+                "",
+                "未指定 --suite、--section、--workload 时运行所有示例。",
+                "也可以只传一个示例名（basic、intermediate、advanced、comprehensive、all），或不带参数进入菜单。");
+    }
+
+    private static String next(String[] args, int index, String name) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(name + " 缺少参数值");
+        }
+        return args[index];
+    }
+
+    private static List<String> list(String value) {
+        List<String> values = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (!part.trim().isEmpty()) {
+                values.add(part.trim());
+            }
+        }
+        return values;
+    }
+
+    private static long parseLong(String name, String value) {
+        try {
+            return Long.parseLong(value.replace("_", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " 的值不是整数: " + value);
+        }
+    }
+
+    private static int nonNegative(String name, String value) {
+        long parsed = parseLong(name, value);
+        if (parsed < 0 || parsed > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(name + " 的值必须在0到" + Integer.MAX_VALUE + "之间: " + value);
+        }
+        return (int) parsed;
+    }
+
+    private static int positive(String name, String value) {
+        int parsed = nonNegative(name, value);
+        if (parsed == 0) {
+            throw new IllegalArgumentException(name + " 的值必须大于0");
+        }
+        return parsed;
+    }
+
+    public List<String> getSuites() { return Collections.unmodifiableList(suites); }
+    public List<String> getSections() { return Collections.unmodifiableList(sections); }
+    public List<String> getWorkloads() { return Collections.unmodifiableList(workloads); }
+    public String getDataset() { return dataset; }
+    public int getSize() { return size; }
+    public long getSeed() { return seed; }
+    public int getParallelism() { return parallelism; }
+    public int getIterations() { return iterations; }
+    public int getWarmup() { return warmup; }
+    public Format getFormat() { return format; }
+    public Path getOutput() { return output; }
+    public boolean isQuiet() { return quiet; }
+
+    /**
+     * 指标端点端口，未指定时为-1（仍可用系统属性 metrics.port 启用）
+     */
+    public int getMetricsPort() { return metricsPort; }
+    public boolean isHelp() { return help; }
+}
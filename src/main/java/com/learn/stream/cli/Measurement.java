@@ -0,0 +1,55 @@
+package com.learn.stream.cli;
+
+import com.learn.stream.perf.MicroBenchmark;
+
+/**
+ * 一行测量结果：一个示例、示例中的一节或一个负载
+ */
+final class Measurement {
+
+    enum Kind { SUITE, SECTION, WORKLOAD }
+
+    final Kind kind;
+    final String name;
+    /** 每次执行的耗时统计，失败时为null */
+    final MicroBenchmark.Result timing;
+    /** 每秒处理的元素数，只对负载有意义，否则为负数 */
+    final double throughput;
+    /** 每次执行在所有线程上分配的字节数，不支持时为负数 */
+    final long allocatedBytesPerRun;
+    /** 测量期间的GC总次数和总耗时 */
+    final long gcCount;
+    final long gcMillis;
+    final String error;
+
+    Measurement(Kind kind, String name, MicroBenchmark.Result timing, double throughput,
+                long allocatedBytesPerRun, long gcCount, long gcMillis) {
+        this.kind = kind;
+        this.name = name;
+        this.timing = timing;
+        this.throughput = throughput;
+        this.allocatedBytesPerRun = allocatedBytesPerRun;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+        this.error = null;
+    }
+
+    private Measurement(Kind kind, String name, String error) {
+        this.kind = kind;
+        this.name = name;
+        this.timing = null;
+        this.throughput = -1;
+        this.allocatedBytesPerRun = -1;
+        this.gcCount = 0;
+        this.gcMillis = 0;
+        this.error = error;
+    }
+
+    static Measurement failed(Kind kind, String name, Throwable cause) {
+        return new Measurement(kind, name, cause.getClass().getSimpleName() + ": " + cause.getMessage());
+    }
+
+    boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,182 @@
+package com.learn.stream.cli;
+
+import com.learn.stream.monitor.AllocationProfiler;
+import com.learn.stream.perf.MicroBenchmark;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 把测量结果写成 text/JSON/CSV，时间单位统一为纳秒（text格式按量级显示）
+ */
+final class ResultWriter {
+
+    private static final String CSV_HEADER = "kind,name,samples,median_ns,p90_ns,p99_ns,ci_low_ns,ci_high_ns,"
+            + "throughput_per_s,alloc_bytes_per_run,gc_count,gc_ms,status";
+
+    private final CommandLine options;
+    private final boolean workloadsRun;
+
+    ResultWriter(CommandLine options) {
+        this.options = options;
+        this.workloadsRun = !options.getWorkloads().isEmpty();
+    }
+
+    void write(List<Measurement> measurements, PrintWriter out) {
+        switch (options.getFormat()) {
+            case JSON:
+                writeJson(measurements, out);
+                break;
+            case CSV:
+                writeCsv(measurements, out);
+                break;
+            default:
+                writeText(measurements, out);
+                break;
+        }
+        out.flush();
+    }
+
+    private void writeText(List<Measurement> measurements, PrintWriter out) {
+        out.println("运行结果 (并行度 " + parallelismLabel() + ", 测量 " + options.getIterations() + " 次"
+                + (workloadsRun ? ", 数据源 " + options.getDataset() + ", " + options.getSize() + " 条" : "") + ")");
+        out.println(String.format(Locale.ROOT, "  %-8s %-44s %12s %12s %14s %12s %10s",
+                "类型", "名称", "中位数", "p90", "吞吐量(条/s)", "分配/次", "GC"));
+        for (Measurement m : measurements) {
+            if (!m.isSuccess()) {
+                out.println(String.format(Locale.ROOT, "  %-8s %-44s ❌ %s", kind(m), m.name, m.error));
+                continue;
+            }
+            out.println(String.format(Locale.ROOT, "  %-8s %-44s %12s %12s %14s %12s %4d次/%dms",
+                    kind(m), m.name,
+                    MicroBenchmark.Result.formatNanos(m.timing.getMedian()),
+                    MicroBenchmark.Result.formatNanos(m.timing.getP90()),
+                    m.throughput < 0 ? "-" : String.format(Locale.ROOT, "%.0f", m.throughput),
+                    AllocationProfiler.formatBytes(m.allocatedBytesPerRun),
+                    m.gcCount, m.gcMillis));
+        }
+    }
+
+    private void writeCsv(List<Measurement> measurements, PrintWriter out) {
+        out.println(CSV_HEADER);
+        for (Measurement m : measurements) {
+            StringBuilder row = new StringBuilder();
+            row.append(kind(m)).append(',').append(csv(m.name)).append(',');
+            if (m.isSuccess()) {
+                MicroBenchmark.Result t = m.timing;
+                row.append(t.getSampleCount()).append(',')
+                        .append(number(t.getMedian())).append(',')
+                        .append(number(t.getP90())).append(',')
+                        .append(number(t.getP99())).append(',')
+                        .append(number(t.getMedianCiLow())).append(',')
+                        .append(number(t.getMedianCiHigh())).append(',')
+                        .append(m.throughput < 0 ? "" : number(m.throughput)).append(',')
+                        .append(m.allocatedBytesPerRun < 0 ? "" : String.valueOf(m.allocatedBytesPerRun)).append(',')
+                        .append(m.gcCount).append(',')
+                        .append(m.gcMillis).append(",ok");
+            } else {
+                row.append(",,,,,,,,,,").append(csv("error: " + m.error));
+            }
+            out.println(row);
+        }
+    }
+
+    private void writeJson(List<Measurement> measurements, PrintWriter out) {
+        out.println("{");
+        out.println("  \"config\": {");
+        out.println("    \"suites\": " + jsonArray(options.getSuites()) + ",");
+        out.println("    \"sections\": " + jsonArray(options.getSections()) + ",");
+        out.println("    \"workloads\": " + jsonArray(options.getWorkloads()) + ",");
+        out.println("    \"dataset\": " + json(options.getDataset()) + ",");
+        out.println("    \"size\": " + options.getSize() + ",");
+        out.println("    \"seed\": " + options.getSeed() + ",");
+        out.println("    \"parallelism\": " + options.getParallelism() + ",");
+        out.println("    \"iterations\": " + options.getIterations() + ",");
+        out.println("    \"warmup\": " + options.getWarmup());
+        out.println("  },");
+        out.println("  \"results\": [");
+        for (int i = 0; i < measurements.size(); i++) {
+            Measurement m = measurements.get(i);
+            StringBuilder item = new StringBuilder("    {\"kind\": ").append(json(kind(m)))
+                    .append(", \"name\": ").append(json(m.name));
+            if (m.isSuccess()) {
+                MicroBenchmark.Result t = m.timing;
+                item.append(", \"samples\": ").append(t.getSampleCount())
+                        .append(", \"medianNanos\": ").append(number(t.getMedian()))
+                        .append(", \"p90Nanos\": ").append(number(t.getP90()))
+                        .append(", \"p99Nanos\": ").append(number(t.getP99()))
+                        .append(", \"ciLowNanos\": ").append(number(t.getMedianCiLow()))
+                        .append(", \"ciHighNanos\": ").append(number(t.getMedianCiHigh()))
+                        .append(", \"throughputPerSecond\": ").append(m.throughput < 0 ? "null" : number(m.throughput))
+                        .append(", \"allocatedBytesPerRun\": ")
+                        .append(m.allocatedBytesPerRun < 0 ? "null" : String.valueOf(m.allocatedBytesPerRun))
+                        .append(", \"gcCount\": ").append(m.gcCount)
+                        .append(", \"gcMillis\": ").append(m.gcMillis)
+                        .append(", \"status\": \"ok\"}");
+            } else {
+                item.append(", \"status\": \"error\", \"error\": ").append(json(m.error)).append('}');
+            }
+            if (i < measurements.size() - 1) {
+                item.append(',');
+            }
+            out.println(item);
+        }
+        out.println("  ]");
+        out.println("}");
+    }
+
+    private String parallelismLabel() {
+        return options.getParallelism() == 0 ? "顺序" : String.valueOf(options.getParallelism());
+    }
+
+    private static String kind(Measurement m) {
+        return m.kind.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonArray(List<String> values) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(json(values.get(i)));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String json(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,95 @@
+package com.learn.stream.cli;
+
+import com.learn.stream.grouping.PartitionedGrouping;
+import com.learn.stream.index.CollationKeyCache;
+import com.learn.stream.model.Student;
+import com.learn.stream.scan.SharedScan;
+import com.learn.stream.sort.NormalizedKeySort;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 命令行 --workload 可选的基准负载，每个负载是作用在学生Stream上的一条管道
+ * 是否并行由传入的Stream决定。
+ */
+final class Workloads {
+
+    private static final Map<String, Function<Stream<Student>, Object>> WORKLOADS = new LinkedHashMap<>();
+
+    // 排名：GPA降序 → 专业（拼音顺序）→ 年龄
+    private static final Comparator<Student> RANKING_COMPARATOR = Comparator.comparingDouble(Student::getGpa).reversed()
+            .thenComparing(Student::getMajor, CollationKeyCache.chinese())
+            .thenComparingInt(Student::getAge);
+    private static final NormalizedKeySort<Student> RANKING_SORT = new NormalizedKeySort<Student>()
+            .thenByFixedPoint(Student::getGpa, 0.0, 5.0, 2, true)
+            .thenByDictionary(Student::getMajor, CollationKeyCache.chinese(), false)
+            .thenByInt(Student::getAge, 0, 150, false);
+
+    static {
+        WORKLOADS.put("filter-count", students -> students
+                .filter(student -> student.getGpa() >= 3.5)
+                .count());
+        WORKLOADS.put("gpa-statistics", students -> students
+                .mapToDouble(Student::getGpa)
+                .summaryStatistics());
+        WORKLOADS.put("average-gpa-by-major", students -> students
+                .collect(Collectors.groupingBy(Student::getMajor, Collectors.averagingDouble(Student::getGpa))));
+        WORKLOADS.put("count-by-major-gender", students -> students
+                .collect(Collectors.groupingBy(Student::getMajor,
+                        Collectors.groupingBy(Student::getGender, Collectors.counting()))));
+        WORKLOADS.put("top-100-by-gpa", students -> students
+                .sorted(Comparator.comparingDouble(Student::getGpa).reversed())
+                .limit(100)
+                .collect(Collectors.toList()));
+        // 按专业分组收集姓名：Collectors.groupingBy vs 两阶段分区分组（并行时差别明显）
+        WORKLOADS.put("names-by-major", students -> students
+                .collect(Collectors.groupingBy(Student::getMajor, LinkedHashMap::new,
+                        Collectors.mapping(Student::getName, Collectors.toList()))));
+        WORKLOADS.put("names-by-major-partitioned", students -> students
+                .collect(PartitionedGrouping.groupingBy(Student::getMajor, LinkedHashMap::new,
+                        Collectors.mapping(Student::getName, Collectors.toList()))));
+        // 按姓名拼音排序：每次比较都调用Collator vs 缓存排序键后按名次做基本类型排序
+        WORKLOADS.put("sort-by-name-collator", students -> students
+                .sorted(Comparator.comparing(Student::getName, Collator.getInstance(Locale.CHINA)))
+                .collect(Collectors.toList()));
+        WORKLOADS.put("sort-by-name-collation-key", students ->
+                CollationKeyCache.chinese().sort(students.collect(Collectors.toList()), Student::getName));
+        // 三列排名：比较器排序 vs 归一化键基数排序（并行Stream时使用并行基数排序）
+        WORKLOADS.put("rank-gpa-major-age", students -> students
+                .sorted(RANKING_COMPARATOR)
+                .collect(Collectors.toList()));
+        WORKLOADS.put("rank-gpa-major-age-radix", students -> {
+            boolean parallel = students.isParallel();
+            List<Student> rows = students.collect(Collectors.toList());
+            return parallel ? RANKING_SORT.parallelSort(rows) : RANKING_SORT.sort(rows);
+        });
+        WORKLOADS.put("shared-scan", students -> {
+            SharedScan<Student> scan = new SharedScan<>();
+            scan.add(Collectors.summarizingDouble(Student::getGpa));
+            scan.add(Collectors.groupingBy(Student::getMajor, Collectors.counting()));
+            scan.add(student -> student.getAge() <= 20, Collectors.counting());
+            return scan.run(students);
+        });
+    }
+
+    private Workloads() {
+    }
+
+    static List<String> names() {
+        return Collections.unmodifiableList(new ArrayList<>(WORKLOADS.keySet()));
+    }
+
+    static Object run(String name, List<Student> data, boolean parallel) {
+        return WORKLOADS.get(name).apply(parallel ? data.parallelStream() : data.stream());
+    }
+}
@@ -0,0 +1,66 @@
+package com.learn.stream.collections;
+
+/**
+ * 开放寻址哈希表的公共工具方法
+ */
+final class Hashing {
+
+    /** 最大装载因子，超过后扩容 */
+    static final float LOAD_FACTOR = 0.75f;
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private Hashing() {
+    }
+
+    /**
+     * 打散哈希值的低位，避免 String/Integer 等哈希值在线性探测下形成长簇
+     */
+    static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * long键先折叠高低32位再打散，打包的复合键高位也能参与散列
+     */
+    static int mix(long h) {
+        return mix((int) (h ^ (h >>> 32)));
+    }
+
+    /**
+     * 能容纳expected个元素而不扩容的2的幂容量
+     */
+    static int tableSize(int expected) {
+        if (expected < 0) {
+            throw new IllegalArgumentException("预期容量不能为负数: " + expected);
+        }
+        long needed = (long) Math.ceil(expected / (double) LOAD_FACTOR);
+        if (needed > MAX_CAPACITY) {
+            throw new IllegalArgumentException("预期容量过大: " + expected);
+        }
+        int capacity = 8;
+        while (capacity < needed) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static int resizeThreshold(int capacity) {
+        return (int) (capacity * LOAD_FACTOR);
+    }
+
+    static int grow(int capacity) {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("哈希表容量已达上限: " + capacity);
+        }
+        return capacity << 1;
+    }
+
+    /**
+     * 线性探测删除时判断pos处的元素能否回填到空位last（其理想位置slot不在 (last, pos] 区间内）
+     */
+    static boolean canShift(int last, int slot, int pos) {
+        return last <= pos ? (last >= slot || slot > pos) : (last >= slot && slot > pos);
+    }
+}
@@ -0,0 +1,201 @@
+package com.learn.stream.collections;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
+
+/**
+ * int键 → double值 的开放寻址哈希表
+ * 线性探测，键和值都保存在基本类型数组中，用于代替 Map&lt;Integer, Double&gt;。
+ * 非线程安全。
+ */
+public class IntDoubleMap {
+
+    /**
+     * 遍历键值对的回调
+     */
+    @FunctionalInterface
+    public interface IntDoubleConsumer {
+        void accept(int key, double value);
+    }
+
+    private int[] keys;
+    private double[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public IntDoubleMap() {
+        this(16);
+    }
+
+    public IntDoubleMap(int expectedSize) {
+        allocate(Hashing.tableSize(expectedSize));
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    public double getOrDefault(int key, double defaultValue) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    public void put(int key, double value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = value;
+        } else {
+            insertAt(-index - 1, key, value);
+        }
+    }
+
+    /**
+     * 把delta累加到键对应的值上（不存在时视为0），返回累加后的值
+     */
+    public double addTo(int key, double delta) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            return values[index] += delta;
+        }
+        insertAt(-index - 1, key, delta);
+        return delta;
+    }
+
+    public boolean remove(int key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        shiftKeys(index);
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * 所有键，顺序不确定
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int next = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                result[next++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    public void forEach(IntDoubleConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public Map<Integer, Double> toMap() {
+        Map<Integer, Double> map = new HashMap<>(Hashing.tableSize(size));
+        forEach(map::put);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    /**
+     * 按int键分组求和，例如按年龄汇总GPA
+     */
+    public static <T> Collector<T, ?, IntDoubleMap> summing(ToIntFunction<? super T> keyMapper,
+                                                          ToDoubleFunction<? super T> valueMapper) {
+        return Collector.of(
+                IntDoubleMap::new,
+                (map, element) -> map.addTo(keyMapper.applyAsInt(element), valueMapper.applyAsDouble(element)),
+                (left, right) -> {
+                    right.forEach(left::addTo);
+                    return left;
+                },
+                Collector.Characteristics.UNORDERED);
+    }
+
+    private int indexOf(int key) {
+        int index = Hashing.mix(key) & mask;
+        while (used[index]) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -index - 1;
+    }
+
+    private void insertAt(int index, int key, double value) {
+        keys[index] = key;
+        values[index] = value;
+        used[index] = true;
+        if (++size > resizeAt) {
+            rehash(Hashing.grow(keys.length));
+        }
+    }
+
+    private void shiftKeys(int pos) {
+        int last;
+        while (true) {
+            pos = ((last = pos) + 1) & mask;
+            while (true) {
+                if (!used[pos]) {
+                    used[last] = false;
+                    return;
+                }
+                int slot = Hashing.mix(keys[pos]) & mask;
+                if (Hashing.canShift(last, slot, pos)) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = keys[pos];
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        double[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int index = Hashing.mix(oldKeys[i]) & mask;
+                while (used[index]) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+                used[index] = true;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new double[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeAt = Hashing.resizeThreshold(capacity);
+    }
+}
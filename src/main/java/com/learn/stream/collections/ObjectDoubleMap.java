@@ -0,0 +1,203 @@
+package com.learn.stream.collections;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collector;
+
+/**
+ * 对象键 → double值 的开放寻址哈希表
+ * 线性探测，值以double[]保存，读写都不装箱，用于代替 Map&lt;String, Double&gt;。
+ * 不支持null键，非线程安全。
+ *
+ * @param <K> 键类型
+ */
+public class ObjectDoubleMap<K> {
+
+    private Object[] keys;
+    private double[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public ObjectDoubleMap() {
+        this(16);
+    }
+
+    public ObjectDoubleMap(int expectedSize) {
+        allocate(Hashing.tableSize(expectedSize));
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public boolean containsKey(K key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * 查找键对应的值，不存在时返回defaultValue
+     */
+    public double getOrDefault(K key, double defaultValue) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    public void put(K key, double value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = value;
+        } else {
+            insertAt(-index - 1, key, value);
+        }
+    }
+
+    /**
+     * 把delta累加到键对应的值上（不存在时视为0），返回累加后的值
+     */
+    public double addTo(K key, double delta) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            return values[index] += delta;
+        }
+        insertAt(-index - 1, key, delta);
+        return delta;
+    }
+
+    public boolean remove(K key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        shiftKeys(index);
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(ObjDoubleConsumer<? super K> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                action.accept((K) keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * 转换为装箱的HashMap，用于打印或对接现有API
+     */
+    public Map<K, Double> toMap() {
+        Map<K, Double> map = new HashMap<>(Hashing.tableSize(size));
+        forEach(map::put);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    /**
+     * 收集为ObjectDoubleMap，键重复时后出现的值覆盖先出现的值
+     */
+    public static <T, K> Collector<T, ?, ObjectDoubleMap<K>> collector(Function<? super T, ? extends K> keyMapper,
+                                                                        ToDoubleFunction<? super T> valueMapper) {
+        return Collector.of(
+                ObjectDoubleMap::new,
+                (map, element) -> map.put(keyMapper.apply(element), valueMapper.applyAsDouble(element)),
+                (left, right) -> {
+                    right.forEach(left::put);
+                    return left;
+                });
+    }
+
+    /**
+     * 按键分组求和，相当于 groupingBy(keyMapper, summingDouble(valueMapper)) 的无装箱版本
+     */
+    public static <T, K> Collector<T, ?, ObjectDoubleMap<K>> summing(Function<? super T, ? extends K> keyMapper,
+                                                                      ToDoubleFunction<? super T> valueMapper) {
+        return Collector.of(
+                ObjectDoubleMap::new,
+                (map, element) -> map.addTo(keyMapper.apply(element), valueMapper.applyAsDouble(element)),
+                (left, right) -> {
+                    right.forEach(left::addTo);
+                    return left;
+                },
+                Collector.Characteristics.UNORDERED);
+    }
+
+    private int indexOf(Object key) {
+        Objects.requireNonNull(key, "ObjectDoubleMap不支持null键");
+        int index = Hashing.mix(key.hashCode()) & mask;
+        Object existing;
+        while ((existing = keys[index]) != null) {
+            if (existing.equals(key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -index - 1;
+    }
+
+    private void insertAt(int index, K key, double value) {
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeAt) {
+            rehash(Hashing.grow(keys.length));
+        }
+    }
+
+    private void shiftKeys(int pos) {
+        int last;
+        while (true) {
+            pos = ((last = pos) + 1) & mask;
+            Object current;
+            while (true) {
+                if ((current = keys[pos]) == null) {
+                    keys[last] = null;
+                    return;
+                }
+                int slot = Hashing.mix(current.hashCode()) & mask;
+                if (Hashing.canShift(last, slot, pos)) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = current;
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int capacity) {
+        Object[] oldKeys = keys;
+        double[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            Object key = oldKeys[i];
+            if (key != null) {
+                int index = Hashing.mix(key.hashCode()) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new double[capacity];
+        mask = capacity - 1;
+        resizeAt = Hashing.resizeThreshold(capacity);
+    }
+}
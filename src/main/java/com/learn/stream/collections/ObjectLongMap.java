@@ -0,0 +1,210 @@
+package com.learn.stream.collections;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+/**
+ * 对象键 → long值 的开放寻址哈希表
+ * 线性探测，值以long[]保存，读写都不装箱，用于代替 Map&lt;String, Long&gt;。
+ * 不支持null键，非线程安全。
+ *
+ * @param <K> 键类型
+ */
+public class ObjectLongMap<K> {
+
+    private Object[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public ObjectLongMap() {
+        this(16);
+    }
+
+    public ObjectLongMap(int expectedSize) {
+        allocate(Hashing.tableSize(expectedSize));
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public boolean containsKey(K key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * 查找键对应的值，不存在时返回defaultValue
+     */
+    public long getOrDefault(K key, long defaultValue) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    public void put(K key, long value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = value;
+        } else {
+            insertAt(-index - 1, key, value);
+        }
+    }
+
+    /**
+     * 把delta累加到键对应的值上（不存在时视为0），返回累加后的值
+     */
+    public long addTo(K key, long delta) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            return values[index] += delta;
+        }
+        insertAt(-index - 1, key, delta);
+        return delta;
+    }
+
+    public boolean remove(K key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        shiftKeys(index);
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(ObjLongConsumer<? super K> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                action.accept((K) keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * 转换为装箱的HashMap，用于打印或对接现有API
+     */
+    public Map<K, Long> toMap() {
+        Map<K, Long> map = new HashMap<>(Hashing.tableSize(size));
+        forEach(map::put);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    /**
+     * 收集为ObjectLongMap，键重复时后出现的值覆盖先出现的值
+     */
+    public static <T, K> Collector<T, ?, ObjectLongMap<K>> collector(Function<? super T, ? extends K> keyMapper,
+                                                                        ToLongFunction<? super T> valueMapper) {
+        return Collector.of(
+                ObjectLongMap::new,
+                (map, element) -> map.put(keyMapper.apply(element), valueMapper.applyAsLong(element)),
+                (left, right) -> {
+                    right.forEach(left::put);
+                    return left;
+                });
+    }
+
+    /**
+     * 按键计数，相当于 groupingBy(keyMapper, counting()) 的无装箱版本
+     */
+    public static <T, K> Collector<T, ?, ObjectLongMap<K>> counting(Function<? super T, ? extends K> keyMapper) {
+        return summing(keyMapper, element -> 1L);
+    }
+
+    /**
+     * 按键分组求和，相当于 groupingBy(keyMapper, summingLong(valueMapper)) 的无装箱版本
+     */
+    public static <T, K> Collector<T, ?, ObjectLongMap<K>> summing(Function<? super T, ? extends K> keyMapper,
+                                                                      ToLongFunction<? super T> valueMapper) {
+        return Collector.of(
+                ObjectLongMap::new,
+                (map, element) -> map.addTo(keyMapper.apply(element), valueMapper.applyAsLong(element)),
+                (left, right) -> {
+                    right.forEach(left::addTo);
+                    return left;
+                },
+                Collector.Characteristics.UNORDERED);
+    }
+
+    private int indexOf(Object key) {
+        Objects.requireNonNull(key, "ObjectLongMap不支持null键");
+        int index = Hashing.mix(key.hashCode()) & mask;
+        Object existing;
+        while ((existing = keys[index]) != null) {
+            if (existing.equals(key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -index - 1;
+    }
+
+    private void insertAt(int index, K key, long value) {
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeAt) {
+            rehash(Hashing.grow(keys.length));
+        }
+    }
+
+    private void shiftKeys(int pos) {
+        int last;
+        while (true) {
+            pos = ((last = pos) + 1) & mask;
+            Object current;
+            while (true) {
+                if ((current = keys[pos]) == null) {
+                    keys[last] = null;
+                    return;
+                }
+                int slot = Hashing.mix(current.hashCode()) & mask;
+                if (Hashing.canShift(last, slot, pos)) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = current;
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int capacity) {
+        Object[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            Object key = oldKeys[i];
+            if (key != null) {
+                int index = Hashing.mix(key.hashCode()) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = Hashing.resizeThreshold(capacity);
+    }
+}
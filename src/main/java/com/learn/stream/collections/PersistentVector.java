@@ -0,0 +1,298 @@
+package com.learn.stream.collections;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 持久化向量（不可变、结构共享）
+ * 元素保存在每层32个分支的树中，最后不满32个的元素单独放在尾部数组里。
+ * set/append 只复制从根到目标叶子的一条路径（log32(n) 个长度为32的数组），其余节点与旧版本共享，
+ * 旧版本保持不变，因此一个版本可以在任意多个线程中无锁读取。
+ *
+ * 向量本身不可变，但不会复制元素；元素如果是可变对象，需要由调用方保证发布后不再修改。
+ *
+ * @param <T> 元素类型
+ */
+public final class PersistentVector<T> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<?> EMPTY =
+            new PersistentVector<>(0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentVector<T> empty() {
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    /**
+     * 用已有元素批量构建，自底向上建树，不经过逐个append的路径复制
+     */
+    public static <T> PersistentVector<T> of(Collection<? extends T> elements) {
+        Object[] values = elements.toArray();
+        int n = values.length;
+        if (n == 0) {
+            return empty();
+        }
+        int tailOffset = tailOffset(n);
+        Object[] tail = new Object[n - tailOffset];
+        System.arraycopy(values, tailOffset, tail, 0, tail.length);
+        if (tailOffset == 0) {
+            return new PersistentVector<>(n, BITS, new Object[WIDTH], tail);
+        }
+        Object[] nodes = new Object[tailOffset / WIDTH];
+        for (int i = 0; i < nodes.length; i++) {
+            Object[] leaf = new Object[WIDTH];
+            System.arraycopy(values, i * WIDTH, leaf, 0, WIDTH);
+            nodes[i] = leaf;
+        }
+        int shift = BITS;
+        while (nodes.length > WIDTH) {
+            Object[] parents = new Object[(nodes.length + WIDTH - 1) / WIDTH];
+            for (int i = 0; i < parents.length; i++) {
+                Object[] parent = new Object[WIDTH];
+                System.arraycopy(nodes, i * WIDTH, parent, 0, Math.min(WIDTH, nodes.length - i * WIDTH));
+                parents[i] = parent;
+            }
+            nodes = parents;
+            shift += BITS;
+        }
+        Object[] root = new Object[WIDTH];
+        System.arraycopy(nodes, 0, root, 0, nodes.length);
+        return new PersistentVector<>(n, shift, root, tail);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        checkIndex(index);
+        return (T) leafFor(index)[index & MASK];
+    }
+
+    /**
+     * 返回在末尾追加元素后的新版本
+     */
+    public PersistentVector<T> append(T value) {
+        if (size - tailOffset(size) < WIDTH) {
+            Object[] newTail = new Object[tail.length + 1];
+            System.arraycopy(tail, 0, newTail, 0, tail.length);
+            newTail[tail.length] = value;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+        // 尾部已满：把它作为叶子放入树中，树满时增加一层
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[]{value});
+    }
+
+    /**
+     * 返回替换index处元素后的新版本，只复制一条路径
+     */
+    public PersistentVector<T> set(int index, T value) {
+        checkIndex(index);
+        if (index >= tailOffset(size)) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = value;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, assoc(shift, root, index, value), tail);
+    }
+
+    /**
+     * 只读的List视图，支持随机访问
+     */
+    public List<T> asList() {
+        return new ListView<>(this);
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * 按下标区间拆分的Spliterator，遍历时每32个元素只定位一次叶子
+     */
+    public Spliterator<T> spliterator() {
+        return new VectorSpliterator<>(this, 0, size);
+    }
+
+    private static int tailOffset(int size) {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        if (index >= tailOffset(size)) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int subIndex = ((size - 1) >>> level) & MASK;
+        Object[] copy = parent.clone();
+        Object[] nodeToInsert;
+        if (level == BITS) {
+            nodeToInsert = tailNode;
+        } else {
+            Object[] child = (Object[]) parent[subIndex];
+            nodeToInsert = child != null ? pushTail(level - BITS, child, tailNode) : newPath(level - BITS, tailNode);
+        }
+        copy[subIndex] = nodeToInsert;
+        return copy;
+    }
+
+    private static Object[] newPath(int level, Object[] node) {
+        if (level == 0) {
+            return node;
+        }
+        Object[] path = new Object[WIDTH];
+        path[0] = newPath(level - BITS, node);
+        return path;
+    }
+
+    private static Object[] assoc(int level, Object[] node, int index, Object value) {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = value;
+        } else {
+            int subIndex = (index >>> level) & MASK;
+            copy[subIndex] = assoc(level - BITS, (Object[]) node[subIndex], index, value);
+        }
+        return copy;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("下标: " + index + ", 大小: " + size);
+        }
+    }
+
+    private static final class ListView<T> extends AbstractList<T> implements RandomAccess {
+        private final PersistentVector<T> vector;
+
+        ListView(PersistentVector<T> vector) {
+            this.vector = vector;
+        }
+
+        @Override
+        public T get(int index) {
+            return vector.get(index);
+        }
+
+        @Override
+        public int size() {
+            return vector.size;
+        }
+
+        @Override
+        public Spliterator<T> spliterator() {
+            return vector.spliterator();
+        }
+    }
+
+    private static final class VectorSpliterator<T> implements Spliterator<T> {
+        private final PersistentVector<T> vector;
+        private int index;
+        private final int end;
+
+        VectorSpliterator(PersistentVector<T> vector, int from, int to) {
+            this.vector = vector;
+            this.index = from;
+            this.end = to;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept((T) vector.leafFor(index)[index & MASK]);
+            index++;
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super T> action) {
+            int i = index;
+            index = end;
+            while (i < end) {
+                Object[] leaf = vector.leafFor(i);
+                int stop = Math.min(end, (i & ~MASK) + WIDTH);
+                for (int j = i & MASK; i < stop; i++, j++) {
+                    action.accept((T) leaf[j]);
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int remaining = end - index;
+            if (remaining < 2 * WIDTH) {
+                return null;
+            }
+            // 在叶子边界上切分，两半都不会跨叶子重复定位
+            int mid = ((index + remaining / 2) >>> BITS) << BITS;
+            if (mid <= index) {
+                return null;
+            }
+            Spliterator<T> prefix = new VectorSpliterator<>(vector, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
+        }
+    }
+}
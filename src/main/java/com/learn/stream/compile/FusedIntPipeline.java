@@ -0,0 +1,88 @@
+package com.learn.stream.compile;
+
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * 可编译的int管道，支持的操作是IntStream的一个子集：filter、map、mapToLong 以及 count、sum、reduce
+ * 终止操作执行时由 {@link PipelineCompiler} 把整条管道编译成一个循环，用法与Stream相同：
+ * <pre>
+ * long count = FusedIntPipeline.of(numbers)
+ *         .filter(n -&gt; n &gt; 50000)
+ *         .filter(n -&gt; n % 2 == 0)
+ *         .count();
+ * </pre>
+ * 与Stream不同，管道对象不可变、可以重复执行；sum 的结果为long，不会像 IntStream.sum 那样溢出。
+ */
+public final class FusedIntPipeline {
+
+    private final PipelinePlan plan;
+
+    FusedIntPipeline(PipelinePlan plan) {
+        this.plan = plan;
+    }
+
+    public static FusedIntPipeline of(int[] data) {
+        return new FusedIntPipeline(new PipelinePlan(PipelinePlan.SourceKind.INT_ARRAY, data, 0, data.length));
+    }
+
+    /**
+     * 以List为数据源；非RandomAccess的列表先复制为数组。元素不能为null
+     */
+    public static FusedIntPipeline of(List<Integer> data) {
+        if (!(data instanceof RandomAccess)) {
+            return of(data.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return new FusedIntPipeline(new PipelinePlan(PipelinePlan.SourceKind.INT_LIST, data, 0, data.size()));
+    }
+
+    /**
+     * 与 IntStream.range 相同的区间 [startInclusive, endExclusive)
+     */
+    public static FusedIntPipeline range(int startInclusive, int endExclusive) {
+        return new FusedIntPipeline(new PipelinePlan(PipelinePlan.SourceKind.RANGE, null,
+                startInclusive, Math.max(startInclusive, endExclusive)));
+    }
+
+    public FusedIntPipeline filter(IntPredicate predicate) {
+        return new FusedIntPipeline(plan.then(PipelinePlan.OpKind.INT_FILTER, predicate));
+    }
+
+    public FusedIntPipeline map(IntUnaryOperator mapper) {
+        return new FusedIntPipeline(plan.then(PipelinePlan.OpKind.INT_MAP, mapper));
+    }
+
+    public FusedLongPipeline mapToLong(IntToLongFunction mapper) {
+        return new FusedLongPipeline(plan.then(PipelinePlan.OpKind.INT_TO_LONG, mapper));
+    }
+
+    /**
+     * 终止操作按数据块并行执行
+     */
+    public FusedIntPipeline parallel() {
+        return new FusedIntPipeline(plan.withParallel(true));
+    }
+
+    public FusedIntPipeline sequential() {
+        return new FusedIntPipeline(plan.withParallel(false));
+    }
+
+    public long count() {
+        return PipelineCompiler.execute(plan, PipelinePlan.Terminal.COUNT, null, 0L);
+    }
+
+    public long sum() {
+        return PipelineCompiler.execute(plan, PipelinePlan.Terminal.SUM, null, 0L);
+    }
+
+    /**
+     * 归约，元素先扩展为long；并行执行时与 Stream.reduce 一样要求identity是op的单位元且op满足结合律
+     */
+    public long reduce(long identity, LongBinaryOperator op) {
+        return PipelineCompiler.execute(plan, PipelinePlan.Terminal.REDUCE, op, identity);
+    }
+}
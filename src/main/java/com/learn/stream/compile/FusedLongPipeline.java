@@ -0,0 +1,48 @@
+package com.learn.stream.compile;
+
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * 可编译的long管道，由 {@link FusedIntPipeline#mapToLong} 得到
+ */
+public final class FusedLongPipeline {
+
+    private final PipelinePlan plan;
+
+    FusedLongPipeline(PipelinePlan plan) {
+        this.plan = plan;
+    }
+
+    public FusedLongPipeline filter(LongPredicate predicate) {
+        return new FusedLongPipeline(plan.then(PipelinePlan.OpKind.LONG_FILTER, predicate));
+    }
+
+    public FusedLongPipeline map(LongUnaryOperator mapper) {
+        return new FusedLongPipeline(plan.then(PipelinePlan.OpKind.LONG_MAP, mapper));
+    }
+
+    public FusedLongPipeline parallel() {
+        return new FusedLongPipeline(plan.withParallel(true));
+    }
+
+    public FusedLongPipeline sequential() {
+        return new FusedLongPipeline(plan.withParallel(false));
+    }
+
+    public long count() {
+        return PipelineCompiler.execute(plan, PipelinePlan.Terminal.COUNT, null, 0L);
+    }
+
+    public long sum() {
+        return PipelineCompiler.execute(plan, PipelinePlan.Terminal.SUM, null, 0L);
+    }
+
+    /**
+     * 归约；并行执行时要求identity是op的单位元且op满足结合律
+     */
+    public long reduce(long identity, LongBinaryOperator op) {
+        return PipelineCompiler.execute(plan, PipelinePlan.Terminal.REDUCE, op, identity);
+    }
+}
@@ -0,0 +1,18 @@
+package com.learn.stream.compile;
+
+/**
+ * 编译后的管道内核：对 [from, to) 区间内的元素执行融合后的 filter/map 链并归约
+ * 由 {@link PipelineCompiler} 生成的类实现，需要是public以便另一个类加载器中的生成类访问，
+ * 一般不直接使用。
+ */
+public interface Kernel {
+
+    /**
+     * @param source    数据源：int[]、List&lt;Integer&gt;，区间数据源为null
+     * @param from      起始下标（区间数据源为起始值），包含
+     * @param to        结束下标（区间数据源为结束值），不包含
+     * @param functions 各个操作的函数对象，按操作顺序排列，最后一个可能是归约函数
+     * @param identity  归约的初始值
+     */
+    long run(Object source, int from, int to, Object[] functions, long identity);
+}
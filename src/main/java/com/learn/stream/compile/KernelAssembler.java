@@ -0,0 +1,449 @@
+package com.learn.stream.compile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 为一个执行计划生成 {@link Kernel} 实现类的字节码
+ *
+ * 生成的 run 方法是一个普通的计数循环，所有 filter/map 依次内联在循环体中，
+ * 每个函数对象在循环前取出并转换为具体的函数式接口类型。
+ * 类文件版本为49（Java 5），由类型推断校验器校验，不需要生成StackMapTable。
+ */
+final class KernelAssembler {
+
+    private static final int CLASS_VERSION = 49;
+
+    // 指令
+    private static final int ICONST_0 = 0x03;
+    private static final int LCONST_1 = 0x0a;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int ILOAD = 0x15;
+    private static final int LLOAD = 0x16;
+    private static final int ALOAD = 0x19;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int IALOAD = 0x2e;
+    private static final int AALOAD = 0x32;
+    private static final int ISTORE = 0x36;
+    private static final int LSTORE = 0x37;
+    private static final int ASTORE = 0x3a;
+    private static final int LADD = 0x61;
+    private static final int IINC = 0x84;
+    private static final int I2L = 0x85;
+    private static final int IFEQ = 0x99;
+    private static final int IF_ICMPGE = 0xa2;
+    private static final int GOTO = 0xa7;
+    private static final int LRETURN = 0xad;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKEINTERFACE = 0xb9;
+    private static final int CHECKCAST = 0xc0;
+
+    // run(Object source, int from, int to, Object[] functions, long identity) 的参数位置
+    private static final int ARG_SOURCE = 1;
+    private static final int ARG_FROM = 2;
+    private static final int ARG_TO = 3;
+    private static final int ARG_FUNCTIONS = 4;
+    private static final int ARG_IDENTITY = 5;
+    private static final int FIRST_LOCAL = 7;
+
+    private final ConstantPool pool = new ConstantPool();
+
+    private KernelAssembler() {
+    }
+
+    /**
+     * 生成类文件
+     *
+     * @param className 二进制类名，如 com.learn.stream.compile.gen.Kernel1
+     */
+    static byte[] assemble(String className, PipelinePlan.SourceKind sourceKind,
+                           List<PipelinePlan.OpKind> ops, PipelinePlan.Terminal terminal) {
+        return new KernelAssembler().classFile(className.replace('.', '/'), sourceKind, ops, terminal);
+    }
+
+    private byte[] classFile(String internalName, PipelinePlan.SourceKind sourceKind,
+                             List<PipelinePlan.OpKind> ops, PipelinePlan.Terminal terminal) {
+        int thisClass = pool.classRef(internalName);
+        int superClass = pool.classRef("java/lang/Object");
+        int kernelInterface = pool.classRef(Kernel.class.getName().replace('.', '/'));
+        byte[] constructor = constructor();
+        byte[] run = runMethod(sourceKind, ops, terminal);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            pool.writeTo(out);
+            out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(kernelInterface);
+            out.writeShort(0); // 没有字段
+            out.writeShort(2);
+            out.write(constructor);
+            out.write(run);
+            out.writeShort(0); // 没有类属性
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] constructor() {
+        Code code = new Code();
+        code.op(ALOAD_0);
+        code.op(INVOKESPECIAL);
+        code.u2(pool.methodRef("java/lang/Object", "<init>", "()V"));
+        code.op(RETURN);
+        return method("<init>", "()V", code, 1, 1);
+    }
+
+    private byte[] runMethod(PipelinePlan.SourceKind sourceKind, List<PipelinePlan.OpKind> ops,
+                             PipelinePlan.Terminal terminal) {
+        Code code = new Code();
+        int nextLocal = FIRST_LOCAL;
+
+        // 数据源转换为具体类型
+        int sourceLocal = nextLocal++;
+        if (sourceKind != PipelinePlan.SourceKind.RANGE) {
+            code.local(ALOAD, ARG_SOURCE);
+            code.op(CHECKCAST);
+            code.u2(pool.classRef(sourceKind == PipelinePlan.SourceKind.INT_ARRAY ? "[I" : "java/util/List"));
+            code.local(ASTORE, sourceLocal);
+        }
+
+        // 函数对象转换为具体接口后放入局部变量，循环中不再访问数组
+        int functionCount = ops.size() + (terminal == PipelinePlan.Terminal.REDUCE ? 1 : 0);
+        int[] functionLocals = new int[functionCount];
+        for (int i = 0; i < functionCount; i++) {
+            String iface = i < ops.size() ? interfaceOf(ops.get(i)) : "java/util/function/LongBinaryOperator";
+            code.local(ALOAD, ARG_FUNCTIONS);
+            code.pushInt(i);
+            code.op(AALOAD);
+            code.op(CHECKCAST);
+            code.u2(pool.classRef(iface));
+            functionLocals[i] = nextLocal++;
+            code.local(ASTORE, functionLocals[i]);
+        }
+
+        int index = nextLocal++;
+        int intValue = nextLocal++;
+        int longValue = nextLocal;
+        nextLocal += 2;
+        int accumulator = nextLocal;
+        nextLocal += 2;
+
+        code.local(LLOAD, ARG_IDENTITY);
+        code.local(LSTORE, accumulator);
+        code.local(ILOAD, ARG_FROM);
+        code.local(ISTORE, index);
+
+        int loopStart = code.position();
+        code.local(ILOAD, index);
+        code.local(ILOAD, ARG_TO);
+        int exitJump = code.jump(IF_ICMPGE);
+
+        // 取出当前元素
+        switch (sourceKind) {
+            case RANGE:
+                code.local(ILOAD, index);
+                break;
+            case INT_ARRAY:
+                code.local(ALOAD, sourceLocal);
+                code.local(ILOAD, index);
+                code.op(IALOAD);
+                break;
+            default:
+                code.local(ALOAD, sourceLocal);
+                code.local(ILOAD, index);
+                code.invokeInterface(pool.interfaceMethodRef("java/util/List", "get", "(I)Ljava/lang/Object;"), 2);
+                code.op(CHECKCAST);
+                code.u2(pool.classRef("java/lang/Integer"));
+                code.op(INVOKEVIRTUAL);
+                code.u2(pool.methodRef("java/lang/Integer", "intValue", "()I"));
+                break;
+        }
+        code.local(ISTORE, intValue);
+
+        // 融合后的操作链：filter不通过时直接跳到下一轮循环
+        List<Integer> continueJumps = new ArrayList<>();
+        boolean isLong = false;
+        for (int i = 0; i < ops.size(); i++) {
+            code.local(ALOAD, functionLocals[i]);
+            switch (ops.get(i)) {
+                case INT_FILTER:
+                    code.local(ILOAD, intValue);
+                    code.invokeInterface(pool.interfaceMethodRef("java/util/function/IntPredicate", "test", "(I)Z"), 2);
+                    continueJumps.add(code.jump(IFEQ));
+                    break;
+                case INT_MAP:
+                    code.local(ILOAD, intValue);
+                    code.invokeInterface(pool.interfaceMethodRef("java/util/function/IntUnaryOperator", "applyAsInt", "(I)I"), 2);
+                    code.local(ISTORE, intValue);
+                    break;
+                case INT_TO_LONG:
+                    code.local(ILOAD, intValue);
+                    code.invokeInterface(pool.interfaceMethodRef("java/util/function/IntToLongFunction", "applyAsLong", "(I)J"), 2);
+                    code.local(LSTORE, longValue);
+                    isLong = true;
+                    break;
+                case LONG_FILTER:
+                    code.local(LLOAD, longValue);
+                    code.invokeInterface(pool.interfaceMethodRef("java/util/function/LongPredicate", "test", "(J)Z"), 3);
+                    continueJumps.add(code.jump(IFEQ));
+                    break;
+                case LONG_MAP:
+                    code.local(LLOAD, longValue);
+                    code.invokeInterface(pool.interfaceMethodRef("java/util/function/LongUnaryOperator", "applyAsLong", "(J)J"), 3);
+                    code.local(LSTORE, longValue);
+                    break;
+                default:
+                    throw new IllegalStateException("未知操作: " + ops.get(i));
+            }
+        }
+
+        // 归约
+        switch (terminal) {
+            case COUNT:
+                code.local(LLOAD, accumulator);
+                code.op(LCONST_1);
+                code.op(LADD);
+                break;
+            case SUM:
+                code.local(LLOAD, accumulator);
+                loadValueAsLong(code, isLong, intValue, longValue);
+                code.op(LADD);
+                break;
+            default:
+                code.local(ALOAD, functionLocals[functionCount - 1]);
+                code.local(LLOAD, accumulator);
+                loadValueAsLong(code, isLong, intValue, longValue);
+                code.invokeInterface(pool.interfaceMethodRef("java/util/function/LongBinaryOperator", "applyAsLong", "(JJ)J"), 5);
+                break;
+        }
+        code.local(LSTORE, accumulator);
+
+        int continueTarget = code.position();
+        for (int jump : continueJumps) {
+            code.patch(jump, continueTarget);
+        }
+        code.op(IINC);
+        code.u1(index);
+        code.u1(1);
+        code.patch(code.jump(GOTO), loopStart);
+
+        code.patch(exitJump, code.position());
+        code.local(LLOAD, accumulator);
+        code.op(LRETURN);
+
+        return method("run", "(Ljava/lang/Object;II[Ljava/lang/Object;J)J", code, 6, nextLocal);
+    }
+
+    private static void loadValueAsLong(Code code, boolean isLong, int intValue, int longValue) {
+        if (isLong) {
+            code.local(LLOAD, longValue);
+        } else {
+            code.local(ILOAD, intValue);
+            code.op(I2L);
+        }
+    }
+
+    private static String interfaceOf(PipelinePlan.OpKind op) {
+        switch (op) {
+            case INT_FILTER: return "java/util/function/IntPredicate";
+            case INT_MAP: return "java/util/function/IntUnaryOperator";
+            case INT_TO_LONG: return "java/util/function/IntToLongFunction";
+            case LONG_FILTER: return "java/util/function/LongPredicate";
+            case LONG_MAP: return "java/util/function/LongUnaryOperator";
+            default: throw new IllegalStateException("未知操作: " + op);
+        }
+    }
+
+    private byte[] method(String name, String descriptor, Code code, int maxStack, int maxLocals) {
+        int nameIndex = pool.utf8(name);
+        int descriptorIndex = pool.utf8(descriptor);
+        int codeAttribute = pool.utf8("Code");
+        byte[] bytecode = code.toByteArray();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeShort(0x0001); // public
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            out.writeInt(2 + 2 + 4 + bytecode.length + 2 + 2);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(bytecode.length);
+            out.write(bytecode);
+            out.writeShort(0); // 异常表
+            out.writeShort(0); // 属性
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 方法体字节码，跳转偏移在目标确定后回填
+     */
+    private static final class Code {
+        private byte[] bytes = new byte[256];
+        private int length;
+
+        int position() {
+            return length;
+        }
+
+        void u1(int value) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, length * 2);
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void u2(int value) {
+            u1(value >>> 8);
+            u1(value);
+        }
+
+        void op(int opcode) {
+            u1(opcode);
+        }
+
+        void local(int opcode, int slot) {
+            if (slot > 255) {
+                throw new IllegalStateException("操作过多，局部变量超出范围");
+            }
+            u1(opcode);
+            u1(slot);
+        }
+
+        void pushInt(int value) {
+            if (value <= 5) {
+                op(ICONST_0 + value);
+            } else if (value <= Byte.MAX_VALUE) {
+                op(BIPUSH);
+                u1(value);
+            } else {
+                op(SIPUSH);
+                u2(value);
+            }
+        }
+
+        void invokeInterface(int methodRef, int argumentSlots) {
+            op(INVOKEINTERFACE);
+            u2(methodRef);
+            u1(argumentSlots);
+            u1(0);
+        }
+
+        /**
+         * 写入跳转指令，返回其位置，偏移量稍后用 {@link #patch} 回填
+         */
+        int jump(int opcode) {
+            int at = length;
+            op(opcode);
+            u2(0);
+            return at;
+        }
+
+        void patch(int jumpAt, int target) {
+            int offset = target - jumpAt;
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new IllegalStateException("跳转距离过大");
+            }
+            bytes[jumpAt + 1] = (byte) (offset >>> 8);
+            bytes[jumpAt + 2] = (byte) offset;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+
+    /**
+     * 常量池，相同的常量只写入一次
+     */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> indices = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) {
+            return entry("U" + value, () -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            });
+        }
+
+        int classRef(String internalName) {
+            int name = utf8(internalName);
+            return entry("C" + internalName, () -> {
+                out.writeByte(7);
+                out.writeShort(name);
+            });
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            return memberRef(10, owner, name, descriptor);
+        }
+
+        int interfaceMethodRef(String owner, String name, String descriptor) {
+            return memberRef(11, owner, name, descriptor);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) {
+            int ownerIndex = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = entry("N" + name + ":" + descriptor, () -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return entry("M" + tag + owner + "." + name + descriptor, () -> {
+                out.writeByte(tag);
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        private int entry(String key, Writer writer) {
+            Integer index = indices.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            indices.put(key, count);
+            return count++;
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            target.writeShort(count);
+            out.flush();
+            bytes.writeTo(target);
+        }
+
+        private interface Writer {
+            void write() throws IOException;
+        }
+    }
+}
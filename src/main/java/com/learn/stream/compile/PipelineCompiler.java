@@ -0,0 +1,219 @@
+package com.learn.stream.compile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * 管道编译器
+ * Stream中每个操作是一个Sink，元素经过 Sink.accept 的接口调用逐级传递；很多管道共用这些调用点后，
+ * 调用点变成多态的，JIT无法内联各个lambda。本编译器为每种管道"形状"生成一个专用类，
+ * 把整条 filter/map 链和归约写成一个计数循环，每个lambda在该类中有自己的调用点，JIT可以全部内联。
+ *
+ * 形状 = 数据源类型 + 操作序列 + 终止操作 + 各个lambda的实现类。同一行代码中的lambda实现类固定，
+ * 因此同一条管道反复执行时只在第一次生成类，之后直接从缓存取出；捕获的变量作为参数传入，不影响缓存。
+ * 生成失败时（例如运行环境禁止定义类）退回到解释执行，结果相同。
+ */
+public final class PipelineCompiler {
+
+    private static final String GENERATED_PACKAGE = "com.learn.stream.compile.gen.";
+
+    private static final Map<Shape, Kernel> CACHE = new ConcurrentHashMap<>();
+    private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+    private static final LongAdder CACHE_HITS = new LongAdder();
+    private static final LongAdder FALLBACKS = new LongAdder();
+
+    private PipelineCompiler() {
+    }
+
+    /**
+     * 已生成的内核类个数
+     */
+    public static int getCompiledCount() {
+        return CACHE.size();
+    }
+
+    public static long getCacheHits() {
+        return CACHE_HITS.sum();
+    }
+
+    /**
+     * 生成失败而退回解释执行的次数
+     */
+    public static long getFallbackCount() {
+        return FALLBACKS.sum();
+    }
+
+    /**
+     * 执行计划：顺序执行时只调用一次内核；并行时把区间切成若干块在ForkJoinPool中执行，再合并各块的结果
+     */
+    static long execute(PipelinePlan plan, PipelinePlan.Terminal terminal, LongBinaryOperator reducer, long identity) {
+        List<Object> functionList = new ArrayList<>(plan.functions);
+        if (terminal == PipelinePlan.Terminal.REDUCE) {
+            functionList.add(reducer);
+        }
+        Object[] functions = functionList.toArray();
+        Kernel kernel = kernelFor(plan, terminal, functions);
+
+        int from = plan.from;
+        int to = plan.to;
+        long size = (long) to - from;
+        int chunks = plan.parallel ? (int) Math.min(size / 1024, ForkJoinPool.getCommonPoolParallelism() * 4L) : 1;
+        if (chunks <= 1) {
+            return kernel.run(plan.source, from, to, functions, identity);
+        }
+        LongBinaryOperator combiner = terminal == PipelinePlan.Terminal.REDUCE ? reducer : Long::sum;
+        long chunkIdentity = terminal == PipelinePlan.Terminal.REDUCE ? identity : 0L;
+        return IntStream.range(0, chunks)
+                .parallel()
+                .mapToLong(chunk -> kernel.run(plan.source,
+                        (int) (from + size * chunk / chunks),
+                        (int) (from + size * (chunk + 1) / chunks),
+                        functions, chunkIdentity))
+                .reduce(chunkIdentity, combiner);
+    }
+
+    private static Kernel kernelFor(PipelinePlan plan, PipelinePlan.Terminal terminal, Object[] functions) {
+        Shape shape = new Shape(plan.sourceKind, plan.ops, terminal, functions);
+        Kernel kernel = CACHE.get(shape);
+        if (kernel != null) {
+            CACHE_HITS.increment();
+            return kernel;
+        }
+        return CACHE.computeIfAbsent(shape, key -> generate(plan, terminal));
+    }
+
+    private static Kernel generate(PipelinePlan plan, PipelinePlan.Terminal terminal) {
+        String className = GENERATED_PACKAGE + "FusedKernel" + CLASS_COUNTER.incrementAndGet();
+        try {
+            byte[] classFile = KernelAssembler.assemble(className, plan.sourceKind, plan.ops, terminal);
+            Class<?> kernelClass = new KernelLoader(Kernel.class.getClassLoader()).define(className, classFile);
+            return (Kernel) kernelClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | SecurityException e) {
+            FALLBACKS.increment();
+            return new InterpretedKernel(plan.sourceKind, plan.ops, terminal);
+        }
+    }
+
+    /**
+     * 每个生成的类使用单独的类加载器，不再使用时可以被卸载
+     */
+    private static final class KernelLoader extends ClassLoader {
+        KernelLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+
+    /**
+     * 缓存键：管道形状与各个函数对象的实现类
+     */
+    private static final class Shape {
+        private final PipelinePlan.SourceKind sourceKind;
+        private final List<PipelinePlan.OpKind> ops;
+        private final PipelinePlan.Terminal terminal;
+        private final List<Class<?>> functionClasses;
+        private final int hash;
+
+        Shape(PipelinePlan.SourceKind sourceKind, List<PipelinePlan.OpKind> ops,
+              PipelinePlan.Terminal terminal, Object[] functions) {
+            this.sourceKind = sourceKind;
+            this.ops = ops;
+            this.terminal = terminal;
+            this.functionClasses = new ArrayList<>(functions.length);
+            for (Object function : functions) {
+                functionClasses.add(function.getClass());
+            }
+            this.hash = ((sourceKind.hashCode() * 31 + ops.hashCode()) * 31 + terminal.hashCode()) * 31
+                    + functionClasses.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Shape)) return false;
+            Shape other = (Shape) o;
+            return sourceKind == other.sourceKind && terminal == other.terminal
+                    && ops.equals(other.ops) && functionClasses.equals(other.functionClasses);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 解释执行的内核，与生成的代码逻辑相同，用于无法定义类的环境
+     */
+    private static final class InterpretedKernel implements Kernel {
+        private final PipelinePlan.SourceKind sourceKind;
+        private final PipelinePlan.OpKind[] ops;
+        private final PipelinePlan.Terminal terminal;
+
+        InterpretedKernel(PipelinePlan.SourceKind sourceKind, List<PipelinePlan.OpKind> ops,
+                          PipelinePlan.Terminal terminal) {
+            this.sourceKind = sourceKind;
+            this.ops = ops.toArray(new PipelinePlan.OpKind[0]);
+            this.terminal = terminal;
+        }
+
+        @Override
+        public long run(Object source, int from, int to, Object[] functions, long identity) {
+            long accumulator = identity;
+            elements:
+            for (int i = from; i < to; i++) {
+                int intValue;
+                switch (sourceKind) {
+                    case RANGE: intValue = i; break;
+                    case INT_ARRAY: intValue = ((int[]) source)[i]; break;
+                    default: intValue = (Integer) ((List<?>) source).get(i); break;
+                }
+                long longValue = 0;
+                boolean isLong = false;
+                for (int op = 0; op < ops.length; op++) {
+                    Object function = functions[op];
+                    switch (ops[op]) {
+                        case INT_FILTER:
+                            if (!((IntPredicate) function).test(intValue)) continue elements;
+                            break;
+                        case INT_MAP:
+                            intValue = ((IntUnaryOperator) function).applyAsInt(intValue);
+                            break;
+                        case INT_TO_LONG:
+                            longValue = ((IntToLongFunction) function).applyAsLong(intValue);
+                            isLong = true;
+                            break;
+                        case LONG_FILTER:
+                            if (!((LongPredicate) function).test(longValue)) continue elements;
+                            break;
+                        default:
+                            longValue = ((LongUnaryOperator) function).applyAsLong(longValue);
+                            break;
+                    }
+                }
+                long value = isLong ? longValue : intValue;
+                switch (terminal) {
+                    case COUNT: accumulator++; break;
+                    case SUM: accumulator += value; break;
+                    default: accumulator = ((LongBinaryOperator) functions[ops.length]).applyAsLong(accumulator, value); break;
+                }
+            }
+            return accumulator;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.learn.stream.compile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 管道的执行计划：数据源、操作链和是否并行，不可变
+ * 每追加一个操作都生成一个新的计划，与Stream一样可以从同一个前缀分出多条管道。
+ */
+final class PipelinePlan {
+
+    enum SourceKind { RANGE, INT_ARRAY, INT_LIST }
+
+    enum OpKind {
+        INT_FILTER, INT_MAP, INT_TO_LONG, LONG_FILTER, LONG_MAP
+    }
+
+    enum Terminal { COUNT, SUM, REDUCE }
+
+    final SourceKind sourceKind;
+    final Object source;
+    final int from;
+    final int to;
+    final List<OpKind> ops;
+    final List<Object> functions;
+    final boolean parallel;
+
+    PipelinePlan(SourceKind sourceKind, Object source, int from, int to) {
+        this(sourceKind, source, from, to, Collections.<OpKind>emptyList(), Collections.emptyList(), false);
+    }
+
+    private PipelinePlan(SourceKind sourceKind, Object source, int from, int to,
+                         List<OpKind> ops, List<Object> functions, boolean parallel) {
+        this.sourceKind = sourceKind;
+        this.source = source;
+        this.from = from;
+        this.to = to;
+        this.ops = ops;
+        this.functions = functions;
+        this.parallel = parallel;
+    }
+
+    PipelinePlan then(OpKind op, Object function) {
+        if (function == null) {
+            throw new NullPointerException("函数不能为null");
+        }
+        List<OpKind> newOps = new ArrayList<>(ops);
+        newOps.add(op);
+        List<Object> newFunctions = new ArrayList<>(functions);
+        newFunctions.add(function);
+        return new PipelinePlan(sourceKind, source, from, to,
+                Collections.unmodifiableList(newOps), Collections.unmodifiableList(newFunctions), parallel);
+    }
+
+    PipelinePlan withParallel(boolean parallel) {
+        return new PipelinePlan(sourceKind, source, from, to, ops, functions, parallel);
+    }
+}
@@ -0,0 +1,56 @@
+package com.learn.stream.data;
+
+import com.learn.stream.model.Student;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 从CSV文件读取学生数据
+ * 每行格式为 name,age,major,gpa,gender；第一行如果以 name 开头则视为表头跳过，空行和 # 开头的行被忽略。
+ * 文件使用UTF-8编码，字段中不支持逗号。
+ */
+public final class StudentCsvReader {
+
+    private StudentCsvReader() {
+    }
+
+    /**
+     * 读取文件中的学生，limit 大于0时最多读取limit行
+     */
+    public static List<Student> read(Path file, int limit) throws IOException {
+        List<Student> students = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null && (limit <= 0 || students.size() < limit)) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")
+                        || (lineNumber == 1 && line.toLowerCase().startsWith("name"))) {
+                    continue;
+                }
+                students.add(parse(line, file, lineNumber));
+            }
+        }
+        return students;
+    }
+
+    private static Student parse(String line, Path file, int lineNumber) throws IOException {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 5) {
+            throw new IOException(file + " 第" + lineNumber + "行应有5个字段，实际为" + fields.length + "个");
+        }
+        try {
+            return new Student(fields[0].trim(), Integer.parseInt(fields[1].trim()), fields[2].trim(),
+                    Double.parseDouble(fields[3].trim()), fields[4].trim());
+        } catch (NumberFormatException e) {
+            throw new IOException(file + " 第" + lineNumber + "行的年龄或GPA不是数字: " + line, e);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.learn.stream.data;
+
+import com.learn.stream.model.Course;
+import com.learn.stream.model.Student;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * 可扩展的合成数据生成器
+ * 根据种子(seed)和目标行数生成分布接近真实情况的学生和课程数据
+ *
+ * 设计要点:
+ * 1. 第i行数据只由 (seed, i) 决定，与生成顺序和线程无关
+ * 2. 基于 LongStream.range 惰性生成，可任意拆分，适合并行Stream
+ * 3. 不保存任何行数据，10亿行也不需要全部放入内存
+ */
+public class StudentDataGenerator {
+
+    private static final String[] SURNAMES = {
+        "王", "李", "张", "刘", "陈", "杨", "黄", "赵", "吴", "周",
+        "徐", "孙", "马", "朱", "胡", "郭", "何", "林", "高", "罗",
+        "郑", "梁", "谢", "宋", "唐", "许", "韩", "冯", "邓", "曹"
+    };
+
+    private static final String[] GIVEN_NAME_CHARS = {
+        "伟", "芳", "娜", "敏", "静", "丽", "强", "磊", "洋", "艳",
+        "勇", "军", "杰", "娟", "涛", "明", "超", "秀", "霞", "平",
+        "刚", "桂", "华", "玉", "萍", "红", "鹏", "辉", "婷", "宇",
+        "浩", "欣", "然", "晨", "轩", "怡", "子", "雨", "佳", "博"
+    };
+
+    // 专业及其人数占比（累计权重在静态块中计算）
+    private static final String[] MAJORS = {
+        "计算机科学", "数学", "物理", "化学", "软件工程", "电子信息", "经济学", "英语"
+    };
+    private static final double[] MAJOR_WEIGHTS = {
+        0.24, 0.14, 0.11, 0.09, 0.16, 0.10, 0.09, 0.07
+    };
+
+    private static final String[] COURSE_NAMES = {
+        "数据结构与算法", "高等数学", "线性代数", "概率论", "操作系统", "数据库原理",
+        "计算机网络", "软件工程", "人工智能", "机器学习", "编译原理", "离散数学",
+        "大学物理", "有机化学", "微观经济学", "学术英语", "数字电路", "信号与系统"
+    };
+
+    private static final String[] CATEGORIES = {"专业课", "基础课", "选修课"};
+    private static final double[] CATEGORY_WEIGHTS = {0.5, 0.35, 0.15};
+
+    private static final int[] CREDITS = {2, 3, 4, 5};
+    private static final double[] CREDIT_WEIGHTS = {0.2, 0.35, 0.35, 0.1};
+
+    private static final double[] MAJOR_CDF = cumulative(MAJOR_WEIGHTS);
+    private static final double[] CATEGORY_CDF = cumulative(CATEGORY_WEIGHTS);
+    private static final double[] CREDIT_CDF = cumulative(CREDIT_WEIGHTS);
+
+    // 学生和课程使用不同的流编号，保证同一种子下两类数据互不相关
+    private static final long STUDENT_STREAM = 0x53545544454E54L;
+    private static final long COURSE_STREAM = 0x434F55525345L;
+
+    private final long seed;
+
+    public StudentDataGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() { return seed; }
+
+    /**
+     * 生成第index个学生，结果只取决于种子和下标
+     */
+    public Student student(long index) {
+        RowRandom random = new RowRandom(seed ^ STUDENT_STREAM, index);
+
+        String name = SURNAMES[random.nextInt(SURNAMES.length)]
+                + GIVEN_NAME_CHARS[random.nextInt(GIVEN_NAME_CHARS.length)]
+                + (random.nextDouble() < 0.6 ? GIVEN_NAME_CHARS[random.nextInt(GIVEN_NAME_CHARS.length)] : "");
+
+        // 年龄: 以20.5岁为中心的正态分布，截断到18-26岁
+        int age = (int) Math.round(clamp(20.5 + random.nextGaussian() * 1.6, 18, 26));
+
+        String major = MAJORS[pick(MAJOR_CDF, random.nextDouble())];
+
+        // GPA: 均值3.3、标准差0.45，截断到1.5-4.3并保留两位小数
+        double gpa = Math.round(clamp(3.3 + random.nextGaussian() * 0.45, 1.5, 4.3) * 100) / 100.0;
+
+        String gender = random.nextDouble() < 0.52 ? "男" : "女";
+
+        return new Student(name, age, major, gpa, gender);
+    }
+
+    /**
+     * 生成第index门课程，结果只取决于种子和下标
+     */
+    public Course course(long index) {
+        RowRandom random = new RowRandom(seed ^ COURSE_STREAM, index);
+
+        String courseName = COURSE_NAMES[random.nextInt(COURSE_NAMES.length)];
+        String instructor = SURNAMES[random.nextInt(SURNAMES.length)] + "教授";
+        int credit = CREDITS[pick(CREDIT_CDF, random.nextDouble())];
+        // 评分: 均值83、标准差6，截断到60-100
+        double score = Math.round(clamp(83 + random.nextGaussian() * 6, 60, 100));
+        String category = CATEGORIES[pick(CATEGORY_CDF, random.nextDouble())];
+
+        return new Course(courseName, instructor, credit, score, category);
+    }
+
+    /**
+     * 惰性生成count个学生，返回的Stream可以安全地调用parallel()
+     */
+    public Stream<Student> students(long count) {
+        return LongStream.range(0, count).mapToObj(this::student);
+    }
+
+    /**
+     * 惰性生成count门课程，返回的Stream可以安全地调用parallel()
+     */
+    public Stream<Course> courses(long count) {
+        return LongStream.range(0, count).mapToObj(this::course);
+    }
+
+    /**
+     * 生成并收集为List，仅用于数据量可以放入内存的场景
+     */
+    public List<Student> studentList(int count) {
+        return students(count).collect(Collectors.toList());
+    }
+
+    public List<Course> courseList(int count) {
+        return courses(count).collect(Collectors.toList());
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        double[] cdf = new double[weights.length];
+        double running = 0;
+        for (int i = 0; i < weights.length; i++) {
+            running += weights[i] / total;
+            cdf[i] = running;
+        }
+        cdf[cdf.length - 1] = 1.0;
+        return cdf;
+    }
+
+    private static int pick(double[] cdf, double u) {
+        for (int i = 0; i < cdf.length; i++) {
+            if (u < cdf[i]) {
+                return i;
+            }
+        }
+        return cdf.length - 1;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * 每行独立的轻量随机数序列 (SplitMix64)
+     * 用 (seed, index) 直接定位起始状态，不依赖前一行的结果
+     */
+    private static final class RowRandom {
+        private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+        private long state;
+
+        RowRandom(long seed, long index) {
+            this.state = mix64(seed + mix64(index + GOLDEN_GAMMA));
+        }
+
+        long nextLong() {
+            state += GOLDEN_GAMMA;
+            return mix64(state);
+        }
+
+        double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+        int nextInt(int bound) {
+            return (int) ((nextLong() >>> 33) % bound);
+        }
+
+        // Box-Muller变换，每次只取一个值以保持序列简单
+        double nextGaussian() {
+            double u1 = nextDouble();
+            double u2 = nextDouble();
+            if (u1 < 1e-300) {
+                u1 = 1e-300;
+            }
+            return Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+        }
+
+        private static long mix64(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
@@ -1,7 +1,18 @@
 package com.learn.stream.example;
 
+import com.learn.stream.cache.ResultCache;
+import com.learn.stream.cache.StudentOverlay;
+import com.learn.stream.cache.VersionedDataset;
+import com.learn.stream.collections.ObjectDoubleMap;
+import com.learn.stream.index.CourseRangeIndex;
+import com.learn.stream.index.StudentNameIndex;
 import com.learn.stream.model.Student;
 import com.learn.stream.model.Course;
+import com.learn.stream.monitor.AllocationProfiler;
+import com.learn.stream.scan.SharedScan;
+import com.learn.stream.monitor.jfr.ScoreUpdateBatchEvent;
+import com.learn.stream.monitor.metrics.StreamMetrics;
+import com.learn.stream.registry.StudentRegistry;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -12,23 +23,65 @@ import java.util.stream.Collectors;
  */
 public class ComprehensiveExample {
     
+    // 跨多次运行共享的数据集和报表缓存：数据未变化时（例如GUI重复点击）直接返回缓存结果
+    private static final VersionedDataset<Student> STUDENT_DATA =
+            new VersionedDataset<>("students", createComprehensiveStudentData());
+    private static final VersionedDataset<Course> COURSE_DATA =
+            new VersionedDataset<>("courses", createComprehensiveCourseData());
+    private static final ResultCache REPORT_CACHE = new ResultCache(64, ResultCache.EvictionPolicy.LRU);
+    
+    // 成绩更新的增量覆盖视图，补丁数达到阈值时在写入时合并进基础数据
+    private static final StudentOverlay SCORE_OVERLAY = new StudentOverlay(STUDENT_DATA.get());
+    
+    static {
+        // 启用指标端点时可以抓取报表缓存的命中率
+        StreamMetrics.registerCache("report", REPORT_CACHE);
+    }
+    
+    // 数据统计报告：注册到同一个共享扫描中，一次遍历学生列表得到全部统计结果
+    private static final SharedScan<Student> STUDENT_REPORTS = new SharedScan<>();
+    private static final SharedScan.Handle<IntSummaryStatistics> AGE_STATS =
+            STUDENT_REPORTS.add(Collectors.summarizingInt(Student::getAge));
+    private static final SharedScan.Handle<DoubleSummaryStatistics> GPA_STATS =
+            STUDENT_REPORTS.add(Collectors.summarizingDouble(Student::getGpa));
+    private static final SharedScan.Handle<Map<String, Long>> MAJOR_DISTRIBUTION =
+            STUDENT_REPORTS.add(Collectors.groupingBy(Student::getMajor, Collectors.counting()));
+    private static final SharedScan.Handle<Map<String, Long>> GRADE_DISTRIBUTION =
+            STUDENT_REPORTS.add(Collectors.groupingBy(ComprehensiveExample::gradeLevel, Collectors.counting()));
+    private static final SharedScan.Handle<Map<String, Long>> GENDER_DISTRIBUTION =
+            STUDENT_REPORTS.add(Collectors.groupingBy(Student::getGender, Collectors.counting()));
+    
+    // 课程分析报表：同样一次遍历课程列表
+    private static final SharedScan<Course> COURSE_REPORTS = new SharedScan<>();
+    private static final SharedScan.Handle<Map<String, Double>> CATEGORY_AVG_SCORE =
+            COURSE_REPORTS.add(Collectors.groupingBy(Course::getCategory, Collectors.averagingDouble(Course::getScore)));
+    private static final SharedScan.Handle<Map<String, Long>> COURSE_COUNT_BY_INSTRUCTOR =
+            COURSE_REPORTS.add(Collectors.groupingBy(Course::getInstructor, Collectors.counting()));
+    
     public static void main(String[] args) {
         System.out.println("=== Stream API综合应用示例 ===\n");
         
         // 1. 学生成绩管理系统
+        AllocationProfiler.section("demonstrateStudentGradeManagement");
         demonstrateStudentGradeManagement();
         
         // 2. 课程分析系统
+        AllocationProfiler.section("demonstrateCourseAnalysis");
         demonstrateCourseAnalysis();
         
         // 3. 数据统计报告
+        AllocationProfiler.section("demonstrateDataStatistics");
         demonstrateDataStatistics();
         
         // 4. 复杂业务逻辑处理
+        AllocationProfiler.section("demonstrateComplexBusinessLogic");
         demonstrateComplexBusinessLogic();
         
         // 5. 实时数据处理模拟
+        AllocationProfiler.section("demonstrateRealTimeDataProcessing");
         demonstrateRealTimeDataProcessing();
+        
+        System.out.println("报表缓存: " + REPORT_CACHE);
     }
     
     /**
@@ -37,7 +90,7 @@ public class ComprehensiveExample {
     private static void demonstrateStudentGradeManagement() {
         System.out.println("1. 学生成绩管理系统:");
         
-        List<Student> students = createComprehensiveStudentData();
+        List<Student> students = STUDENT_DATA.get();
         
         // 1.1 找出各科最高分学生
         System.out.println("  各专业最高分学生:");
@@ -54,7 +107,7 @@ public class ComprehensiveExample {
         
         // 1.2 计算各专业平均分和人数
         System.out.println("\n  各专业统计信息:");
-        Map<String, StudentSummary> majorStats = students.stream()
+        Map<String, StudentSummary> majorStats = REPORT_CACHE.get("majorSummary", STUDENT_DATA, data -> data.stream()
                 .collect(Collectors.groupingBy(
                         Student::getMajor,
                         Collectors.collectingAndThen(
@@ -71,7 +124,7 @@ public class ComprehensiveExample {
                                     return new StudentSummary(studentList.size(), avgGpa, avgAge);
                                 }
                         )
-                ));
+                )));
         
         majorStats.forEach((major, summary) -> 
                 System.out.println("    " + major + ": " + summary.count + "人, 平均GPA: " + 
@@ -116,15 +169,13 @@ public class ComprehensiveExample {
     private static void demonstrateCourseAnalysis() {
         System.out.println("2. 课程分析系统:");
         
-        List<Course> courses = createComprehensiveCourseData();
+        // 一次遍历课程列表计算本节所有报表，结果随数据集版本缓存
+        SharedScan.Results reports = REPORT_CACHE.get("courseReports", COURSE_DATA,
+                data -> COURSE_REPORTS.run(data.get(), false));
         
         // 2.1 找出最受好评的课程类别
         System.out.println("  课程类别平均评分:");
-        Map<String, Double> categoryAvgScore = courses.stream()
-                .collect(Collectors.groupingBy(
-                        Course::getCategory,
-                        Collectors.averagingDouble(Course::getScore)
-                ));
+        Map<String, Double> categoryAvgScore = reports.get(CATEGORY_AVG_SCORE);
         
         categoryAvgScore.entrySet().stream()
                 .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
@@ -133,37 +184,28 @@ public class ComprehensiveExample {
         
         // 2.2 找出每个老师的课程数量
         System.out.println("\n  各老师授课数量:");
-        Map<String, Long> courseCountByInstructor = courses.stream()
-                .collect(Collectors.groupingBy(
-                        Course::getInstructor,
-                        Collectors.counting()
-                ));
+        Map<String, Long> courseCountByInstructor = reports.get(COURSE_COUNT_BY_INSTRUCTOR);
         
         courseCountByInstructor.entrySet().stream()
                 .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
                 .forEach(entry -> System.out.println("    " + entry.getKey() + ": " + entry.getValue() + "门课程"));
         
+        // 学分×评分范围查询使用二维范围索引，索引随数据集版本缓存
+        CourseRangeIndex courseIndex = REPORT_CACHE.get("courseRangeIndex", COURSE_DATA,
+                data -> new CourseRangeIndex(data.get()));
+        
         // 2.3 高学分课程分析
         System.out.println("\n  高学分课程统计 (≥3学分):");
-        long highCreditCount = courses.stream()
-                .filter(course -> course.getCredit() >= 3)
-                .count();
-        
-        double avgScoreHighCredit = courses.stream()
-                .filter(course -> course.getCredit() >= 3)
-                .mapToDouble(Course::getScore)
-                .average()
-                .orElse(0.0);
+        CourseRangeIndex.ScoreStats highCreditStats = courseIndex.statsAtLeast(3, Double.NEGATIVE_INFINITY);
+        long highCreditCount = highCreditStats.getCount();
+        double avgScoreHighCredit = highCreditStats.getAverage();
         
         System.out.println("    数量: " + highCreditCount + "门");
         System.out.println("    平均评分: " + String.format("%.2f", avgScoreHighCredit));
         
-        // 2.4 优秀课程推荐 (评分≥85且≥3学分)
+        // 2.4 优秀课程推荐 (评分≥85且≥3学分)，按评分从高到低
         System.out.println("\n  优秀课程推荐:");
-        List<String> excellentCourses = courses.stream()
-                .filter(course -> course.getScore() >= 85 && course.getCredit() >= 3)
-                .sorted(Comparator.comparingDouble(Course::getScore).reversed()
-                        .thenComparing(Course::getCredit).reversed())
+        List<String> excellentCourses = courseIndex.topByScoreAtLeast(3, 85, Integer.MAX_VALUE).stream()
                 .map(course -> String.format("%s (%s教授, %d学分, %.0f分)", 
                         course.getCourseName(), course.getInstructor(), 
                         course.getCredit(), course.getScore()))
@@ -171,6 +213,8 @@ public class ComprehensiveExample {
         
         excellentCourses.forEach(course -> System.out.println("    ★ " + course));
         
+        // 大课程目录上Stream扫描与范围索引的对比见 perf.CourseIndexBenchmark
+        
         System.out.println();
     }
     
@@ -180,18 +224,15 @@ public class ComprehensiveExample {
     private static void demonstrateDataStatistics() {
         System.out.println("3. 数据统计报告:");
         
-        List<Student> students = createComprehensiveStudentData();
-        List<Course> courses = createComprehensiveCourseData();
+        List<Student> students = STUDENT_DATA.get();
+        // 年龄、GPA、专业、成绩等级、性别五项统计在同一次遍历中完成，结果随数据集版本缓存
+        SharedScan.Results reports = REPORT_CACHE.get("studentReports", STUDENT_DATA,
+                data -> STUDENT_REPORTS.run(data.get(), false));
         
         // 3.1 学生整体统计
         System.out.println("  学生数据统计:");
-        IntSummaryStatistics ageStats = students.stream()
-                .mapToInt(Student::getAge)
-                .summaryStatistics();
-        
-        DoubleSummaryStatistics gpaStats = students.stream()
-                .mapToDouble(Student::getGpa)
-                .summaryStatistics();
+        IntSummaryStatistics ageStats = reports.get(AGE_STATS);
+        DoubleSummaryStatistics gpaStats = reports.get(GPA_STATS);
         
         System.out.println("    年龄统计: 最小" + ageStats.getMin() + "岁, 最大" + 
                          ageStats.getMax() + "岁, 平均" + String.format("%.1f", ageStats.getAverage()) + "岁");
@@ -201,8 +242,7 @@ public class ComprehensiveExample {
         
         // 3.2 专业分布分析
         System.out.println("\n  专业分布分析:");
-        Map<String, Long> majorDistribution = students.stream()
-                .collect(Collectors.groupingBy(Student::getMajor, Collectors.counting()));
+        Map<String, Long> majorDistribution = reports.get(MAJOR_DISTRIBUTION);
         
         long totalStudents = students.size();
         majorDistribution.entrySet().stream()
@@ -215,18 +255,7 @@ public class ComprehensiveExample {
         
         // 3.3 成绩等级分布
         System.out.println("\n  成绩等级分布:");
-        Map<String, Long> gradeDistribution = students.stream()
-                .collect(Collectors.groupingBy(
-                        student -> {
-                            double gpa = student.getGpa();
-                            if (gpa >= 4.0) return "优秀(4.0-4.0)";
-                            else if (gpa >= 3.7) return "良好(3.7-3.9)";
-                            else if (gpa >= 3.3) return "中等(3.3-3.6)";
-                            else if (gpa >= 3.0) return "及格(3.0-3.2)";
-                            else return "不及格(<3.0)";
-                        },
-                        Collectors.counting()
-                ));
+        Map<String, Long> gradeDistribution = reports.get(GRADE_DISTRIBUTION);
         
         gradeDistribution.forEach((grade, count) -> {
             double percentage = (count * 100.0) / totalStudents;
@@ -236,8 +265,7 @@ public class ComprehensiveExample {
         
         // 3.4 性别比例分析
         System.out.println("\n  性别比例分析:");
-        Map<String, Long> genderStats = students.stream()
-                .collect(Collectors.groupingBy(Student::getGender, Collectors.counting()));
+        Map<String, Long> genderStats = reports.get(GENDER_DISTRIBUTION);
         
         genderStats.forEach((gender, count) -> {
             double percentage = (count * 100.0) / totalStudents;
@@ -248,6 +276,18 @@ public class ComprehensiveExample {
         System.out.println();
     }
     
+    /**
+     * 成绩等级
+     */
+    private static String gradeLevel(Student student) {
+        double gpa = student.getGpa();
+        if (gpa >= 4.0) return "优秀(4.0-4.0)";
+        else if (gpa >= 3.7) return "良好(3.7-3.9)";
+        else if (gpa >= 3.3) return "中等(3.3-3.6)";
+        else if (gpa >= 3.0) return "及格(3.0-3.2)";
+        else return "不及格(<3.0)";
+    }
+    
     /**
      * 复杂业务逻辑处理
      */
@@ -349,7 +389,10 @@ public class ComprehensiveExample {
         
         // 模拟实时学生数据流
         System.out.println("  模拟实时成绩更新处理:");
-        List<Student> students = createComprehensiveStudentData();
+        List<Student> students = STUDENT_DATA.get();
+        // 姓名索引随数据集版本缓存，只在学生数据变化后重建
+        StudentNameIndex nameIndex = REPORT_CACHE.get("nameIndex", STUDENT_DATA,
+                data -> new StudentNameIndex(data.get()));
         
         // 模拟新的成绩数据
         List<StudentScoreUpdate> scoreUpdates = Arrays.asList(
@@ -359,51 +402,59 @@ public class ComprehensiveExample {
                 new StudentScoreUpdate("赵六", 3.8)
         );
         
-        // 处理成绩更新
-        Map<String, Double> updatedGpas = scoreUpdates.stream()
-                .collect(Collectors.toMap(
+        // 处理成绩更新（整批处理过程记录为一个JFR事件）
+        ScoreUpdateBatchEvent batchEvent = new ScoreUpdateBatchEvent();
+        batchEvent.begin();
+        long batchStart = System.nanoTime();
+        // 本批更新涉及的学生，使用无装箱的ObjectDoubleMap
+        ObjectDoubleMap<String> updatedGpas = scoreUpdates.stream()
+                .collect(ObjectDoubleMap.collector(
                         StudentScoreUpdate::getName,
                         StudentScoreUpdate::getNewGpa
                 ));
         
-        // 实时排名更新
-        List<String> updatedRankings = students.stream()
-                .map(student -> {
-                    Double newGpa = updatedGpas.get(student.getName());
-                    double finalGpa = newGpa != null ? newGpa : student.getGpa();
-                    return new Student(student.getName(), student.getAge(), 
-                                     student.getMajor(), finalGpa, student.getGender());
-                })
-                .sorted(Comparator.comparingDouble(Student::getGpa).reversed())
-                .map(student -> {
-                    Double newGpa = updatedGpas.get(student.getName());
-                    String status = newGpa != null ? " [已更新]" : "";
-                    return String.format("%s: %.2f%s", student.getName(), 
-                            student.getGpa(), status);
+        // 更新写入增量覆盖视图：只记录补丁，不为每个学生创建新的Student对象
+        SCORE_OVERLAY.applyGpaUpdates(scoreUpdates, StudentScoreUpdate::getName, StudentScoreUpdate::getNewGpa);
+        StudentOverlay.View view = SCORE_OVERLAY.view();
+        
+        // 实时排名更新：在视图上按行号取GPA最高的6行（补丁优先），不装箱也不排序全部学生
+        List<String> updatedRankings = Arrays.stream(view.topRowsByGpa(6))
+                .mapToObj(row -> {
+                    String status = updatedGpas.containsKey(view.name(row)) ? " [已更新]" : "";
+                    return String.format("%s: %.2f%s", view.name(row), view.gpa(row), status);
                 })
-                .limit(6)
                 .collect(Collectors.toList());
         
         updatedRankings.forEach(ranking -> System.out.println("    " + ranking));
         
         // 实时统计信息
         System.out.println("\n  实时统计信息:");
-        double avgGpaAfterUpdate = students.stream()
-                .mapToDouble(student -> {
-                    Double newGpa = updatedGpas.get(student.getName());
-                    return newGpa != null ? newGpa : student.getGpa();
-                })
+        double avgGpaAfterUpdate = view.gpas()
                 .average()
                 .orElse(0.0);
         
-        long excellentCount = (int) students.stream()
-                .mapToDouble(student -> {
-                    Double newGpa = updatedGpas.get(student.getName());
-                    return newGpa != null ? newGpa : student.getGpa();
-                })
+        long excellentCount = view.gpas()
                 .filter(gpa -> gpa >= 4.0)
                 .count();
         
+        batchEvent.end();
+        long unknownCount = scoreUpdates.stream()
+                .filter(update -> !nameIndex.contains(update.getName()))
+                .count();
+        StreamMetrics.recordScoreUpdateBatch(scoreUpdates.size() - unknownCount, unknownCount,
+                System.nanoTime() - batchStart);
+        if (batchEvent.shouldCommit()) {
+            batchEvent.batchSize = scoreUpdates.size();
+            batchEvent.studentCount = students.size();
+            // 只按更新涉及的姓名查索引，不扫描全部学生
+            batchEvent.updatedCount = scoreUpdates.stream()
+                    .map(StudentScoreUpdate::getName)
+                    .distinct()
+                    .mapToLong(name -> nameIndex.findAll(name).size())
+                    .sum();
+            batchEvent.commit();
+        }
+        
         System.out.println("    实时平均GPA: " + String.format("%.2f", avgGpaAfterUpdate));
         System.out.println("    优秀学生数: " + excellentCount + "人");
         
@@ -413,7 +464,24 @@ public class ComprehensiveExample {
                 .filter(update -> update.getNewGpa() > 4.2 || update.getNewGpa() < 2.0)
                 .forEach(update -> System.out.println("    ⚠ 异常成绩: " + 
                         update.getName() + " - " + update.getNewGpa()));
-        
+        scoreUpdates.stream()
+                .filter(update -> !nameIndex.contains(update.getName()))
+                .forEach(update -> System.out.println("    ⚠ 未知学生: " + update.getName()));
+
+        // 多个线程同时写入共享的注册表，按姓名读取不加锁
+        System.out.println("\n  并发学生注册表:");
+        StudentRegistry registry = new StudentRegistry(students);
+        StreamMetrics.registerRegistry("students", registry);
+        long applied = scoreUpdates.parallelStream()
+                .filter(update -> registry.updateGpa(update.getName(), update.getNewGpa()))
+                .count();
+        System.out.println("    并行应用" + applied + "条更新, 王五的GPA: "
+                + registry.get("王五").map(Student::getGpa).orElse(Double.NaN));
+        System.out.println("    注册表平均GPA: " + String.format("%.2f",
+                registry.parallelStream().mapToDouble(Student::getGpa).average().orElse(0.0)));
+        System.out.println("    " + registry.getContentionStats());
+        // 多线程压力测试见 perf.RegistryStressBenchmark
+
         System.out.println();
     }
     
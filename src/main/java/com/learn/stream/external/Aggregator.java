@@ -0,0 +1,150 @@
+package com.learn.stream.external;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * 可溢写分组的下游聚合
+ * 与 Collector 的 supplier/accumulator/combiner/finisher 一一对应，
+ * 额外提供中间结果(累加器)的序列化方式，使部分聚合结果可以写入磁盘后再合并。
+ *
+ * @param <T> 输入元素类型
+ * @param <A> 累加器类型
+ * @param <R> 结果类型
+ */
+public interface Aggregator<T, A, R> {
+
+    A create();
+
+    void accumulate(A container, T element);
+
+    A merge(A left, A right);
+
+    R finish(A container);
+
+    SpillCodec<A> codec();
+
+    /**
+     * 由各部分函数组装一个Aggregator
+     */
+    static <T, A, R> Aggregator<T, A, R> of(Supplier<A> supplier, BiConsumer<A, ? super T> accumulator,
+                                           BinaryOperator<A> combiner, Function<A, R> finisher,
+                                           SpillCodec<A> codec) {
+        return new Aggregator<T, A, R>() {
+            @Override
+            public A create() { return supplier.get(); }
+
+            @Override
+            public void accumulate(A container, T element) { accumulator.accept(container, element); }
+
+            @Override
+            public A merge(A left, A right) { return combiner.apply(left, right); }
+
+            @Override
+            public R finish(A container) { return finisher.apply(container); }
+
+            @Override
+            public SpillCodec<A> codec() { return codec; }
+        };
+    }
+
+    /** 对应 Collectors.counting() */
+    static <T> Aggregator<T, long[], Long> counting() {
+        return summingLong(element -> 1L);
+    }
+
+    /** 对应 Collectors.summingLong() */
+    static <T> Aggregator<T, long[], Long> summingLong(ToLongFunction<? super T> mapper) {
+        return of(() -> new long[1],
+                (sum, element) -> sum[0] += mapper.applyAsLong(element),
+                (left, right) -> {
+                    left[0] += right[0];
+                    return left;
+                },
+                sum -> sum[0],
+                LongArrayCodec.INSTANCE);
+    }
+
+    /** 对应 Collectors.summingDouble() */
+    static <T> Aggregator<T, double[], Double> summingDouble(ToDoubleFunction<? super T> mapper) {
+        return of(() -> new double[1],
+                (sum, element) -> sum[0] += mapper.applyAsDouble(element),
+                (left, right) -> {
+                    left[0] += right[0];
+                    return left;
+                },
+                sum -> sum[0],
+                DoubleArrayCodec.INSTANCE);
+    }
+
+    /** 对应 Collectors.averagingDouble()，累加器为 {总和, 个数} */
+    static <T> Aggregator<T, double[], Double> averagingDouble(ToDoubleFunction<? super T> mapper) {
+        return of(() -> new double[2],
+                (state, element) -> {
+                    state[0] += mapper.applyAsDouble(element);
+                    state[1]++;
+                },
+                (left, right) -> {
+                    left[0] += right[0];
+                    left[1] += right[1];
+                    return left;
+                },
+                state -> state[1] == 0 ? 0.0 : state[0] / state[1],
+                DoubleArrayCodec.INSTANCE);
+    }
+
+    /**
+     * long[] 累加器的序列化
+     */
+    final class LongArrayCodec implements SpillCodec<long[]> {
+        static final LongArrayCodec INSTANCE = new LongArrayCodec();
+
+        @Override
+        public void write(DataOutput out, long[] value) throws IOException {
+            out.writeShort(value.length);
+            for (long v : value) {
+                out.writeLong(v);
+            }
+        }
+
+        @Override
+        public long[] read(DataInput in) throws IOException {
+            long[] value = new long[in.readUnsignedShort()];
+            for (int i = 0; i < value.length; i++) {
+                value[i] = in.readLong();
+            }
+            return value;
+        }
+    }
+
+    /**
+     * double[] 累加器的序列化
+     */
+    final class DoubleArrayCodec implements SpillCodec<double[]> {
+        static final DoubleArrayCodec INSTANCE = new DoubleArrayCodec();
+
+        @Override
+        public void write(DataOutput out, double[] value) throws IOException {
+            out.writeShort(value.length);
+            for (double v : value) {
+                out.writeDouble(v);
+            }
+        }
+
+        @Override
+        public double[] read(DataInput in) throws IOException {
+            double[] value = new double[in.readUnsignedShort()];
+            for (int i = 0; i < value.length; i++) {
+                value[i] = in.readDouble();
+            }
+            return value;
+        }
+    }
+}
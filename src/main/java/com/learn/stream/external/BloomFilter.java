@@ -0,0 +1,63 @@
+package com.learn.stream.external;
+
+/**
+ * 简单的布隆过滤器
+ * 判断"一定没见过"时结果可靠，判断"可能见过"时有一定误判率。
+ * 使用双重哈希由一个64位哈希值派生出k个位置。
+ */
+class BloomFilter {
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param bitCount      位数组大小
+     * @param expectedItems 预计插入的元素数，用于选择最优哈希函数个数
+     */
+    BloomFilter(long bitCount, long expectedItems) {
+        if (bitCount <= 0 || bitCount > (long) Integer.MAX_VALUE * 64) {
+            throw new IllegalArgumentException("布隆过滤器位数不合法: " + bitCount);
+        }
+        this.bits = new long[(int) ((bitCount + 63) >>> 6)];
+        this.bitCount = (long) bits.length << 6;
+        // 最优哈希个数 k = (m/n) ln2，限制在1-8之间
+        double k = expectedItems > 0 ? (double) this.bitCount / expectedItems * Math.log(2) : 4;
+        this.hashCount = (int) Math.max(1, Math.min(8, Math.round(k)));
+    }
+
+    void put(long hash) {
+        long h1 = hash;
+        long h2 = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(long hash) {
+        long h1 = hash;
+        long h2 = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long sizeInBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    /**
+     * 由hashCode派生的64位哈希，salt不同则结果不同
+     */
+    static long hash64(Object key, long salt) {
+        long z = key.hashCode() + salt * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,282 @@
+package com.learn.stream.external;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 外部归并排序
+ * Stream.sorted() 需要把全部元素缓存在内存中；本类每次只在内存中排序 maxInMemoryElements 个元素，
+ * 排好序的"顺串"写入临时文件，最后对所有顺串做k路归并，惰性地产生有序Stream。
+ *
+ * - 每个顺串使用 Arrays.parallelSort 排序，可利用多核
+ * - 顺串数超过 mergeFanIn 时先分批归并成更长的顺串，限制同时打开的文件数
+ * - 排序是稳定的：比较结果相等时，先出现的元素先输出
+ * - 输入能放进一个顺串时不会产生任何临时文件
+ *
+ * @param <T> 元素类型
+ */
+public class ExternalSort<T> {
+
+    private static final int DEFAULT_MERGE_FAN_IN = 128;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final SpillCodec<T> codec;
+    private final Comparator<? super T> comparator;
+    private final int maxInMemoryElements;
+    private final int mergeFanIn;
+    private final Path tempDir;
+
+    public ExternalSort(SpillCodec<T> codec, Comparator<? super T> comparator, int maxInMemoryElements) {
+        this(codec, comparator, maxInMemoryElements, DEFAULT_MERGE_FAN_IN,
+                Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    public ExternalSort(SpillCodec<T> codec, Comparator<? super T> comparator, int maxInMemoryElements,
+                        int mergeFanIn, Path tempDir) {
+        if (maxInMemoryElements <= 0 || mergeFanIn < 2) {
+            throw new IllegalArgumentException("内存元素上限必须大于0，归并路数至少为2");
+        }
+        this.codec = codec;
+        this.comparator = comparator;
+        this.maxInMemoryElements = maxInMemoryElements;
+        this.mergeFanIn = mergeFanIn;
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * 对source排序，返回有序Stream
+     * 生成顺串的阶段在调用时立即执行，归并阶段在消费返回的Stream时惰性执行；
+     * 关闭返回的Stream会删除所有临时文件；生成顺串的阶段失败时（包括比较器或数据源抛出的异常），
+     * 已经创建的临时文件会立即删除。
+     */
+    @SuppressWarnings("unchecked")
+    public Stream<T> sorted(Stream<T> source) {
+        List<Path> created = new ArrayList<>();
+        List<Path> runs = new ArrayList<>();
+        boolean completed = false;
+        Object[] buffer = new Object[Math.min(maxInMemoryElements, 1 << 16)];
+        int count = 0;
+        try (Stream<T> input = source) {
+            Iterator<T> iterator = input.iterator();
+            while (iterator.hasNext()) {
+                if (count == buffer.length) {
+                    if (count == maxInMemoryElements) {
+                        runs.add(writeRun(buffer, count, created));
+                        count = 0;
+                    } else {
+                        buffer = Arrays.copyOf(buffer, Math.min(maxInMemoryElements, buffer.length * 2));
+                    }
+                }
+                buffer[count++] = iterator.next();
+            }
+            if (runs.isEmpty()) {
+                T[] sorted = (T[]) Arrays.copyOf(buffer, count);
+                Arrays.parallelSort(sorted, comparator);
+                completed = true;
+                return Arrays.stream(sorted);
+            }
+            if (count > 0) {
+                runs.add(writeRun(buffer, count, created));
+            }
+            buffer = null;
+            while (runs.size() > mergeFanIn) {
+                runs = mergePass(runs, created);
+            }
+            completed = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("外部排序写入顺串失败", e);
+        } finally {
+            if (!completed) {
+                deleteAll(created);
+            }
+        }
+
+        MergeSpliterator merge = new MergeSpliterator(runs);
+        return StreamSupport.stream(merge, false).onClose(merge::close);
+    }
+
+    /**
+     * 排序并写出一个顺串，创建的文件记录到created中
+     */
+    @SuppressWarnings("unchecked")
+    private Path writeRun(Object[] buffer, int count, List<Path> created) throws IOException {
+        T[] run = (T[]) buffer;
+        Arrays.parallelSort(run, 0, count, comparator);
+        Path file = Files.createTempFile(tempDir, "sort-run-", ".spill");
+        created.add(file);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+            for (int i = 0; i < count; i++) {
+                codec.write(out, run[i]);
+                buffer[i] = null;
+            }
+        }
+        return file;
+    }
+
+    /**
+     * 把顺串按mergeFanIn个一组归并成更长的顺串，新文件记录到created中
+     */
+    private List<Path> mergePass(List<Path> runs, List<Path> created) throws IOException {
+        List<Path> merged = new ArrayList<>();
+        for (int from = 0; from < runs.size(); from += mergeFanIn) {
+            List<Path> group = new ArrayList<>(runs.subList(from, Math.min(from + mergeFanIn, runs.size())));
+            Path file = Files.createTempFile(tempDir, "sort-merge-", ".spill");
+            created.add(file);
+            MergeSpliterator merge = new MergeSpliterator(group);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+                IOException[] failure = new IOException[1];
+                while (merge.tryAdvance(element -> {
+                    try {
+                        codec.write(out, element);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                })) {
+                    if (failure[0] != null) {
+                        throw failure[0];
+                    }
+                }
+            } finally {
+                merge.close();
+            }
+            merged.add(file);
+        }
+        return merged;
+    }
+
+    private static void deleteAll(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // 清理临时文件失败不影响结果
+            }
+        }
+    }
+
+    /**
+     * 顺串读取游标
+     */
+    private final class RunCursor {
+        final int runIndex;
+        final Path file;
+        final DataInputStream in;
+        T head;
+
+        RunCursor(int runIndex, Path file) throws IOException {
+            this.runIndex = runIndex;
+            this.file = file;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                head = codec.read(in);
+                return true;
+            } catch (EOFException e) {
+                head = null;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * k路归并：用小顶堆维护每个顺串的当前元素
+     */
+    private final class MergeSpliterator extends Spliterators.AbstractSpliterator<T> {
+        private final List<RunCursor> cursors = new ArrayList<>();
+        private final List<Path> files;
+        private PriorityQueue<RunCursor> heap;
+
+        MergeSpliterator(List<Path> files) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED);
+            this.files = files;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator;
+        }
+
+        @Override
+        public int characteristics() {
+            return super.characteristics() | Spliterator.SORTED;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+                if (heap == null) {
+                    open();
+                }
+                RunCursor smallest = heap.poll();
+                if (smallest == null) {
+                    close();
+                    return false;
+                }
+                T element = smallest.head;
+                if (smallest.advance()) {
+                    heap.add(smallest);
+                }
+                action.accept(element);
+                return true;
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException("外部排序读取顺串失败", e);
+            } catch (RuntimeException | Error e) {
+                close();
+                throw e;
+            }
+        }
+
+        private void open() throws IOException {
+            // 比较相等时按顺串编号排序，保证稳定性
+            Comparator<RunCursor> order = (a, b) -> {
+                int result = comparator.compare(a.head, b.head);
+                return result != 0 ? result : Integer.compare(a.runIndex, b.runIndex);
+            };
+            heap = new PriorityQueue<>(Math.max(1, files.size()), order);
+            for (int i = 0; i < files.size(); i++) {
+                RunCursor cursor = new RunCursor(i, files.get(i));
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    heap.add(cursor);
+                }
+            }
+        }
+
+        void close() {
+            for (RunCursor cursor : cursors) {
+                try {
+                    cursor.in.close();
+                } catch (IOException e) {
+                    // 忽略关闭失败
+                }
+            }
+            cursors.clear();
+            deleteAll(files);
+            if (heap != null) {
+                heap.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.learn.stream.external;
+
+import com.learn.stream.model.Course;
+import com.learn.stream.model.Student;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 溢写到磁盘时使用的序列化方式
+ * 外部去重、外部排序、溢写分组都通过它读写临时文件
+ *
+ * @param <T> 元素类型
+ */
+public interface SpillCodec<T> {
+
+    void write(DataOutput out, T value) throws IOException;
+
+    T read(DataInput in) throws IOException;
+
+    static SpillCodec<String> strings() {
+        return new SpillCodec<String>() {
+            @Override
+            public void write(DataOutput out, String value) throws IOException {
+                out.writeUTF(value);
+            }
+
+            @Override
+            public String read(DataInput in) throws IOException {
+                return in.readUTF();
+            }
+        };
+    }
+
+    static SpillCodec<Integer> integers() {
+        return new SpillCodec<Integer>() {
+            @Override
+            public void write(DataOutput out, Integer value) throws IOException {
+                out.writeInt(value);
+            }
+
+            @Override
+            public Integer read(DataInput in) throws IOException {
+                return in.readInt();
+            }
+        };
+    }
+
+    static SpillCodec<Long> longs() {
+        return new SpillCodec<Long>() {
+            @Override
+            public void write(DataOutput out, Long value) throws IOException {
+                out.writeLong(value);
+            }
+
+            @Override
+            public Long read(DataInput in) throws IOException {
+                return in.readLong();
+            }
+        };
+    }
+
+    static SpillCodec<Student> students() {
+        return new SpillCodec<Student>() {
+            @Override
+            public void write(DataOutput out, Student value) throws IOException {
+                out.writeUTF(value.getName());
+                out.writeInt(value.getAge());
+                out.writeUTF(value.getMajor());
+                out.writeDouble(value.getGpa());
+                out.writeUTF(value.getGender());
+            }
+
+            @Override
+            public Student read(DataInput in) throws IOException {
+                return new Student(in.readUTF(), in.readInt(), in.readUTF(), in.readDouble(), in.readUTF());
+            }
+        };
+    }
+
+    static SpillCodec<Course> courses() {
+        return new SpillCodec<Course>() {
+            @Override
+            public void write(DataOutput out, Course value) throws IOException {
+                out.writeUTF(value.getCourseName());
+                out.writeUTF(value.getInstructor());
+                out.writeInt(value.getCredit());
+                out.writeDouble(value.getScore());
+                out.writeUTF(value.getCategory());
+            }
+
+            @Override
+            public Course read(DataInput in) throws IOException {
+                return new Course(in.readUTF(), in.readUTF(), in.readInt(), in.readDouble(), in.readUTF());
+            }
+        };
+    }
+}
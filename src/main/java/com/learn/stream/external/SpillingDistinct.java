@@ -0,0 +1,312 @@
+package com.learn.stream.external;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 有内存上限的去重操作
+ * Stream.distinct() 会把所有见过的元素保存在一个HashSet中，数据量大时会耗尽堆内存。
+ * 本类按哈希把键分成若干分区，内存中的键数超过上限时把最大的分区整体溢写到临时文件：
+ *
+ * 1. 未溢写的分区：与HashSet去重相同，首次出现立即输出
+ * 2. 已溢写的分区：布隆过滤器判断"一定没见过"的键立即输出并记录到分区文件（快速路径）；
+ *    判断"可能见过"的键只追加到分区文件，留到输入结束后再确认
+ * 3. 输入结束后逐个分区读回文件，递归地用同样的方法去重，输出被误判的新键
+ *
+ * 因此除布隆过滤器的固定位数组外，内存中最多保存 maxInMemoryKeys 个键：某一层的输入结束后，
+ * 它的内存分区都已输出完毕并被释放，之后读回分区时只有下一层占用内存。
+ * 例外是第 MAX_DEPTH 层不再溢写（hashCode相同的键无法再拆分），这一层的内存占用没有上限。
+ * 输出顺序：大部分元素按首次出现顺序输出，被布隆过滤器误判的元素在最后输出。
+ *
+ * @param <T> 元素类型，需要正确实现 equals/hashCode
+ */
+public class SpillingDistinct<T> {
+
+    private static final int DEFAULT_PARTITIONS = 64;
+    // 递归深度上限：hashCode完全相同的键无法再被拆分，达到后不再溢写，直接在内存中去重（不受内存上限限制）
+    private static final int MAX_DEPTH = 4;
+
+    private static final byte SEEN = 0;
+    private static final byte CANDIDATE = 1;
+
+    private final SpillCodec<T> codec;
+    private final int maxInMemoryKeys;
+    private final int partitions;
+    private final long bloomBits;
+    private final Path tempDir;
+
+    public SpillingDistinct(SpillCodec<T> codec, int maxInMemoryKeys) {
+        this(codec, maxInMemoryKeys, DEFAULT_PARTITIONS, Math.max(1L << 20, maxInMemoryKeys * 16L),
+                Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param codec           溢写时使用的序列化方式
+     * @param maxInMemoryKeys 内存中最多保存的键数
+     * @param partitions      哈希分区数
+     * @param bloomBits       布隆过滤器位数（内存占用为 bloomBits/8 字节）
+     * @param tempDir         临时文件目录
+     */
+    public SpillingDistinct(SpillCodec<T> codec, int maxInMemoryKeys, int partitions, long bloomBits, Path tempDir) {
+        if (maxInMemoryKeys <= 0 || partitions <= 0) {
+            throw new IllegalArgumentException("内存上限和分区数必须大于0");
+        }
+        this.codec = codec;
+        this.maxInMemoryKeys = maxInMemoryKeys;
+        this.partitions = partitions;
+        this.bloomBits = bloomBits;
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * 返回去重后的Stream，惰性执行；关闭返回的Stream会删除未处理完的临时文件
+     */
+    public Stream<T> distinct(Stream<T> source) {
+        Iterator<T> iterator = source.iterator();
+        Run run = new Run(new Records<T>() {
+            private T current;
+
+            @Override
+            public boolean advance() {
+                if (!iterator.hasNext()) {
+                    return false;
+                }
+                current = iterator.next();
+                return true;
+            }
+
+            @Override
+            public T key() { return current; }
+
+            @Override
+            public boolean emit() { return true; }
+
+            @Override
+            public void close() {
+                source.close();
+            }
+        }, 0);
+        return StreamSupport.stream(run, false).onClose(run::close);
+    }
+
+    /**
+     * 一次去重过程的输入：一串键，以及该键是需要输出的新元素还是已经输出过的元素
+     */
+    private interface Records<T> {
+        boolean advance() throws IOException;
+
+        T key();
+
+        boolean emit();
+
+        void close();
+    }
+
+    private final class Run extends Spliterators.AbstractSpliterator<T> {
+        private final Records<T> input;
+        private final int depth;
+        private final HashSet<T>[] resident;
+        private final Path[] spillFiles;
+        private final DataOutputStream[] spillOutputs;
+        private BloomFilter bloom;
+        private int inMemory;
+        private boolean inputDone;
+        private int drainPartition;
+        private Run nested;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Run(Records<T> input, int depth) {
+            super(Long.MAX_VALUE, Spliterator.DISTINCT | Spliterator.NONNULL);
+            this.input = input;
+            this.depth = depth;
+            this.resident = new HashSet[partitions];
+            for (int i = 0; i < partitions; i++) {
+                resident[i] = new HashSet<>();
+            }
+            this.spillFiles = new Path[partitions];
+            this.spillOutputs = new DataOutputStream[partitions];
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+                if (!inputDone) {
+                    while (input.advance()) {
+                        T key = input.key();
+                        if (offer(key, input.emit())) {
+                            action.accept(key);
+                            return true;
+                        }
+                    }
+                    inputDone = true;
+                    input.close();
+                    // 输入已结束，内存分区中的键都已输出，和布隆过滤器一起释放，读回分区时只有下一层占用内存
+                    Arrays.fill(resident, null);
+                    inMemory = 0;
+                    bloom = null;
+                    for (DataOutputStream out : spillOutputs) {
+                        if (out != null) {
+                            out.close();
+                        }
+                    }
+                }
+                return drain(action);
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException("去重溢写文件读写失败", e);
+            }
+        }
+
+        /**
+         * 处理一个键，返回是否应当立即输出
+         */
+        private boolean offer(T key, boolean emit) throws IOException {
+            long hash = BloomFilter.hash64(key, depth + 1);
+            int partition = (int) Math.floorMod(hash >>> 1, (long) partitions);
+            HashSet<T> set = resident[partition];
+            if (set != null) {
+                if (!set.add(key)) {
+                    return false;
+                }
+                if (++inMemory > maxInMemoryKeys && depth < MAX_DEPTH) {
+                    spillLargestPartition();
+                }
+                return emit;
+            }
+            if (!bloom.mightContain(hash)) {
+                // 快速路径：一定没见过，立即输出并记为已见
+                bloom.put(hash);
+                write(partition, key, SEEN);
+                return emit;
+            }
+            write(partition, key, emit ? CANDIDATE : SEEN);
+            return false;
+        }
+
+        private void spillLargestPartition() throws IOException {
+            int largest = -1;
+            for (int i = 0; i < partitions; i++) {
+                if (resident[i] != null && (largest < 0 || resident[i].size() > resident[largest].size())) {
+                    largest = i;
+                }
+            }
+            if (bloom == null) {
+                bloom = new BloomFilter(bloomBits, maxInMemoryKeys * 4L);
+            }
+            HashSet<T> victim = resident[largest];
+            resident[largest] = null;
+            for (T key : victim) {
+                bloom.put(BloomFilter.hash64(key, depth + 1));
+                write(largest, key, SEEN);
+            }
+            inMemory -= victim.size();
+        }
+
+        private void write(int partition, T key, byte tag) throws IOException {
+            DataOutputStream out = spillOutputs[partition];
+            if (out == null) {
+                spillFiles[partition] = Files.createTempFile(tempDir, "distinct-" + depth + "-" + partition + "-", ".spill");
+                out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFiles[partition]), 1 << 16));
+                spillOutputs[partition] = out;
+            }
+            out.writeByte(tag);
+            codec.write(out, key);
+        }
+
+        /**
+         * 逐个读回已溢写的分区，只输出其中被误判的新元素
+         */
+        private boolean drain(Consumer<? super T> action) throws IOException {
+            while (true) {
+                if (nested != null) {
+                    if (nested.tryAdvance(action)) {
+                        return true;
+                    }
+                    nested.close();
+                    nested = null;
+                }
+                while (drainPartition < partitions && spillFiles[drainPartition] == null) {
+                    drainPartition++;
+                }
+                if (drainPartition >= partitions) {
+                    return false;
+                }
+                // 只有已见记录、没有待确认记录的分区也会被读一遍，由下一层直接丢弃
+                nested = new Run(readPartition(spillFiles[drainPartition]), depth + 1);
+                spillFiles[drainPartition] = null;
+                drainPartition++;
+            }
+        }
+
+        private Records<T> readPartition(Path file) throws IOException {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            return new Records<T>() {
+                private T current;
+                private boolean emit;
+
+                @Override
+                public boolean advance() throws IOException {
+                    int tag = in.read();
+                    if (tag < 0) {
+                        return false;
+                    }
+                    emit = tag == CANDIDATE;
+                    current = codec.read(in);
+                    return true;
+                }
+
+                @Override
+                public T key() { return current; }
+
+                @Override
+                public boolean emit() { return emit; }
+
+                @Override
+                public void close() {
+                    try {
+                        in.close();
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        }
+
+        void close() {
+            if (nested != null) {
+                nested.close();
+                nested = null;
+            }
+            input.close();
+            for (int i = 0; i < partitions; i++) {
+                try {
+                    if (spillOutputs[i] != null) {
+                        spillOutputs[i].close();
+                    }
+                    if (spillFiles[i] != null) {
+                        Files.deleteIfExists(spillFiles[i]);
+                        spillFiles[i] = null;
+                    }
+                } catch (IOException e) {
+                    // 清理临时文件失败不影响结果
+                }
+            }
+        }
+    }
+}
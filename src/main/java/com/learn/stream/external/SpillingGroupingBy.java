@@ -0,0 +1,378 @@
+package com.learn.stream.external;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * 可溢写到磁盘的分组聚合
+ * Collectors.groupingBy 把所有分组保存在内存中，分组键很多（如按学生姓名、按(课程, 教师)分组）时会耗尽堆内存。
+ * 本类把分组键按哈希分到若干分区，内存中的分组数超过上限时，把最久未更新的分区的部分聚合结果
+ * 追加写入该分区的临时文件；最后逐个分区读回并合并部分结果，输出最终结果。
+ *
+ * 用法与 groupingBy 示例一致，只是下游使用可序列化中间结果的 {@link Aggregator}：
+ * <pre>
+ * try (SpillingGroupingBy.Result&lt;String, Long&gt; counts = events.stream()
+ *         .collect(SpillingGroupingBy.groupingBy(Student::getName, SpillCodec.strings(),
+ *                 Aggregator.counting(), 1_000_000))) {
+ *     counts.stream().forEach(...);
+ * }
+ * </pre>
+ */
+public final class SpillingGroupingBy {
+
+    private static final int DEFAULT_PARTITIONS = 64;
+    // 递归深度上限：hashCode相同的键无法继续拆分，超过后不再溢写
+    private static final int MAX_DEPTH = 4;
+
+    private SpillingGroupingBy() {
+    }
+
+    public static <T, K, A, R> Collector<T, ?, Result<K, R>> groupingBy(Function<? super T, ? extends K> classifier,
+                                                                        SpillCodec<K> keyCodec,
+                                                                        Aggregator<? super T, A, R> downstream,
+                                                                        int maxGroupsInMemory) {
+        return groupingBy(classifier, keyCodec, downstream, maxGroupsInMemory, DEFAULT_PARTITIONS,
+                Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param classifier        分组键函数
+     * @param keyCodec          分组键的序列化方式
+     * @param downstream        下游聚合
+     * @param maxGroupsInMemory 内存中最多保存的分组数
+     * @param partitions        哈希分区数
+     * @param tempDir           临时文件目录
+     */
+    public static <T, K, A, R> Collector<T, ?, Result<K, R>> groupingBy(Function<? super T, ? extends K> classifier,
+                                                                        SpillCodec<K> keyCodec,
+                                                                        Aggregator<? super T, A, R> downstream,
+                                                                        int maxGroupsInMemory, int partitions,
+                                                                        Path tempDir) {
+        if (maxGroupsInMemory <= 0 || partitions <= 0) {
+            throw new IllegalArgumentException("分组上限和分区数必须大于0");
+        }
+        Config<K, A, R> config = new Config<>(keyCodec, downstream, maxGroupsInMemory, partitions, tempDir);
+        return Collector.of(
+                () -> new Table<>(config, 0),
+                (table, element) -> table.accumulate(classifier.apply(element), element, downstream),
+                Table::combine,
+                table -> new Result<>(table),
+                Collector.Characteristics.UNORDERED);
+    }
+
+    private static final class Config<K, A, R> {
+        final SpillCodec<K> keyCodec;
+        final Aggregator<?, A, R> aggregator;
+        final SpillCodec<A> stateCodec;
+        final int maxGroups;
+        final int partitions;
+        final Path tempDir;
+
+        Config(SpillCodec<K> keyCodec, Aggregator<?, A, R> aggregator, int maxGroups, int partitions, Path tempDir) {
+            this.keyCodec = keyCodec;
+            this.aggregator = aggregator;
+            this.stateCodec = aggregator.codec();
+            this.maxGroups = maxGroups;
+            this.partitions = partitions;
+            this.tempDir = tempDir;
+        }
+    }
+
+    /**
+     * 分区哈希表：收集阶段的容器
+     */
+    private static final class Table<K, A, R> {
+        private final Config<K, A, R> config;
+        private final int depth;
+        private final HashMap<K, A>[] maps;
+        private final long[] lastTouched;
+        private final List<List<Path>> files;
+        private final DataOutputStream[] outputs;
+        private long tick;
+        private int groups;
+        private long spills;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Table(Config<K, A, R> config, int depth) {
+            this.config = config;
+            this.depth = depth;
+            this.maps = new HashMap[config.partitions];
+            this.lastTouched = new long[config.partitions];
+            this.files = new ArrayList<>(config.partitions);
+            for (int i = 0; i < config.partitions; i++) {
+                maps[i] = new HashMap<>();
+                files.add(new ArrayList<>());
+            }
+            this.outputs = new DataOutputStream[config.partitions];
+        }
+
+        <T> void accumulate(K key, T element, Aggregator<? super T, A, R> aggregator) {
+            int partition = partitionOf(key);
+            HashMap<K, A> map = maps[partition];
+            A state = map.get(key);
+            if (state == null) {
+                state = aggregator.create();
+                map.put(key, state);
+                groups++;
+            }
+            aggregator.accumulate(state, element);
+            touched(partition);
+        }
+
+        /**
+         * 合并一个部分聚合结果（来自另一个容器或溢写文件）
+         */
+        void mergePartial(K key, A partial) {
+            int partition = partitionOf(key);
+            HashMap<K, A> map = maps[partition];
+            A existing = map.get(key);
+            if (existing == null) {
+                map.put(key, partial);
+                groups++;
+            } else {
+                map.put(key, config.aggregator.merge(existing, partial));
+            }
+            touched(partition);
+        }
+
+        Table<K, A, R> combine(Table<K, A, R> other) {
+            other.closeOutputs();
+            for (int i = 0; i < config.partitions; i++) {
+                files.get(i).addAll(other.files.get(i));
+                other.files.get(i).clear();
+                for (Map.Entry<K, A> entry : other.maps[i].entrySet()) {
+                    mergePartial(entry.getKey(), entry.getValue());
+                }
+                other.maps[i] = new HashMap<>();
+            }
+            spills += other.spills;
+            return this;
+        }
+
+        private int partitionOf(K key) {
+            long hash = BloomFilter.hash64(key, depth + 1);
+            return (int) Math.floorMod(hash >>> 1, (long) config.partitions);
+        }
+
+        private void touched(int partition) {
+            lastTouched[partition] = ++tick;
+            if (groups > config.maxGroups && depth < MAX_DEPTH) {
+                evict();
+            }
+        }
+
+        /**
+         * 依次溢写最久未更新的分区，直到分组数降到上限的3/4，避免每次只腾出很少空间
+         */
+        private void evict() {
+            int target = config.maxGroups - config.maxGroups / 4;
+            while (groups > target) {
+                int coldest = -1;
+                for (int i = 0; i < config.partitions; i++) {
+                    if (!maps[i].isEmpty() && (coldest < 0 || lastTouched[i] < lastTouched[coldest])) {
+                        coldest = i;
+                    }
+                }
+                if (coldest < 0) {
+                    return;
+                }
+                spill(coldest);
+            }
+        }
+
+        private void spill(int partition) {
+            try {
+                DataOutputStream out = outputs[partition];
+                if (out == null) {
+                    Path file = Files.createTempFile(config.tempDir, "group-" + depth + "-" + partition + "-", ".spill");
+                    files.get(partition).add(file);
+                    out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+                    outputs[partition] = out;
+                }
+                for (Map.Entry<K, A> entry : maps[partition].entrySet()) {
+                    config.keyCodec.write(out, entry.getKey());
+                    config.stateCodec.write(out, entry.getValue());
+                }
+                groups -= maps[partition].size();
+                maps[partition] = new HashMap<>();
+                spills++;
+            } catch (IOException e) {
+                deleteFiles();
+                throw new UncheckedIOException("分组溢写失败", e);
+            }
+        }
+
+        private void closeOutputs() {
+            for (int i = 0; i < outputs.length; i++) {
+                if (outputs[i] != null) {
+                    try {
+                        outputs[i].close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("关闭分组溢写文件失败", e);
+                    } finally {
+                        outputs[i] = null;
+                    }
+                }
+            }
+        }
+
+        /**
+         * 输出一个分区的最终结果；有溢写文件时用下一层哈希表重新聚合
+         */
+        Stream<Map.Entry<K, R>> partitionResult(int partition) {
+            HashMap<K, A> map = maps[partition];
+            maps[partition] = new HashMap<>();
+            List<Path> partitionFiles = files.get(partition);
+            if (partitionFiles.isEmpty()) {
+                return finish(map);
+            }
+            // 下一层也可能溢写，它的临时文件随返回的Stream关闭（包括短路和异常）而删除
+            Table<K, A, R> nested = new Table<>(config, depth + 1);
+            try {
+                for (Map.Entry<K, A> entry : map.entrySet()) {
+                    nested.mergePartial(entry.getKey(), entry.getValue());
+                }
+                for (Path file : new ArrayList<>(partitionFiles)) {
+                    readInto(file, nested);
+                    partitionFiles.remove(file);
+                }
+                nested.closeOutputs();
+            } catch (RuntimeException | Error e) {
+                nested.discard();
+                throw e;
+            }
+            spills += nested.spills;
+            return IntStream.range(0, config.partitions).boxed()
+                    .flatMap(nested::partitionResult)
+                    .onClose(nested::deleteFiles);
+        }
+
+        private void readInto(Path file, Table<K, A, R> target) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+                while (true) {
+                    K key;
+                    try {
+                        key = config.keyCodec.read(in);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    target.mergePartial(key, config.stateCodec.read(in));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("读取分组溢写文件失败", e);
+            } finally {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // 清理临时文件失败不影响结果
+                }
+            }
+        }
+
+        private Stream<Map.Entry<K, R>> finish(HashMap<K, A> map) {
+            return map.entrySet().stream()
+                    .map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey(),
+                            config.aggregator.finish(entry.getValue())));
+        }
+
+        /**
+         * 出错时放弃这张表：关闭未关闭的输出并删除所有溢写文件
+         */
+        void discard() {
+            for (int i = 0; i < outputs.length; i++) {
+                if (outputs[i] != null) {
+                    try {
+                        outputs[i].close();
+                    } catch (IOException e) {
+                        // 文件随后会被删除
+                    }
+                    outputs[i] = null;
+                }
+            }
+            deleteFiles();
+        }
+
+        void deleteFiles() {
+            for (List<Path> partitionFiles : files) {
+                for (Path file : partitionFiles) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // 清理临时文件失败不影响结果
+                    }
+                }
+                partitionFiles.clear();
+            }
+        }
+    }
+
+    /**
+     * 分组结果
+     * 按分区逐个输出，任一时刻内存中只有一个分区的分组；使用完毕后应关闭以删除剩余的临时文件。
+     *
+     * @param <K> 分组键类型
+     * @param <R> 聚合结果类型
+     */
+    public static final class Result<K, R> implements AutoCloseable {
+        private final Table<K, ?, R> table;
+        private boolean consumed;
+
+        Result(Table<K, ?, R> table) {
+            this.table = table;
+            table.closeOutputs();
+        }
+
+        /**
+         * 收集阶段发生的溢写次数
+         */
+        public long getSpillCount() {
+            return table.spills;
+        }
+
+        /**
+         * 逐个分区输出 (键, 结果)，只能调用一次
+         */
+        public Stream<Map.Entry<K, R>> stream() {
+            if (consumed) {
+                throw new IllegalStateException("分组结果只能遍历一次");
+            }
+            consumed = true;
+            return IntStream.range(0, table.config.partitions).boxed()
+                    .flatMap(table::partitionResult)
+                    .onClose(table::deleteFiles);
+        }
+
+        /**
+         * 收集为内存中的Map，仅用于结果本身能放入内存的场景
+         */
+        public Map<K, R> toMap() {
+            Map<K, R> map = new HashMap<>();
+            try (Stream<Map.Entry<K, R>> entries = stream()) {
+                entries.forEach(entry -> map.put(entry.getKey(), entry.getValue()));
+            }
+            return map;
+        }
+
+        @Override
+        public void close() {
+            table.deleteFiles();
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package com.learn.stream.grouping;
+
+import com.learn.stream.collections.LongIntMap;
+import com.learn.stream.collections.ObjectLongMap;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 复合键多级分组
+ * groupingBy(a, groupingBy(b)) 为每个外层键建一个Map、为每个叶子分组建一个List。本类改为：
+ *
+ * 1. 每个维度的取值编码为按首次出现顺序分配的整数（字典编码）
+ * 2. 各维度编码打包成一个long作为复合键，所有分组放在一张扁平的 long → 分组编号 哈希表中
+ * 3. 分组按复合键排序，行号按分组顺序存放在一个int数组中，任意键前缀对应的分组和行都是连续区间
+ *
+ * 因此逐级下钻（只给出前几个维度的取值）只需二分查找一个区间，不需要遍历或合并分组；
+ * {@link #asNestedMap()} 返回的嵌套Map也是按需生成的视图，不复制数据。
+ * 构建后不可修改，可被多个线程同时读取。
+ *
+ * @param <T> 行类型
+ */
+public class CompositeGrouping<T> {
+
+    private static final int MAX_DIMENSIONS = 4;
+
+    private final Object[] rows;
+    private final int dimensions;
+    private final int bitsPerDimension;
+    private final Dictionary[] dictionaries;
+    private final LongIntMap groupByKey;
+    // 按复合键排序后的分组：第g个分组的键、行号区间 [rowOffsets[g], rowOffsets[g+1]) 以及度量值之和
+    private final long[] groupKeys;
+    private final int[] rowOffsets;
+    private final int[] rowIds;
+    private final double[] sums;
+
+    /**
+     * @param rows       参与分组的行
+     * @param dimensions 分组维度，依次为第1级、第2级……，取值不能为null
+     * @param measure    度量值，用于 {@link #sum}/{@link #average}；为null时只统计行数
+     */
+    public CompositeGrouping(Collection<? extends T> rows, List<? extends Function<? super T, ?>> dimensions,
+                             ToDoubleFunction<? super T> measure) {
+        if (dimensions.isEmpty() || dimensions.size() > MAX_DIMENSIONS) {
+            throw new IllegalArgumentException("维度数必须在1到" + MAX_DIMENSIONS + "之间: " + dimensions.size());
+        }
+        this.rows = rows.toArray();
+        this.dimensions = dimensions.size();
+        // 复合键只使用低63位，保证按有符号long排序即按各维度编码的字典序
+        this.bitsPerDimension = 63 / this.dimensions;
+        this.dictionaries = new Dictionary[this.dimensions];
+        for (int d = 0; d < this.dimensions; d++) {
+            dictionaries[d] = new Dictionary(bitsPerDimension);
+        }
+
+        // 第一遍：编码复合键，为每一行确定分组（分组编号按首次出现顺序）
+        int rowCount = this.rows.length;
+        int[] groupOfRow = new int[rowCount];
+        LongIntMap firstPass = new LongIntMap();
+        long[] keysInEncounterOrder = new long[16];
+        int[] counts = new int[16];
+        double[] sumsInEncounterOrder = new double[16];
+        int groupCount = 0;
+        for (int i = 0; i < rowCount; i++) {
+            @SuppressWarnings("unchecked")
+            T row = (T) this.rows[i];
+            long key = 0;
+            for (int d = 0; d < this.dimensions; d++) {
+                Object value = Objects.requireNonNull(dimensions.get(d).apply(row), "分组维度的取值不能为null");
+                key = (key << bitsPerDimension) | dictionaries[d].encode(value);
+            }
+            int group = firstPass.putIfAbsent(key, groupCount);
+            if (group == groupCount) {
+                if (groupCount == keysInEncounterOrder.length) {
+                    keysInEncounterOrder = Arrays.copyOf(keysInEncounterOrder, groupCount * 2);
+                    counts = Arrays.copyOf(counts, groupCount * 2);
+                    sumsInEncounterOrder = Arrays.copyOf(sumsInEncounterOrder, groupCount * 2);
+                }
+                keysInEncounterOrder[groupCount++] = key;
+            }
+            groupOfRow[i] = group;
+            counts[group]++;
+            if (measure != null) {
+                sumsInEncounterOrder[group] += measure.applyAsDouble(row);
+            }
+        }
+
+        // 第二遍：分组按复合键排序，再按分组顺序稳定地排列行号（计数排序）
+        this.groupKeys = Arrays.copyOf(keysInEncounterOrder, groupCount);
+        Arrays.sort(groupKeys);
+        this.groupByKey = new LongIntMap(groupCount);
+        for (int g = 0; g < groupCount; g++) {
+            groupByKey.put(groupKeys[g], g);
+        }
+        int[] rank = new int[groupCount];
+        for (int g = 0; g < groupCount; g++) {
+            rank[g] = groupByKey.getOrDefault(keysInEncounterOrder[g], -1);
+        }
+        this.rowOffsets = new int[groupCount + 1];
+        this.sums = new double[groupCount];
+        for (int g = 0; g < groupCount; g++) {
+            rowOffsets[rank[g] + 1] = counts[g];
+            sums[rank[g]] = sumsInEncounterOrder[g];
+        }
+        for (int g = 0; g < groupCount; g++) {
+            rowOffsets[g + 1] += rowOffsets[g];
+        }
+        this.rowIds = new int[rowCount];
+        int[] next = Arrays.copyOf(rowOffsets, groupCount);
+        for (int i = 0; i < rowCount; i++) {
+            rowIds[next[rank[groupOfRow[i]]]++] = i;
+        }
+    }
+
+    @SafeVarargs
+    public static <T> CompositeGrouping<T> of(Collection<? extends T> rows, Function<? super T, ?>... dimensions) {
+        List<Function<? super T, ?>> list = new ArrayList<>(dimensions.length);
+        for (Function<? super T, ?> dimension : dimensions) {
+            list.add(dimension);
+        }
+        return new CompositeGrouping<>(rows, list, null);
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * 非空分组（完整复合键）的个数
+     */
+    public int groupCount() {
+        return groupKeys.length;
+    }
+
+    /**
+     * 某个维度出现过的所有取值，按首次出现顺序
+     */
+    public List<Object> values(int dimension) {
+        return Collections.unmodifiableList(dictionaries[dimension].values);
+    }
+
+    /**
+     * 键前缀对应的行，如 rows("计算机科学") 为该专业所有学生，rows("计算机科学", "男") 为其中的男生
+     * 行按分组顺序排列，同一分组内保持原始顺序；不给出键时返回全部行
+     */
+    public List<T> rows(Object... keyPrefix) {
+        int[] range = groupRange(keyPrefix);
+        return rowsView(range[0], range[1]);
+    }
+
+    public long count(Object... keyPrefix) {
+        int[] range = groupRange(keyPrefix);
+        return rowOffsets[range[1]] - rowOffsets[range[0]];
+    }
+
+    public double sum(Object... keyPrefix) {
+        int[] range = groupRange(keyPrefix);
+        double total = 0;
+        for (int g = range[0]; g < range[1]; g++) {
+            total += sums[g];
+        }
+        return total;
+    }
+
+    /**
+     * 键前缀对应行的度量平均值，没有行时返回0（与 Collectors.averagingDouble 一致）
+     */
+    public double average(Object... keyPrefix) {
+        long count = count(keyPrefix);
+        return count == 0 ? 0.0 : sum(keyPrefix) / count;
+    }
+
+    /**
+     * 嵌套Map视图，形状与多级 groupingBy 的结果相同，如两个维度时为 Map&lt;K1, Map&lt;K2, List&lt;T&gt;&gt;&gt;
+     * 各级的键按该维度取值在全部行中首次出现的顺序排列；内层Map和List都在访问时才生成，get 为二分查找。
+     * 返回类型由调用方推断，必须与维度的个数和取值类型一致。
+     */
+    @SuppressWarnings("unchecked")
+    public <M extends Map<?, ?>> M asNestedMap() {
+        return (M) new NestedView(0, 0, groupKeys.length);
+    }
+
+    /**
+     * 键前缀对应的分组区间 [from, to)；有未出现过的取值时返回空区间
+     */
+    private int[] groupRange(Object... keyPrefix) {
+        if (keyPrefix.length > dimensions) {
+            throw new IllegalArgumentException("键的个数超过维度数: " + keyPrefix.length);
+        }
+        if (keyPrefix.length == dimensions) {
+            long key = 0;
+            for (int d = 0; d < dimensions; d++) {
+                long code = dictionaries[d].codeOf(keyPrefix[d]);
+                if (code < 0) {
+                    return new int[] {0, 0};
+                }
+                key = (key << bitsPerDimension) | code;
+            }
+            int group = groupByKey.getOrDefault(key, -1);
+            return group < 0 ? new int[] {0, 0} : new int[] {group, group + 1};
+        }
+        int from = 0;
+        int to = groupKeys.length;
+        for (int d = 0; d < keyPrefix.length && from < to; d++) {
+            long code = dictionaries[d].codeOf(keyPrefix[d]);
+            if (code < 0) {
+                return new int[] {0, 0};
+            }
+            int[] range = narrow(from, to, d, code);
+            from = range[0];
+            to = range[1];
+        }
+        return new int[] {from, to};
+    }
+
+    /**
+     * 在已按前d个维度确定的区间内，二分查找第d个维度编码为code的子区间
+     */
+    private int[] narrow(int from, int to, int dimension, long code) {
+        int low = lowerBound(from, to, dimension, code);
+        int high = lowerBound(low, to, dimension, code + 1);
+        return new int[] {low, high};
+    }
+
+    private int lowerBound(int from, int to, int dimension, long code) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (codeAt(mid, dimension) < code) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    private long codeAt(int group, int dimension) {
+        int shift = (dimensions - 1 - dimension) * bitsPerDimension;
+        return (groupKeys[group] >>> shift) & ((1L << bitsPerDimension) - 1);
+    }
+
+    private List<T> rowsView(int groupFrom, int groupTo) {
+        int from = rowOffsets[groupFrom];
+        int to = rowOffsets[groupTo];
+        return new RowList(from, to);
+    }
+
+    /**
+     * 维度取值的字典编码
+     */
+    private static final class Dictionary {
+        private final ObjectLongMap<Object> codes = new ObjectLongMap<>();
+        private final List<Object> values = new ArrayList<>();
+        private final long maxCode;
+
+        Dictionary(int bits) {
+            this.maxCode = (1L << bits) - 1;
+        }
+
+        long encode(Object value) {
+            long code = codes.getOrDefault(value, -1L);
+            if (code < 0) {
+                code = values.size();
+                if (code > maxCode) {
+                    throw new IllegalStateException("维度取值过多，超过复合键可容纳的 " + (maxCode + 1) + " 个");
+                }
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        long codeOf(Object value) {
+            return value == null ? -1L : codes.getOrDefault(value, -1L);
+        }
+    }
+
+    /**
+     * 行号区间上的只读列表视图
+     */
+    private final class RowList extends AbstractList<T> implements RandomAccess {
+        private final int from;
+        private final int to;
+
+        RowList(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+            }
+            return (T) rows[rowIds[from + index]];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * 第level级的Map视图，覆盖分组区间 [from, to)
+     */
+    private final class NestedView extends AbstractMap<Object, Object> {
+        private final int level;
+        private final int from;
+        private final int to;
+        private int size = -1;
+
+        NestedView(int level, int from, int to) {
+            this.level = level;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Object get(Object key) {
+            long code = dictionaries[level].codeOf(key);
+            if (code < 0) {
+                return null;
+            }
+            int[] range = narrow(from, to, level, code);
+            return range[0] == range[1] ? null : valueOf(range[0], range[1]);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            if (size < 0) {
+                int distinct = 0;
+                for (int g = from; g < to; g++) {
+                    if (g == from || codeAt(g, level) != codeAt(g - 1, level)) {
+                        distinct++;
+                    }
+                }
+                size = distinct;
+            }
+            return size;
+        }
+
+        @Override
+        public Set<Entry<Object, Object>> entrySet() {
+            return new AbstractSet<Entry<Object, Object>>() {
+                @Override
+                public Iterator<Entry<Object, Object>> iterator() {
+                    return new Iterator<Entry<Object, Object>>() {
+                        private int next = from;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < to;
+                        }
+
+                        @Override
+                        public Entry<Object, Object> next() {
+                            if (next >= to) {
+                                throw new NoSuchElementException();
+                            }
+                            long code = codeAt(next, level);
+                            int end = lowerBound(next, to, level, code + 1);
+                            Entry<Object, Object> entry = new SimpleImmutableEntry<>(
+                                    dictionaries[level].values.get((int) code), valueOf(next, end));
+                            next = end;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return NestedView.this.size();
+                }
+            };
+        }
+
+        private Object valueOf(int groupFrom, int groupTo) {
+            return level == dimensions - 1 ? rowsView(groupFrom, groupTo) : new NestedView(level + 1, groupFrom, groupTo);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.learn.stream.grouping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 两阶段哈希分区的并行分组
+ * 并行Stream中的 Collectors.groupingBy 为每个叶子任务建一个Map，再沿fork-join树两两合并，
+ * 每个分组条目会被复制 O(log n) 次。本收集器改为：
+ *
+ * 1. 分散阶段：每个叶子任务按键的哈希把元素追加到P个分区缓冲区，合并时只拼接缓冲区列表，不复制条目
+ * 2. 聚合阶段：P个分区互不相交，各自独立聚合，没有合并步骤；上游是并行Stream时在线程池中并行聚合，
+ *    顺序Stream只有一个叶子，直接在当前线程中聚合
+ * 3. 拼接阶段：按键的首次出现顺序把各分区的结果放入最终Map
+ *
+ * 结果与顺序执行 groupingBy(classifier, mapFactory, downstream) 相同，
+ * 包括 LinkedHashMap 的键顺序和每组内元素的顺序。
+ */
+public final class PartitionedGrouping {
+
+    private PartitionedGrouping() {
+    }
+
+    public static <T, K, A, D> Collector<T, ?, Map<K, D>> groupingBy(Function<? super T, ? extends K> classifier,
+                                                                   Collector<? super T, A, D> downstream) {
+        return groupingBy(classifier, HashMap::new, downstream);
+    }
+
+    public static <T, K, A, D, M extends Map<K, D>> Collector<T, ?, M> groupingBy(Function<? super T, ? extends K> classifier,
+                                                                                Supplier<M> mapFactory,
+                                                                                Collector<? super T, A, D> downstream) {
+        return groupingBy(classifier, mapFactory, downstream, defaultPartitions());
+    }
+
+    /**
+     * @param partitions 分区数，通常取并行度的数倍以便负载均衡
+     */
+    public static <T, K, A, D, M extends Map<K, D>> Collector<T, ?, M> groupingBy(Function<? super T, ? extends K> classifier,
+                                                                                Supplier<M> mapFactory,
+                                                                                Collector<? super T, A, D> downstream,
+                                                                                int partitions) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("分区数必须大于0: " + partitions);
+        }
+        return Collector.of(
+                () -> new Scatter<T, K>(partitions),
+                (scatter, element) -> scatter.add(classifier.apply(element), element),
+                Scatter::append,
+                scatter -> scatter.aggregate(mapFactory, downstream));
+    }
+
+    private static int defaultPartitions() {
+        int target = ForkJoinPool.getCommonPoolParallelism() * 4;
+        int partitions = 1;
+        while (partitions < target) {
+            partitions <<= 1;
+        }
+        return partitions;
+    }
+
+    /**
+     * 一个叶子任务在某个分区中的元素：键、元素以及它在叶子内的序号
+     */
+    private static final class Segment<T, K> {
+        final List<K> keys = new ArrayList<>();
+        final List<T> elements = new ArrayList<>();
+        int[] sequence = new int[8];
+
+        void add(K key, T element, int seq) {
+            if (keys.size() == sequence.length) {
+                sequence = Arrays.copyOf(sequence, sequence.length * 2);
+            }
+            sequence[keys.size()] = seq;
+            keys.add(key);
+            elements.add(element);
+        }
+    }
+
+    /**
+     * 一个叶子任务的分散结果：每个分区一个Segment
+     */
+    private static final class Leaf<T, K> {
+        final Segment<T, K>[] segments;
+        int count;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Leaf(int partitions) {
+            this.segments = new Segment[partitions];
+        }
+    }
+
+    /**
+     * 收集阶段的容器：按遇到顺序排列的叶子列表
+     */
+    private static final class Scatter<T, K> {
+        private final int partitions;
+        private final List<Leaf<T, K>> leaves = new ArrayList<>();
+        private Leaf<T, K> current;
+
+        Scatter(int partitions) {
+            this.partitions = partitions;
+        }
+
+        void add(K key, T element) {
+            if (current == null) {
+                current = new Leaf<>(partitions);
+                leaves.add(current);
+            }
+            int partition = Math.floorMod(mix(key == null ? 0 : key.hashCode()), partitions);
+            Segment<T, K> segment = current.segments[partition];
+            if (segment == null) {
+                segment = new Segment<>();
+                current.segments[partition] = segment;
+            }
+            segment.add(key, element, current.count++);
+        }
+
+        /**
+         * 合并两个容器：只拼接叶子列表，right的元素排在left之后
+         */
+        Scatter<T, K> append(Scatter<T, K> right) {
+            leaves.addAll(right.leaves);
+            current = null;
+            return this;
+        }
+
+        <A, D, M extends Map<K, D>> M aggregate(Supplier<M> mapFactory, Collector<? super T, A, D> downstream) {
+            Supplier<A> supplier = downstream.supplier();
+            BiConsumer<A, ? super T> accumulator = downstream.accumulator();
+            Function<A, D> finisher = downstream.finisher();
+
+            // 各分区独立聚合；合并过多个叶子说明上游是并行的，此时在调用方所在的ForkJoinPool中并行聚合
+            IntStream partitionIds = IntStream.range(0, partitions);
+            List<List<Group<K, A>>> perPartition = (leaves.size() > 1 ? partitionIds.parallel() : partitionIds)
+                    .mapToObj(p -> aggregatePartition(p, supplier, accumulator))
+                    .collect(Collectors.toList());
+
+            List<Group<K, A>> groups = new ArrayList<>();
+            perPartition.forEach(groups::addAll);
+            groups.sort(Comparator.comparingLong(group -> group.firstSeen));
+
+            M result = mapFactory.get();
+            for (Group<K, A> group : groups) {
+                if (result.put(group.key, finisher.apply(group.state)) != null) {
+                    throw new IllegalStateException("重复的分组键: " + group.key);
+                }
+            }
+            return result;
+        }
+
+        private <A> List<Group<K, A>> aggregatePartition(int partition, Supplier<A> supplier,
+                                                         BiConsumer<A, ? super T> accumulator) {
+            Map<K, Group<K, A>> groups = new HashMap<>();
+            for (int leafIndex = 0; leafIndex < leaves.size(); leafIndex++) {
+                Segment<T, K> segment = leaves.get(leafIndex).segments[partition];
+                if (segment == null) {
+                    continue;
+                }
+                for (int i = 0; i < segment.keys.size(); i++) {
+                    K key = segment.keys.get(i);
+                    Group<K, A> group = groups.get(key);
+                    if (group == null) {
+                        long firstSeen = ((long) leafIndex << 32) | segment.sequence[i];
+                        group = new Group<>(key, supplier.get(), firstSeen);
+                        groups.put(key, group);
+                    }
+                    accumulator.accept(group.state, segment.elements.get(i));
+                }
+            }
+            return new ArrayList<>(groups.values());
+        }
+
+        private static int mix(int h) {
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    private static final class Group<K, A> {
+        final K key;
+        final A state;
+        final long firstSeen;
+
+        Group(K key, A state, long firstSeen) {
+            this.key = key;
+            this.state = state;
+            this.firstSeen = firstSeen;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.learn.stream.index;
+
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 按语言习惯排序字符串的排序键缓存
+ * String.compareTo 按UTF-16编码比较，对中文来说顺序没有意义（"王" < "李" < "赵"...）；
+ * Collator 能按拼音排序，但每次比较都要重新分析两个字符串，放在比较器里会慢很多。
+ *
+ * 这里每个不同的字符串只用 Collator 计算一次排序键（CollationKey 的字节形式）并缓存，
+ * 之后的比较只是无符号字节数组的比较。{@link #sort(Collection, Function)} 更进一步：
+ * 先把不同的键排好序得到名次，再对 (名次, 下标) 组成的long数组做基本类型排序，完全不调用比较器。
+ *
+ * 线程安全；缓存只增不减，适合姓名、专业这类取值有限的字段。
+ */
+public class CollationKeyCache implements Comparator<String> {
+
+    private static final CollationKeyCache CHINESE = new CollationKeyCache(Locale.CHINA);
+
+    private final Collator collator;
+    private final Map<String, byte[]> keys = new ConcurrentHashMap<>();
+
+    public CollationKeyCache(Locale locale) {
+        this.collator = Collator.getInstance(locale);
+    }
+
+    /**
+     * 按中文拼音顺序的共享实例
+     */
+    public static CollationKeyCache chinese() {
+        return CHINESE;
+    }
+
+    /**
+     * 字符串的排序键，首次访问时计算
+     */
+    public byte[] key(String text) {
+        byte[] key = keys.get(text);
+        if (key == null) {
+            // Collator不是线程安全的
+            synchronized (collator) {
+                key = collator.getCollationKey(text).toByteArray();
+            }
+            keys.put(text, key);
+        }
+        return key;
+    }
+
+    @Override
+    public int compare(String a, String b) {
+        return compareKeys(key(a), key(b));
+    }
+
+    /**
+     * 按提取出的字符串比较元素的比较器，可以继续用 thenComparing 组合
+     */
+    public <T> Comparator<T> comparing(Function<? super T, String> keyExtractor) {
+        return (a, b) -> compare(keyExtractor.apply(a), keyExtractor.apply(b));
+    }
+
+    /**
+     * 按提取出的字符串稳定排序，返回新列表
+     * 每个元素只调用一次keyExtractor，排序过程不调用比较器
+     */
+    public <T> List<T> sort(Collection<? extends T> elements, Function<? super T, String> keyExtractor) {
+        Object[] values = elements.toArray();
+        String[] texts = new String[values.length];
+        Map<String, Integer> ranks = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            @SuppressWarnings("unchecked")
+            T value = (T) values[i];
+            texts[i] = keyExtractor.apply(value);
+            ranks.put(texts[i], 0);
+        }
+        // 只对不同的字符串按排序键做比较排序，得到每个字符串的名次
+        Keyed[] distinct = new Keyed[ranks.size()];
+        int next = 0;
+        for (String text : ranks.keySet()) {
+            distinct[next++] = new Keyed(text, key(text));
+        }
+        Arrays.sort(distinct, (a, b) -> compareKeys(a.key, b.key));
+        for (int rank = 0; rank < distinct.length; rank++) {
+            ranks.put(distinct[rank].text, rank);
+        }
+        long[] packed = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            packed[i] = ((long) ranks.get(texts[i]) << 32) | i;
+        }
+        // 名次在高位、原下标在低位，基本类型排序后相同名次保持原顺序
+        Arrays.sort(packed);
+        @SuppressWarnings("unchecked")
+        List<T> sorted = IntStream.range(0, packed.length)
+                .mapToObj(i -> (T) values[(int) packed[i]])
+                .collect(Collectors.toList());
+        return sorted;
+    }
+
+    /**
+     * 已缓存的排序键个数
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    private static final class Keyed {
+        final String text;
+        final byte[] key;
+
+        Keyed(String text, byte[] key) {
+            this.text = text;
+            this.key = key;
+        }
+    }
+
+    private static int compareKeys(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+}
@@ -0,0 +1,255 @@
+package com.learn.stream.index;
+
+import com.learn.stream.model.Course;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 课程的 学分 × 评分 二维范围索引
+ * 按学分 filter 再按评分 filter 的Stream每次查询都要扫描全部课程；本索引是一棵二维范围树（归并排序树）：
+ *
+ * 1. 课程按学分排序，在这个顺序上建立按2的幂对齐的分块，第d层每块覆盖2^d门课程
+ * 2. 每块内部的课程再按评分升序排列，并预先计算评分的前缀和
+ *
+ * 学分范围被拆成O(log n)个块，每块内二分查找评分范围，
+ * 数量、平均分、最高/最低分都由前缀和与区间端点得到，查询为O(log² n)；
+ * 评分最高的k门课程在这些块的区间末尾做k路归并，为O(log n + k·log log n)。
+ * 占用O(n log n)内存，建立后不可修改；课程对象在外部被修改时需要重新建立索引。
+ */
+public class CourseRangeIndex {
+
+    private final Course[] courses;      // 按学分升序
+    private final int[] credits;         // courses对应的学分
+    private final int[][] order;         // 第d层：每块内按评分升序的课程下标
+    private final double[][] scores;     // 第d层：与order对应的评分
+    private final double[][] prefix;     // 第d层：scores的前缀和，长度n+1
+
+    public CourseRangeIndex(Collection<? extends Course> source) {
+        int n = source.size();
+        this.courses = source.toArray(new Course[0]);
+        Arrays.sort(courses, Comparator.comparingInt(Course::getCredit));
+        this.credits = new int[n];
+        for (int i = 0; i < n; i++) {
+            credits[i] = courses[i].getCredit();
+        }
+
+        int levels = 1;
+        while ((1 << (levels - 1)) < n) {
+            levels++;
+        }
+        order = new int[levels][];
+        scores = new double[levels][];
+        prefix = new double[levels][];
+
+        order[0] = new int[n];
+        scores[0] = new double[n];
+        for (int i = 0; i < n; i++) {
+            order[0][i] = i;
+            scores[0][i] = courses[i].getScore();
+        }
+        for (int d = 1; d < levels; d++) {
+            order[d] = new int[n];
+            scores[d] = new double[n];
+            int half = 1 << (d - 1);
+            // 相邻两块归并成上一层的一块
+            for (int start = 0; start < n; start += 2 * half) {
+                merge(d, start, Math.min(start + half, n), Math.min(start + 2 * half, n));
+            }
+        }
+        for (int d = 0; d < levels; d++) {
+            prefix[d] = new double[n + 1];
+            for (int i = 0; i < n; i++) {
+                prefix[d][i + 1] = prefix[d][i] + scores[d][i];
+            }
+        }
+    }
+
+    public int size() {
+        return courses.length;
+    }
+
+    /**
+     * 学分和评分都在闭区间内的课程数
+     */
+    public long count(int minCredit, int maxCredit, double minScore, double maxScore) {
+        return stats(minCredit, maxCredit, minScore, maxScore).getCount();
+    }
+
+    /**
+     * 学分和评分都在闭区间内的课程的评分统计
+     */
+    public ScoreStats stats(int minCredit, int maxCredit, double minScore, double maxScore) {
+        ScoreStats stats = new ScoreStats();
+        forEachBlock(minCredit, maxCredit, (d, from, to) -> {
+            int lo = lowerBound(scores[d], from, to, minScore);
+            int hi = upperBound(scores[d], lo, to, maxScore);
+            if (lo < hi) {
+                stats.add(hi - lo, prefix[d][hi] - prefix[d][lo], scores[d][lo], scores[d][hi - 1]);
+            }
+        });
+        return stats;
+    }
+
+    /**
+     * 学分不低于minCredit、评分不低于minScore的课程的评分统计
+     */
+    public ScoreStats statsAtLeast(int minCredit, double minScore) {
+        return stats(minCredit, Integer.MAX_VALUE, minScore, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * 范围内评分最高的limit门课程，评分相同时学分高的在前
+     */
+    public List<Course> topByScore(int minCredit, int maxCredit, double minScore, double maxScore, int limit) {
+        // 每个块贡献一段按评分升序的区间，从区间末尾开始归并
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> {
+            int c = Double.compare(scores[b[0]][b[2]], scores[a[0]][a[2]]);
+            return c != 0 ? c : Integer.compare(order[b[0]][b[2]], order[a[0]][a[2]]);
+        });
+        forEachBlock(minCredit, maxCredit, (d, from, to) -> {
+            int lo = lowerBound(scores[d], from, to, minScore);
+            int hi = upperBound(scores[d], lo, to, maxScore);
+            if (lo < hi) {
+                heads.add(new int[]{d, lo, hi - 1});
+            }
+        });
+        List<Course> result = new ArrayList<>(Math.min(limit, courses.length));
+        while (result.size() < limit && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            result.add(courses[order[head[0]][head[2]]]);
+            if (head[2] > head[1]) {
+                head[2]--;
+                heads.add(head);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 学分不低于minCredit、评分不低于minScore的课程中评分最高的limit门
+     */
+    public List<Course> topByScoreAtLeast(int minCredit, double minScore, int limit) {
+        return topByScore(minCredit, Integer.MAX_VALUE, minScore, Double.POSITIVE_INFINITY, limit);
+    }
+
+    private interface BlockVisitor {
+        void visit(int level, int from, int to);
+    }
+
+    /**
+     * 把学分范围对应的位置区间拆成对齐的块（自底向上的线段树查询）
+     */
+    private void forEachBlock(int minCredit, int maxCredit, BlockVisitor visitor) {
+        if (minCredit > maxCredit) {
+            return;
+        }
+        int lo = lowerBound(credits, minCredit);
+        int hi = maxCredit == Integer.MAX_VALUE ? credits.length : lowerBound(credits, maxCredit + 1);
+        int n = courses.length;
+        for (int d = 0; lo < hi; d++) {
+            if ((lo & 1) == 1) {
+                visitor.visit(d, lo << d, Math.min((lo + 1) << d, n));
+                lo++;
+            }
+            if ((hi & 1) == 1) {
+                hi--;
+                visitor.visit(d, hi << d, Math.min((hi + 1) << d, n));
+            }
+            lo >>= 1;
+            hi >>= 1;
+        }
+    }
+
+    private void merge(int d, int start, int mid, int end) {
+        int[] srcOrder = order[d - 1];
+        double[] srcScores = scores[d - 1];
+        int i = start;
+        int j = mid;
+        for (int k = start; k < end; k++) {
+            if (j >= end || (i < mid && srcScores[i] <= srcScores[j])) {
+                order[d][k] = srcOrder[i];
+                scores[d][k] = srcScores[i++];
+            } else {
+                order[d][k] = srcOrder[j];
+                scores[d][k] = srcScores[j++];
+            }
+        }
+    }
+
+    private static int lowerBound(int[] values, int key) {
+        int lo = 0;
+        int hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // [from, to) 中第一个 >= key 的位置
+    private static int lowerBound(double[] values, int from, int to, double key) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (values[mid] < key) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    // [from, to) 中第一个 > key 的位置
+    private static int upperBound(double[] values, int from, int to, double key) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (values[mid] <= key) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * 范围查询的评分统计
+     */
+    public static final class ScoreStats {
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        void add(long count, double sum, double min, double max) {
+            this.count += count;
+            this.sum += sum;
+            this.min = Math.min(this.min, min);
+            this.max = Math.max(this.max, max);
+        }
+
+        public long getCount() { return count; }
+        public double getSum() { return sum; }
+        public double getMin() { return min; }
+        public double getMax() { return max; }
+
+        public double getAverage() {
+            return count > 0 ? sum / count : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ScoreStats{count=%d, sum=%.2f, min=%.2f, average=%.2f, max=%.2f}",
+                    count, sum, min, getAverage(), max);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.learn.stream.index;
+
+/**
+ * 汉字转拼音（不带声调）
+ * 项目不依赖拼音库，这里内置常见姓氏、名字用字和数字的读音，多音字取作姓名时的读音（如 曾zeng、单shan）。
+ * 表外的汉字无法转换，相应的名字只能按原文检索。
+ */
+public final class Pinyin {
+
+    private static final char CJK_FIRST = '一';
+    private static final char CJK_LAST = '鿿';
+
+    private static final String TABLE =
+            // 常见姓氏
+            "王wang 李li 张zhang 刘liu 陈chen 杨yang 黄huang 赵zhao 吴wu 周zhou "
+            + "徐xu 孙sun 马ma 朱zhu 胡hu 郭guo 何he 林lin 高gao 罗luo "
+            + "郑zheng 梁liang 谢xie 宋song 唐tang 许xu 韩han 冯feng 邓deng 曹cao "
+            + "钱qian 彭peng 曾zeng 萧xiao 田tian 董dong 潘pan 袁yuan 蔡cai 蒋jiang "
+            + "余yu 于yu 杜du 叶ye 程cheng 魏wei 苏su 吕lv 丁ding 任ren "
+            + "沈shen 姚yao 卢lu 姜jiang 崔cui 钟zhong 谭tan 陆lu 汪wang 范fan "
+            + "金jin 石shi 廖liao 贾jia 夏xia 韦wei 付fu 方fang 白bai 邹zou "
+            + "孟meng 熊xiong 秦qin 邱qiu 江jiang 尹yin 薛xue 闫yan 段duan 雷lei "
+            + "侯hou 龙long 史shi 陶tao 黎li 贺he 顾gu 毛mao 郝hao 龚gong "
+            + "邵shao 万wan 覃qin 武wu 戴dai 欧ou 莫mo 孔kong 向xiang 常chang 单shan "
+            // 常见名字用字
+            + "伟wei 芳fang 娜na 敏min 静jing 丽li 强qiang 磊lei 洋yang 艳yan "
+            + "勇yong 军jun 杰jie 娟juan 涛tao 明ming 超chao 秀xiu 霞xia 平ping "
+            + "刚gang 桂gui 华hua 玉yu 萍ping 红hong 鹏peng 辉hui 婷ting 宇yu "
+            + "浩hao 欣xin 然ran 晨chen 轩xuan 怡yi 子zi 雨yu 佳jia 博bo "
+            + "文wen 斌bin 琳lin 雪xue 梅mei 建jian 国guo 志zhi 海hai 春chun "
+            + "小xiao 大da 天tian 新xin 思si 嘉jia 俊jun 凯kai 琪qi 瑶yao "
+            // 数字
+            + "一yi 二er 三san 四si 五wu 六liu 七qi 八ba 九jiu 十shi";
+
+    private static final String[] SYLLABLES = new String[CJK_LAST - CJK_FIRST + 1];
+
+    static {
+        for (String entry : TABLE.split(" ")) {
+            SYLLABLES[entry.charAt(0) - CJK_FIRST] = entry.substring(1);
+        }
+    }
+
+    private Pinyin() {
+    }
+
+    /**
+     * 单个字符的拼音；ASCII字母和数字返回其小写形式，无法转换时返回null
+     */
+    public static String of(char c) {
+        if (c >= CJK_FIRST && c <= CJK_LAST) {
+            return SYLLABLES[c - CJK_FIRST];
+        }
+        if (c < 128 && Character.isLetterOrDigit(c)) {
+            return String.valueOf(Character.toLowerCase(c));
+        }
+        return null;
+    }
+
+    /**
+     * 全拼，如 张三 -> zhangsan；含无法转换的字符时返回null
+     */
+    public static String full(String text) {
+        StringBuilder sb = new StringBuilder(text.length() * 4);
+        for (int i = 0; i < text.length(); i++) {
+            String syllable = of(text.charAt(i));
+            if (syllable == null) {
+                return null;
+            }
+            sb.append(syllable);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 首字母，如 张三 -> zs；含无法转换的字符时返回null
+     */
+    public static String initials(String text) {
+        char[] initials = new char[text.length()];
+        for (int i = 0; i < text.length(); i++) {
+            String syllable = of(text.charAt(i));
+            if (syllable == null) {
+                return null;
+            }
+            initials[i] = syllable.charAt(0);
+        }
+        return new String(initials);
+    }
+}
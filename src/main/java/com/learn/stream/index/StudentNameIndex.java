@@ -0,0 +1,282 @@
+package com.learn.stream.index;
+
+import com.learn.stream.model.Student;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 学生姓名索引
+ * 用 filter(s -> name.equals(s.getName())).findFirst() 查找学生每次都要扫描整个列表；
+ * 本索引建立一次后可反复使用：
+ *
+ * 1. 精确查找：姓名 -> 学生列表的哈希表，O(1)
+ * 2. 前缀查找：前缀树同时收录原名、全拼和拼音首字母，输入"王"、"wang"或"ww"都能补全出"王五"
+ *
+ * 学生改名时应使用 {@link #rename(Student, String)}，直接调用 setName 会使索引失效。
+ * 非线程安全。
+ */
+public class StudentNameIndex {
+
+    private final Map<String, List<Student>> byName = new HashMap<>();
+    private final TrieNode root = new TrieNode();
+    private int size;
+
+    public StudentNameIndex() {
+    }
+
+    public StudentNameIndex(Collection<? extends Student> students) {
+        students.forEach(this::add);
+    }
+
+    public void add(Student student) {
+        String name = student.getName();
+        List<Student> students = byName.get(name);
+        if (students == null) {
+            students = new ArrayList<>(1);
+            byName.put(name, students);
+            forEachKey(name, key -> insert(key, name));
+        }
+        students.add(student);
+        size++;
+    }
+
+    /**
+     * 按学生当前的姓名移除（按引用比较），返回是否存在
+     */
+    public boolean remove(Student student) {
+        String name = student.getName();
+        List<Student> students = byName.get(name);
+        if (students == null || !removeIdentity(students, student)) {
+            return false;
+        }
+        size--;
+        if (students.isEmpty()) {
+            byName.remove(name);
+            forEachKey(name, key -> delete(key, name));
+        }
+        return true;
+    }
+
+    /**
+     * 修改学生姓名并同步更新索引
+     */
+    public void rename(Student student, String newName) {
+        boolean indexed = remove(student);
+        student.setName(newName);
+        if (indexed) {
+            add(student);
+        }
+    }
+
+    /**
+     * 按姓名精确查找，有同名学生时返回最早加入的一个
+     */
+    public Optional<Student> findFirst(String name) {
+        List<Student> students = byName.get(name);
+        return students == null ? Optional.empty() : Optional.of(students.get(0));
+    }
+
+    /**
+     * 按姓名精确查找所有同名学生
+     */
+    public List<Student> findAll(String name) {
+        List<Student> students = byName.get(name);
+        return students == null ? Collections.emptyList() : Collections.unmodifiableList(students);
+    }
+
+    public boolean contains(String name) {
+        return byName.containsKey(name);
+    }
+
+    /**
+     * 前缀补全：返回原名、全拼或拼音首字母以prefix开头的姓名，按匹配键的字典序，最多limit个
+     * 拼音不区分大小写，忽略空格
+     */
+    public List<String> complete(String prefix, int limit) {
+        String key = normalize(prefix);
+        Set<String> names = new LinkedHashSet<>();
+        TrieNode node = find(key);
+        if (node != null && limit > 0) {
+            node.collect(names, limit);
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * 前缀查找学生，返回姓名匹配的所有学生，最多limit个
+     */
+    public List<Student> prefixSearch(String prefix, int limit) {
+        List<Student> result = new ArrayList<>();
+        for (String name : complete(prefix, limit)) {
+            for (Student student : byName.get(name)) {
+                if (result.size() == limit) {
+                    return result;
+                }
+                result.add(student);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 已索引的学生数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 不同姓名的个数
+     */
+    public int nameCount() {
+        return byName.size();
+    }
+
+    private static boolean removeIdentity(List<Student> students, Student student) {
+        for (int i = 0; i < students.size(); i++) {
+            if (students.get(i) == student) {
+                students.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 一个姓名在前缀树中的所有键：原名、全拼、首字母
+     */
+    private static void forEachKey(String name, Consumer<String> consumer) {
+        String raw = normalize(name);
+        consumer.accept(raw);
+        String full = Pinyin.full(raw);
+        if (full != null && !full.equals(raw)) {
+            consumer.accept(full);
+            String initials = Pinyin.initials(raw);
+            if (!initials.equals(full)) {
+                consumer.accept(initials);
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private void insert(String key, String name) {
+        TrieNode node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+        }
+        node.addName(name);
+    }
+
+    private void delete(String key, String name) {
+        // 只清除姓名，不回收空节点：姓名集合通常变化不大，节点会被后续插入复用
+        TrieNode node = find(key);
+        if (node != null) {
+            node.removeName(name);
+        }
+    }
+
+    private TrieNode find(String key) {
+        TrieNode node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+
+    /**
+     * 前缀树节点：子节点按字符排序存放在数组中，二分查找
+     * 姓名用字分布稀疏，比每个节点一个HashMap省内存，也不需要装箱Character
+     */
+    private static final class TrieNode {
+        private static final char[] NO_LABELS = new char[0];
+        private static final TrieNode[] NO_CHILDREN = new TrieNode[0];
+
+        private char[] labels = NO_LABELS;
+        private TrieNode[] children = NO_CHILDREN;
+        private int childCount;
+        // 以该节点结尾的键对应的姓名，通常只有一个
+        private List<String> names;
+
+        TrieNode child(char c) {
+            int i = Arrays.binarySearch(labels, 0, childCount, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        TrieNode childOrCreate(char c) {
+            int i = Arrays.binarySearch(labels, 0, childCount, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int insertAt = -i - 1;
+            if (childCount == labels.length) {
+                int capacity = Math.max(2, childCount * 2);
+                labels = Arrays.copyOf(labels, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(labels, insertAt, labels, insertAt + 1, childCount - insertAt);
+            System.arraycopy(children, insertAt, children, insertAt + 1, childCount - insertAt);
+            TrieNode node = new TrieNode();
+            labels[insertAt] = c;
+            children[insertAt] = node;
+            childCount++;
+            return node;
+        }
+
+        void addName(String name) {
+            if (names == null) {
+                names = new ArrayList<>(1);
+            }
+            names.add(name);
+        }
+
+        void removeName(String name) {
+            if (names != null) {
+                names.remove(name);
+                if (names.isEmpty()) {
+                    names = null;
+                }
+            }
+        }
+
+        /**
+         * 深度优先收集子树中的姓名，按键的字典序
+         */
+        boolean collect(Set<String> result, int limit) {
+            if (names != null) {
+                for (String name : names) {
+                    result.add(name);
+                    if (result.size() >= limit) {
+                        return true;
+                    }
+                }
+            }
+            for (int i = 0; i < childCount; i++) {
+                if (children[i].collect(result, limit)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -1,10 +1,21 @@
 package com.learn.stream.intermediate;
 
+import com.learn.stream.external.Aggregator;
+import com.learn.stream.external.SpillCodec;
+import com.learn.stream.external.SpillingGroupingBy;
+import com.learn.stream.external.SpillingDistinct;
+import com.learn.stream.grouping.CompositeGrouping;
+import com.learn.stream.index.StudentNameIndex;
 import com.learn.stream.model.Student;
+import com.learn.stream.monitor.AllocationProfiler;
+import com.learn.stream.monitor.ForkJoinDiagnostics;
+import com.learn.stream.perf.MicroBenchmark;
 import com.learn.stream.model.Course;
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Stream API中级操作示例
@@ -16,21 +27,27 @@ public class IntermediateStreamOperations {
         System.out.println("=== Stream API中级操作示例 ===\n");
         
         // 1. 聚合操作 (count, sum, average, max, min)
+        AllocationProfiler.section("demonstrateAggregationOperations");
         demonstrateAggregationOperations();
         
         // 2. 分组操作 (groupingBy)
+        AllocationProfiler.section("demonstrateGroupingOperations");
         demonstrateGroupingOperations();
         
         // 3. 归约操作 (reduce)
+        AllocationProfiler.section("demonstrateReductionOperations");
         demonstrateReductionOperations();
         
         // 4. Optional类使用
+        AllocationProfiler.section("demonstrateOptionalOperations");
         demonstrateOptionalOperations();
         
         // 5. 并行Stream
+        AllocationProfiler.section("demonstrateParallelStream");
         demonstrateParallelStream();
         
         // 6. 去重和限制操作 (distinct, limit, skip)
+        AllocationProfiler.section("demonstrateDistinctAndLimitOperations");
         demonstrateDistinctAndLimitOperations();
     }
     
@@ -105,6 +122,19 @@ public class IntermediateStreamOperations {
         avgGpaByGender.forEach((gender, avgGpa) -> 
                 System.out.println("    " + gender + ": " + String.format("%.2f", avgGpa)));
         
+        // 可溢写的分组：内存中最多保存2个分组，其余部分结果写入临时文件后再合并（适合分组键很多的场景）
+        try (SpillingGroupingBy.Result<String, Double> spilled = students.stream()
+                .collect(SpillingGroupingBy.groupingBy(
+                        Student::getMajor,
+                        SpillCodec.strings(),
+                        Aggregator.averagingDouble(Student::getGpa),
+                        2
+                ))) {
+            System.out.println("\n  可溢写分组的各专业平均GPA (溢写" + spilled.getSpillCount() + "次):");
+            new TreeMap<>(spilled.toMap()).forEach((major, avgGpa) ->
+                    System.out.println("    " + major + ": " + String.format("%.2f", avgGpa)));
+        }
+        
         // 多级分组：先按专业，再按性别
         Map<String, Map<String, List<Student>>> groupedByMajorAndGender = students.stream()
                 .collect(Collectors.groupingBy(
@@ -123,6 +153,18 @@ public class IntermediateStreamOperations {
             });
         });
         
+        // 复合键分组：专业×性别打包成一个long键放在一张扁平表中，嵌套Map只是按需生成的视图
+        CompositeGrouping<Student> majorAndGender = new CompositeGrouping<>(students,
+                Arrays.<Function<Student, ?>>asList(Student::getMajor, Student::getGender), Student::getGpa);
+        Map<String, Map<String, List<Student>>> nestedView = majorAndGender.asNestedMap();
+        System.out.println("\n  复合键分组 (" + majorAndGender.groupCount() + "个分组, 与多级groupingBy结果一致: "
+                + nestedView.equals(groupedByMajorAndGender) + "):");
+        System.out.println("    计算机科学: " + majorAndGender.count("计算机科学") + "人, 平均GPA "
+                + String.format("%.2f", majorAndGender.average("计算机科学")));
+        System.out.println("    计算机科学/男: " + majorAndGender.rows("计算机科学", "男").stream()
+                .map(Student::getName)
+                .collect(Collectors.joining(", ")));
+        
         System.out.println();
     }
     
@@ -176,10 +218,11 @@ public class IntermediateStreamOperations {
         
         List<Student> students = createSampleStudents();
         
+        // 按姓名反复查找时先建立姓名索引，每次查找O(1)，不再逐个扫描列表
+        StudentNameIndex nameIndex = new StudentNameIndex(students);
+        
         // 查找特定学生
-        Optional<Student> studentOpt = students.stream()
-                .filter(student -> "王五".equals(student.getName()))
-                .findFirst();
+        Optional<Student> studentOpt = nameIndex.findFirst("王五");
         
         System.out.println("  查找王五:");
         if (studentOpt.isPresent()) {
@@ -190,16 +233,12 @@ public class IntermediateStreamOperations {
         }
         
         // 使用orElse提供默认值
-        Student notFoundStudent = students.stream()
-                .filter(student -> "不存在的学生".equals(student.getName()))
-                .findFirst()
+        Student notFoundStudent = nameIndex.findFirst("不存在的学生")
                 .orElse(new Student("默认值", 0, "未知", 0.0, "未知"));
         System.out.println("  未找到时的默认值: " + notFoundStudent.getName());
         
         // 使用orElseGet提供默认值
-        Student studentOrElseGet = students.stream()
-                .filter(student -> "李四".equals(student.getName()))
-                .findFirst()
+        Student studentOrElseGet = nameIndex.findFirst("李四")
                 .orElseGet(() -> {
                     System.out.println("  使用orElseGet提供默认值");
                     return new Student("默认值", 0, "未知", 0.0, "未知");
@@ -207,9 +246,7 @@ public class IntermediateStreamOperations {
         System.out.println("  找到学生时的结果: " + studentOrElseGet.getName());
         
         // 使用map转换Optional内容
-        String majorOfWangwu = students.stream()
-                .filter(student -> "王五".equals(student.getName()))
-                .findFirst()
+        String majorOfWangwu = nameIndex.findFirst("王五")
                 .map(Student::getMajor)
                 .orElse("专业未知");
         System.out.println("  王五的专业: " + majorOfWangwu);
@@ -223,6 +260,12 @@ public class IntermediateStreamOperations {
         firstMajor.ifPresent(major -> 
                 System.out.println("  第一个计算机科学专业: " + major));
         
+        // 前缀补全：原名、全拼和拼音首字母都可以作为前缀
+        System.out.println("  姓名补全:");
+        for (String prefix : Arrays.asList("王", "li", "zs", "ZHAO")) {
+            System.out.println("    " + prefix + " -> " + nameIndex.complete(prefix, 5));
+        }
+        
         System.out.println();
     }
     
@@ -238,30 +281,56 @@ public class IntermediateStreamOperations {
             numbers.add(i);
         }
         
+        MicroBenchmark benchmark = MicroBenchmark.defaults();
+        
         // 顺序Stream
-        long startTime = System.currentTimeMillis();
         long countEvenSequential = numbers.stream()
                 .filter(num -> num % 2 == 0)
                 .count();
-        long sequentialTime = System.currentTimeMillis() - startTime;
+        MicroBenchmark.Result sequential = benchmark.run("顺序Stream", () -> numbers.stream()
+                .filter(num -> num % 2 == 0)
+                .count());
         
         System.out.println("  顺序Stream找到偶数数量: " + countEvenSequential);
-        System.out.println("  顺序Stream耗时: " + sequentialTime + "ms");
+        System.out.println("  " + sequential);
         
         // 并行Stream
-        startTime = System.currentTimeMillis();
         long countEvenParallel = numbers.parallelStream()
                 .filter(num -> num % 2 == 0)
                 .count();
-        long parallelTime = System.currentTimeMillis() - startTime;
+        MicroBenchmark.Result parallel = benchmark.run("并行Stream", () -> numbers.parallelStream()
+                .filter(num -> num % 2 == 0)
+                .count());
         
         System.out.println("  并行Stream找到偶数数量: " + countEvenParallel);
-        System.out.println("  并行Stream耗时: " + parallelTime + "ms");
+        System.out.println("  " + parallel);
         
-        // 性能提升百分比
-        double improvement = ((double)(sequentialTime - parallelTime) / sequentialTime) * 100;
+        // 性能提升百分比（按中位数计算）
+        double improvement = (1 - parallel.getMedian() / sequential.getMedian()) * 100;
         System.out.println("  性能提升: " + String.format("%.1f", improvement) + "%");
-        
+
+        // Fork/Join诊断：比较不同数据源的拆分、线程负载、窃取次数和合并耗时
+        ForkJoinDiagnostics arrayList = new ForkJoinDiagnostics("ArrayList");
+        ForkJoinDiagnostics linkedList = new ForkJoinDiagnostics("LinkedList");
+        ForkJoinDiagnostics iterator = new ForkJoinDiagnostics("Iterator");
+        List<Integer> linkedNumbers = new LinkedList<>(numbers);
+        arrayList.run(numbers, s -> s.filter(num -> num % 2 == 0)
+                .collect(arrayList.timeCombiner(Collectors.toList())));
+        linkedList.run(linkedNumbers, s -> s.filter(num -> num % 2 == 0)
+                .collect(linkedList.timeCombiner(Collectors.toList())));
+        iterator.run(Spliterators.spliteratorUnknownSize(numbers.iterator(), Spliterator.ORDERED),
+                s -> s.filter(num -> num % 2 == 0).collect(iterator.timeCombiner(Collectors.toList())));
+
+        System.out.println("\n  Fork/Join诊断 (filter偶数 + toList):");
+        System.out.println("    " + ForkJoinDiagnostics.Report.tableHeader());
+        for (ForkJoinDiagnostics diagnostics : Arrays.asList(arrayList, linkedList, iterator)) {
+            System.out.println("    " + diagnostics.report().toRow());
+        }
+        ForkJoinDiagnostics.Report arrayListReport = arrayList.report();
+        System.out.println("  " + arrayListReport.toString().replace("\n", "\n  "));
+        System.out.println("  拆分树 (前2层):");
+        System.out.print(arrayListReport.formatTree(2).replaceAll("(?m)^", "    "));
+
         // 注意事项：并行Stream不保证顺序
         List<String> names = Arrays.asList("A", "B", "C", "D", "E", "F", "G", "H");
         System.out.println("\n  原始顺序: " + names);
@@ -288,6 +357,12 @@ public class IntermediateStreamOperations {
                 .collect(Collectors.toList());
         System.out.println("  去重后排序: " + distinctNumbers);
         
+        // 有内存上限的去重：内存中最多保存4个键，超出的部分溢写到临时文件
+        try (Stream<Integer> bounded = new SpillingDistinct<>(SpillCodec.integers(), 4)
+                .distinct(numbersWithDuplicates.stream())) {
+            System.out.println("  有内存上限的去重后排序: " + bounded.sorted().collect(Collectors.toList()));
+        }
+        
         // 限制前N个元素
         List<Integer> first5Numbers = numbersWithDuplicates.stream()
                 .limit(5)
@@ -18,7 +18,14 @@ public class Student {
         this.gpa = gpa;
         this.gender = gender;
     }
-    
+
+    /**
+     * 复制构造，得到字段相同的独立对象
+     */
+    public Student(Student other) {
+        this(other.name, other.age, other.major, other.gpa, other.gender);
+    }
+
     // Getters and Setters
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
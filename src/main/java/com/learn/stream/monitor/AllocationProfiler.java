@@ -0,0 +1,358 @@
+package com.learn.stream.monitor;
+
+import com.learn.stream.monitor.metrics.StreamMetrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 示例运行的内存分配与GC统计
+ * 启动器和GUI在运行每个示例时调用 {@link #start(String)}，示例的 main 方法在每一节之前调用
+ * {@link #section(String)}，结束后得到一份报告：
+ *
+ * 1. 运行线程分配的字节数（com.sun.management.ThreadMXBean，只统计当前线程，不含ForkJoin工作线程）
+ * 2. 所有线程分配的字节数（运行前后都存活的线程之差，并行Stream的分配在这里体现）
+ * 3. GC次数和GC耗时（所有收集器之和）
+ * 4. 堆内存峰值（各堆内存池峰值之和，是实际峰值的上界）
+ *
+ * 每一节单独统计，同一个示例再次运行时与上一次比较，分配量的回归可以立即看出来。
+ * 当前线程没有进行中的统计时，{@link #section(String)} 什么也不做，示例单独运行不受影响。
+ */
+public final class AllocationProfiler {
+
+    private static final String INITIAL_SECTION = "(初始化)";
+
+    private static final ThreadLocal<Run> CURRENT = new ThreadLocal<>();
+    private static final Map<String, Report> LAST_REPORTS = new ConcurrentHashMap<>();
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private AllocationProfiler() {
+    }
+
+    /**
+     * 在当前线程开始统计一个示例，嵌套调用时外层的统计在内层结束后继续
+     */
+    public static Run start(String example) {
+        Run run = new Run(example, CURRENT.get());
+        CURRENT.set(run);
+        return run;
+    }
+
+    /**
+     * 结束当前一节并开始新的一节
+     */
+    public static void section(String name) {
+        Run run = CURRENT.get();
+        if (run != null) {
+            run.beginSection(name);
+        }
+    }
+
+    /**
+     * 同一个示例上一次运行的报告
+     */
+    public static Report lastReport(String example) {
+        return LAST_REPORTS.get(example);
+    }
+
+    /**
+     * 当前JVM是否支持按线程统计分配字节数
+     */
+    public static boolean isAllocationSupported() {
+        return THREADS != null;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        try {
+            if (!sunBean.isThreadAllocatedMemorySupported()) {
+                return null;
+            }
+            if (!sunBean.isThreadAllocatedMemoryEnabled()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return sunBean;
+        } catch (UnsupportedOperationException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static long threadAllocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 所有存活线程的已分配字节数快照，下标与 ids 对应
+     */
+    private static long[] allThreadAllocatedBytes(long[] ids) {
+        return THREADS == null ? null : THREADS.getThreadAllocatedBytes(ids);
+    }
+
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+
+    /**
+     * 读取自上次重置以来的堆峰值并重新开始记录
+     */
+    private static long takeHeapPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                if (pool.getPeakUsage() != null) {
+                    peak += pool.getPeakUsage().getUsed();
+                }
+                pool.resetPeakUsage();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * 一次进行中的统计，只能在调用 start 的线程上结束
+     */
+    public static final class Run {
+        private final String example;
+        private final Run outer;
+        private final Thread thread = Thread.currentThread();
+        private final long startNanos = System.nanoTime();
+        private final long startThreadBytes;
+        private final long[] startThreadIds;
+        private final long[] startAllBytes;
+        private final long[] startGc;
+        private final List<Section> sections = new ArrayList<>();
+
+        private String sectionName = INITIAL_SECTION;
+        private long sectionNanos;
+        private long sectionBytes;
+        private long[] sectionGc;
+        private long peakHeap;
+        private boolean finished;
+
+        private Run(String example, Run outer) {
+            this.example = example;
+            this.outer = outer;
+            this.startThreadIds = THREADS == null ? null : THREADS.getAllThreadIds();
+            this.startAllBytes = allThreadAllocatedBytes(startThreadIds);
+            this.startGc = gcTotals();
+            takeHeapPeak();
+            this.startThreadBytes = threadAllocatedBytes();
+            this.sectionNanos = startNanos;
+            this.sectionBytes = startThreadBytes;
+            this.sectionGc = startGc;
+        }
+
+        private void beginSection(String name) {
+            closeSection();
+            sectionName = name;
+        }
+
+        private void closeSection() {
+            long bytes = threadAllocatedBytes();
+            long[] gc = gcTotals();
+            long heap = takeHeapPeak();
+            long now = System.nanoTime();
+            sections.add(new Section(sectionName, now - sectionNanos,
+                    bytes < 0 ? -1 : bytes - sectionBytes,
+                    gc[0] - sectionGc[0], gc[1] - sectionGc[1], heap));
+            peakHeap = Math.max(peakHeap, heap);
+            sectionNanos = now;
+            sectionBytes = bytes;
+            sectionGc = gc;
+        }
+
+        /**
+         * 结束统计并生成报告
+         */
+        public Report finish() {
+            if (Thread.currentThread() != thread) {
+                throw new IllegalStateException("统计必须在开始它的线程上结束");
+            }
+            if (finished) {
+                throw new IllegalStateException("统计已经结束");
+            }
+            finished = true;
+            closeSection();
+            long threadBytes = threadAllocatedBytes();
+            long allBytes = -1;
+            if (startAllBytes != null) {
+                allBytes = 0;
+                long[] endBytes = THREADS.getThreadAllocatedBytes(startThreadIds);
+                for (int i = 0; i < startThreadIds.length; i++) {
+                    if (startAllBytes[i] >= 0 && endBytes[i] >= 0) {
+                        allBytes += endBytes[i] - startAllBytes[i];
+                    }
+                }
+            }
+            long[] gc = gcTotals();
+            if (outer != null) {
+                CURRENT.set(outer);
+            } else {
+                CURRENT.remove();
+            }
+            Report previous = LAST_REPORTS.get(example);
+            Report report = new Report(example, System.nanoTime() - startNanos,
+                    threadBytes < 0 ? -1 : threadBytes - startThreadBytes, allBytes,
+                    gc[0] - startGc[0], gc[1] - startGc[1], peakHeap, sections, previous);
+            LAST_REPORTS.put(example, report);
+            StreamMetrics.recordExample(example, report.getElapsedNanos(), allBytes);
+            return report;
+        }
+    }
+
+    /**
+     * 一节的统计结果，字节数为 -1 表示JVM不支持
+     */
+    public static final class Section {
+        private final String name;
+        private final long elapsedNanos;
+        private final long allocatedBytes;
+        private final long gcCount;
+        private final long gcMillis;
+        private final long peakHeapBytes;
+
+        Section(String name, long elapsedNanos, long allocatedBytes, long gcCount, long gcMillis, long peakHeapBytes) {
+            this.name = name;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+
+        public String getName() { return name; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public long getAllocatedBytes() { return allocatedBytes; }
+        public long getGcCount() { return gcCount; }
+        public long getGcMillis() { return gcMillis; }
+        public long getPeakHeapBytes() { return peakHeapBytes; }
+    }
+
+    /**
+     * 一个示例的完整报告
+     */
+    public static final class Report {
+        private final String example;
+        private final long elapsedNanos;
+        private final long threadAllocatedBytes;
+        private final long allThreadsAllocatedBytes;
+        private final long gcCount;
+        private final long gcMillis;
+        private final long peakHeapBytes;
+        private final List<Section> sections;
+        private final Report previous;
+
+        Report(String example, long elapsedNanos, long threadAllocatedBytes, long allThreadsAllocatedBytes,
+               long gcCount, long gcMillis, long peakHeapBytes, List<Section> sections, Report previous) {
+            this.example = example;
+            this.elapsedNanos = elapsedNanos;
+            this.threadAllocatedBytes = threadAllocatedBytes;
+            this.allThreadsAllocatedBytes = allThreadsAllocatedBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+            this.peakHeapBytes = peakHeapBytes;
+            this.sections = Collections.unmodifiableList(new ArrayList<>(sections));
+            // 只保留上一次的汇总，不形成越来越长的链
+            this.previous = previous == null ? null : previous.withoutPrevious();
+        }
+
+        private Report withoutPrevious() {
+            return previous == null ? this : new Report(example, elapsedNanos, threadAllocatedBytes,
+                    allThreadsAllocatedBytes, gcCount, gcMillis, peakHeapBytes, sections, null);
+        }
+
+        public String getExample() { return example; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public long getThreadAllocatedBytes() { return threadAllocatedBytes; }
+        public long getAllThreadsAllocatedBytes() { return allThreadsAllocatedBytes; }
+        public long getGcCount() { return gcCount; }
+        public long getGcMillis() { return gcMillis; }
+        public long getPeakHeapBytes() { return peakHeapBytes; }
+        public List<Section> getSections() { return sections; }
+
+        /**
+         * 按名称查找上一次运行中的同一节
+         */
+        private Section previousSection(String name) {
+            if (previous == null) {
+                return null;
+            }
+            for (Section section : previous.sections) {
+                if (section.name.equals(name)) {
+                    return section;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ROOT, "📊 内存统计 [%s] 耗时 %.1fms%n", example, elapsedNanos / 1e6));
+            sb.append(String.format(Locale.ROOT, "  运行线程分配: %s%s, 所有线程分配: %s%n",
+                    formatBytes(threadAllocatedBytes),
+                    change(threadAllocatedBytes, previous == null ? -1 : previous.threadAllocatedBytes),
+                    formatBytes(allThreadsAllocatedBytes)));
+            sb.append(String.format(Locale.ROOT, "  GC: %d次, %dms, 堆峰值: %s%n",
+                    gcCount, gcMillis, formatBytes(peakHeapBytes)));
+            sb.append(String.format(Locale.ROOT, "  %-34s %10s %12s %6s %8s %10s%n",
+                    "分节", "耗时", "分配", "GC次数", "GC耗时", "堆峰值"));
+            for (Section section : sections) {
+                Section before = previousSection(section.name);
+                sb.append(String.format(Locale.ROOT, "  %-34s %8.1fms %12s %6d %6dms %10s%s%n",
+                        section.name, section.elapsedNanos / 1e6, formatBytes(section.allocatedBytes),
+                        section.gcCount, section.gcMillis, formatBytes(section.peakHeapBytes),
+                        change(section.allocatedBytes, before == null ? -1 : before.allocatedBytes)));
+            }
+            return sb.toString();
+        }
+
+        /**
+         * 与上一次相比的分配量变化，超过20%时标记；上次不足1KB时不比较，避免噪声
+         */
+        private static String change(long current, long before) {
+            if (current < 0 || before < 1024) {
+                return "";
+            }
+            double ratio = (current - before) * 100.0 / before;
+            String mark = ratio > 20 ? " ⚠" : "";
+            return String.format(Locale.ROOT, " (较上次 %+.0f%%%s)", ratio, mark);
+        }
+    }
+
+    /**
+     * 按量级选择 B/KB/MB/GB 格式化，负数表示不支持
+     */
+    public static String formatBytes(long bytes) {
+        if (bytes < 0) {
+            return "不支持";
+        } else if (bytes < 1024) {
+            return bytes + "B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1fKB", bytes / 1024.0);
+        } else if (bytes < 1024L * 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1fMB", bytes / (1024.0 * 1024));
+        }
+        return String.format(Locale.ROOT, "%.2fGB", bytes / (1024.0 * 1024 * 1024));
+    }
+}
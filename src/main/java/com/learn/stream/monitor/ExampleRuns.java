@@ -0,0 +1,61 @@
+package com.learn.stream.monitor;
+
+import com.learn.stream.monitor.jfr.ExampleRunEvent;
+
+/**
+ * 运行一个示例并记录监控数据
+ * 启动器、GUI和命令行批量模式运行示例时都通过这里：开始JFR {@link ExampleRunEvent} 和
+ * {@link AllocationProfiler} 统计，示例结束（包括抛出异常）后结束统计并记录成功与否。
+ */
+public final class ExampleRuns {
+
+    private ExampleRuns() {
+    }
+
+    /**
+     * 示例代码
+     */
+    @FunctionalInterface
+    public interface Body {
+        void run() throws Exception;
+    }
+
+    /**
+     * 运行示例，结束后把分配报告打印到标准输出；示例抛出的异常原样抛出
+     *
+     * @param example 示例名称，同时用作分配统计的名称
+     * @param origin  launcher、gui 或 cli
+     */
+    public static void runInstrumented(String example, String origin, Body body) throws Exception {
+        run(example, origin, example, body, true);
+    }
+
+    /**
+     * 运行示例并返回分配报告，不打印；示例抛出的异常原样抛出
+     *
+     * @param profileName 分配统计的名称
+     */
+    public static AllocationProfiler.Report profile(String example, String origin, String profileName, Body body)
+            throws Exception {
+        return run(example, origin, profileName, body, false);
+    }
+
+    private static AllocationProfiler.Report run(String example, String origin, String profileName, Body body,
+                                                 boolean printReport) throws Exception {
+        ExampleRunEvent event = ExampleRunEvent.start(example, origin);
+        AllocationProfiler.Run allocation = AllocationProfiler.start(profileName);
+        boolean success = false;
+        AllocationProfiler.Report report;
+        try {
+            body.run();
+            success = true;
+        } finally {
+            report = allocation.finish();
+            if (printReport) {
+                System.out.println(report);
+            }
+            event.finish(success);
+        }
+        return report;
+    }
+}
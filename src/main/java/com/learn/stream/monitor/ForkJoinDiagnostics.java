@@ -0,0 +1,453 @@
+package com.learn.stream.monitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 并行Stream的Fork/Join诊断
+ * 并行Stream比顺序Stream慢时，原因可能是拆分不好、负载不均衡或者合并代价太高。
+ * 本类把数据源的Spliterator包装起来，在一次并行执行中记录：
+ *
+ * 1. 拆分树：每次 trySplit 的深度，以及每个叶子实际处理的元素数
+ * 2. 每个线程处理的元素数、叶子数和忙碌时间
+ * 3. 执行前后ForkJoinPool的窃取次数
+ * 4. 经 {@link #timeCombiner} 包装的合并函数的调用次数和耗时
+ *
+ * <pre>
+ * ForkJoinDiagnostics diagnostics = new ForkJoinDiagnostics("ArrayList");
+ * List&lt;Integer&gt; evens = diagnostics.run(numbers, s -&gt; s.filter(n -&gt; n % 2 == 0)
+ *         .collect(diagnostics.timeCombiner(Collectors.toList())));
+ * System.out.println(diagnostics.report());
+ * </pre>
+ *
+ * 同一个对象可以运行多次，报告包含所有运行的累计数据。
+ */
+public class ForkJoinDiagnostics {
+
+    private final String source;
+    private final ForkJoinPool pool;
+    private final List<SplitNode> roots = new ArrayList<>();
+    private final Map<String, WorkerStats> workers = new ConcurrentHashMap<>();
+    private final LongAdder combinerCalls = new LongAdder();
+    private final LongAdder combinerNanos = new LongAdder();
+    private long steals;
+    private long elapsedNanos;
+
+    /**
+     * @param source 数据源名称，用于在报告中区分不同的数据源
+     */
+    public ForkJoinDiagnostics(String source) {
+        this(source, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool 执行Stream的线程池，用于读取窃取次数；在自定义线程池中提交Stream时传入该线程池
+     */
+    public ForkJoinDiagnostics(String source, ForkJoinPool pool) {
+        this.source = source;
+        this.pool = pool;
+    }
+
+    /**
+     * 以collection为数据源并行执行pipeline
+     */
+    public <T, R> R run(Collection<T> collection, Function<Stream<T>, R> pipeline) {
+        return run(collection.spliterator(), pipeline);
+    }
+
+    /**
+     * 以spliterator为数据源并行执行pipeline，记录拆分树、线程负载和窃取次数
+     */
+    public <T, R> R run(Spliterator<T> spliterator, Function<Stream<T>, R> pipeline) {
+        SplitNode root = new SplitNode(0, spliterator.estimateSize());
+        synchronized (roots) {
+            roots.add(root);
+        }
+        Queue<TrackingSpliterator<?>> trackers = new ConcurrentLinkedQueue<>();
+        long stealsBefore = pool.getStealCount();
+        long start = System.nanoTime();
+        try {
+            return pipeline.apply(StreamSupport.stream(new TrackingSpliterator<>(spliterator, root, trackers), true));
+        } finally {
+            long end = System.nanoTime();
+            // 短路操作结束时还没遍历完的叶子没有机会提交，在这里补上
+            for (TrackingSpliterator<?> tracker : trackers) {
+                tracker.flush(end);
+            }
+            long elapsed = end - start;
+            synchronized (roots) {
+                elapsedNanos += elapsed;
+                steals += pool.getStealCount() - stealsBefore;
+            }
+        }
+    }
+
+    /**
+     * 包装Collector，统计其合并函数的调用次数和耗时
+     */
+    public <T, A, R> Collector<T, A, R> timeCombiner(Collector<T, A, R> collector) {
+        return Collector.of(collector.supplier(), collector.accumulator(), timeCombiner(collector.combiner()),
+                collector.finisher(), collector.characteristics().toArray(new Collector.Characteristics[0]));
+    }
+
+    /**
+     * 包装reduce等操作使用的合并函数，统计调用次数和耗时
+     */
+    public <T> BinaryOperator<T> timeCombiner(BinaryOperator<T> combiner) {
+        return (left, right) -> {
+            long start = System.nanoTime();
+            try {
+                return combiner.apply(left, right);
+            } finally {
+                combinerNanos.add(System.nanoTime() - start);
+                combinerCalls.increment();
+            }
+        };
+    }
+
+    /**
+     * 生成当前累计数据的报告，应在所有运行结束后调用
+     */
+    public Report report() {
+        List<SplitNode> rootsSnapshot;
+        long stealCount;
+        long elapsed;
+        synchronized (roots) {
+            rootsSnapshot = new ArrayList<>(roots);
+            stealCount = steals;
+            elapsed = elapsedNanos;
+        }
+        List<WorkerStats> workerList = new ArrayList<>(workers.values());
+        workerList.sort(Comparator.comparingLong((WorkerStats w) -> w.elements).reversed());
+        return new Report(source, rootsSnapshot, workerList, stealCount,
+                combinerCalls.sum(), combinerNanos.sum(), elapsed);
+    }
+
+    private void recordLeaf(SplitNode node, String thread, long elements, long nanos) {
+        node.processed += elements;
+        node.leafVisits++;
+        WorkerStats stats = workers.computeIfAbsent(thread, WorkerStats::new);
+        synchronized (stats) {
+            stats.elements += elements;
+            stats.leaves++;
+            stats.busyNanos += nanos;
+        }
+    }
+
+    /**
+     * 拆分树的一个节点。节点由当前持有对应Spliterator的线程修改，
+     * Fork/Join的fork与join保证了这些修改在Stream结束后对报告线程可见。
+     */
+    private static final class SplitNode {
+        private final int depth;
+        private final long estimatedSize;
+        private SplitNode left;
+        private SplitNode right;
+        private long processed;
+        private int leafVisits;
+
+        SplitNode(int depth, long estimatedSize) {
+            this.depth = depth;
+            this.estimatedSize = estimatedSize;
+        }
+
+        boolean isLeaf() {
+            return left == null;
+        }
+
+        long total() {
+            return isLeaf() ? processed : processed + left.total() + right.total();
+        }
+    }
+
+    private static final class WorkerStats {
+        private final String thread;
+        private long elements;
+        private long leaves;
+        private long busyNanos;
+
+        WorkerStats(String thread) {
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * 记录拆分与处理的Spliterator。trySplit 成功时当前节点分成两个子节点：
+     * 返回的前半部分对应左子节点，剩余部分（仍由本对象遍历）对应右子节点。
+     *
+     * 短路操作逐个调用 tryAdvance，这时元素数先累加在本对象中，从第一次调用开始计时，
+     * 遍历完、被拆分或者 run 结束时才提交到拆分树和线程统计，每个元素不额外计时。
+     */
+    private final class TrackingSpliterator<T> implements Spliterator<T> {
+        private final Spliterator<T> delegate;
+        private final Queue<TrackingSpliterator<?>> trackers;
+        private SplitNode node;
+        private String pendingThread;
+        private long pendingStart;
+        private long pendingCount;
+
+        TrackingSpliterator(Spliterator<T> delegate, SplitNode node, Queue<TrackingSpliterator<?>> trackers) {
+            this.delegate = delegate;
+            this.node = node;
+            this.trackers = trackers;
+            trackers.add(this);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (pendingThread == null) {
+                pendingThread = Thread.currentThread().getName();
+                pendingStart = System.nanoTime();
+            }
+            boolean advanced = delegate.tryAdvance(action);
+            if (advanced) {
+                pendingCount++;
+            } else {
+                flush(System.nanoTime());
+            }
+            return advanced;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            long[] count = new long[1];
+            long start = System.nanoTime();
+            delegate.forEachRemaining(element -> {
+                count[0]++;
+                action.accept(element);
+            });
+            long end = System.nanoTime();
+            if (pendingThread != null) {
+                count[0] += pendingCount;
+                start = pendingStart;
+                pendingThread = null;
+                pendingCount = 0;
+            }
+            recordLeaf(node, Thread.currentThread().getName(), count[0], end - start);
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            Spliterator<T> prefix = delegate.trySplit();
+            if (prefix == null) {
+                return null;
+            }
+            flush(System.nanoTime());
+            SplitNode parent = node;
+            parent.left = new SplitNode(parent.depth + 1, prefix.estimateSize());
+            parent.right = new SplitNode(parent.depth + 1, delegate.estimateSize());
+            node = parent.right;
+            return new TrackingSpliterator<>(prefix, parent.left, trackers);
+        }
+
+        /**
+         * 把 tryAdvance 累加的元素数和耗时提交到当前节点
+         */
+        void flush(long end) {
+            if (pendingThread == null) {
+                return;
+            }
+            if (pendingCount > 0) {
+                recordLeaf(node, pendingThread, pendingCount, end - pendingStart);
+            }
+            pendingThread = null;
+            pendingCount = 0;
+        }
+
+        @Override
+        public long estimateSize() {
+            return delegate.estimateSize();
+        }
+
+        @Override
+        public long getExactSizeIfKnown() {
+            return delegate.getExactSizeIfKnown();
+        }
+
+        @Override
+        public int characteristics() {
+            return delegate.characteristics();
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return delegate.getComparator();
+        }
+    }
+
+    /**
+     * 诊断报告
+     */
+    public static final class Report {
+        private final String source;
+        private final List<SplitNode> roots;
+        private final List<WorkerStats> workers;
+        private final long steals;
+        private final long combinerCalls;
+        private final long combinerNanos;
+        private final long elapsedNanos;
+        private final long[] leafSizes;
+        private final int splits;
+        private final int maxDepth;
+
+        private Report(String source, List<SplitNode> roots, List<WorkerStats> workers, long steals,
+                       long combinerCalls, long combinerNanos, long elapsedNanos) {
+            this.source = source;
+            this.roots = roots;
+            this.workers = workers;
+            this.steals = steals;
+            this.combinerCalls = combinerCalls;
+            this.combinerNanos = combinerNanos;
+            this.elapsedNanos = elapsedNanos;
+            List<Long> leaves = new ArrayList<>();
+            int[] counters = new int[2];
+            for (SplitNode root : roots) {
+                walk(root, leaves, counters);
+            }
+            this.leafSizes = leaves.stream().mapToLong(Long::longValue).sorted().toArray();
+            this.splits = counters[0];
+            this.maxDepth = counters[1];
+        }
+
+        private static void walk(SplitNode node, List<Long> leaves, int[] counters) {
+            counters[1] = Math.max(counters[1], node.depth);
+            if (node.isLeaf()) {
+                leaves.add(node.processed);
+                return;
+            }
+            counters[0]++;
+            walk(node.left, leaves, counters);
+            walk(node.right, leaves, counters);
+        }
+
+        public String getSource() { return source; }
+        public int getSplitCount() { return splits; }
+        public int getMaxDepth() { return maxDepth; }
+        public int getLeafCount() { return leafSizes.length; }
+        public long getStealCount() { return steals; }
+        public long getCombinerCalls() { return combinerCalls; }
+        public long getCombinerNanos() { return combinerNanos; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public int getWorkerCount() { return workers.size(); }
+
+        /**
+         * 叶子实际处理的元素数，升序
+         */
+        public long[] getLeafSizes() {
+            return leafSizes.clone();
+        }
+
+        public long getElementCount() {
+            long total = 0;
+            for (SplitNode root : roots) {
+                total += root.total();
+            }
+            return total;
+        }
+
+        /**
+         * 最大叶子与平均叶子大小之比，1表示拆分完全均匀
+         */
+        public double getLeafImbalance() {
+            if (leafSizes.length == 0 || getElementCount() == 0) {
+                return 1.0;
+            }
+            return leafSizes[leafSizes.length - 1] / ((double) getElementCount() / leafSizes.length);
+        }
+
+        /**
+         * 处理最多的线程与平均每个线程处理量之比，1表示线程间完全均衡
+         */
+        public double getWorkerImbalance() {
+            if (workers.isEmpty() || getElementCount() == 0) {
+                return 1.0;
+            }
+            return workers.get(0).elements / ((double) getElementCount() / workers.size());
+        }
+
+        /**
+         * 比较多个数据源时使用的表头，与 {@link #toRow()} 对应
+         */
+        public static String tableHeader() {
+            return String.format(Locale.ROOT, "%-16s %9s %6s %6s %6s %10s %8s %8s %6s %6s %10s",
+                    "数据源", "耗时", "拆分", "深度", "叶子", "叶子中位", "叶子失衡", "线程失衡", "线程", "窃取", "合并耗时");
+        }
+
+        /**
+         * 一行紧凑的汇总
+         */
+        public String toRow() {
+            return String.format(Locale.ROOT, "%-16s %7.2fms %6d %6d %6d %10d %8.2f %8.2f %6d %6d %8.2fms",
+                    source, elapsedNanos / 1e6, splits, maxDepth, leafSizes.length,
+                    leafSizes.length == 0 ? 0 : leafSizes[leafSizes.length / 2],
+                    getLeafImbalance(), getWorkerImbalance(), workers.size(), steals, combinerNanos / 1e6);
+        }
+
+        /**
+         * 拆分树的文本形式，每个节点显示 预估大小 或 叶子的实际处理数；超过maxDepth的子树折叠显示
+         */
+        public String formatTree(int maxDepth) {
+            StringBuilder sb = new StringBuilder();
+            for (SplitNode root : roots) {
+                appendTree(sb, root, maxDepth);
+            }
+            return sb.toString();
+        }
+
+        private static void appendTree(StringBuilder sb, SplitNode node, int maxDepth) {
+            char[] indent = new char[node.depth * 2];
+            Arrays.fill(indent, ' ');
+            sb.append(indent);
+            if (node.isLeaf()) {
+                sb.append(String.format(Locale.ROOT, "叶子 %d%n", node.processed));
+            } else if (node.depth >= maxDepth) {
+                sb.append(String.format(Locale.ROOT, "%d ... (子树共 %d 个元素)%n", node.estimatedSize, node.total()));
+            } else {
+                sb.append(String.format(Locale.ROOT, "%d%n", node.estimatedSize));
+                appendTree(sb, node.left, maxDepth);
+                appendTree(sb, node.right, maxDepth);
+            }
+        }
+
+        @Override
+        public String toString() {
+            long elements = getElementCount();
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ROOT, "ForkJoin诊断 [%s] 耗时 %.2fms, 元素 %d%n",
+                    source, elapsedNanos / 1e6, elements));
+            sb.append(String.format(Locale.ROOT, "  拆分: %d次, 最大深度 %d, 叶子 %d个",
+                    splits, maxDepth, leafSizes.length));
+            if (leafSizes.length > 0) {
+                sb.append(String.format(Locale.ROOT, ", 叶子大小 最小/中位/最大 = %d/%d/%d, 失衡 %.2f",
+                        leafSizes[0], leafSizes[leafSizes.length / 2], leafSizes[leafSizes.length - 1],
+                        getLeafImbalance()));
+            }
+            sb.append(String.format(Locale.ROOT, "%n  线程 (失衡 %.2f):%n", getWorkerImbalance()));
+            for (WorkerStats worker : workers) {
+                sb.append(String.format(Locale.ROOT, "    %-32s %10d 个元素 (%5.1f%%), %4d 个叶子, 忙碌 %.2fms%n",
+                        worker.thread, worker.elements, elements == 0 ? 0.0 : worker.elements * 100.0 / elements,
+                        worker.leaves, worker.busyNanos / 1e6));
+            }
+            sb.append(String.format(Locale.ROOT, "  窃取: %d次, 合并: %d次 共 %.2fms",
+                    steals, combinerCalls, combinerNanos / 1e6));
+            return sb.toString();
+        }
+    }
+}
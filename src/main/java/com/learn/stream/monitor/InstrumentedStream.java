@@ -0,0 +1,365 @@
+package com.learn.stream.monitor;
+
+import com.learn.stream.monitor.jfr.CollectorFinishEvent;
+import com.learn.stream.monitor.jfr.PipelineEvent;
+import com.learn.stream.monitor.metrics.StreamMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 带统计信息的Stream包装器
+ * 为每个阶段(filter、map、sorted、collect等)记录输入/输出元素数和抽样耗时，
+ * 用来代替 peek(System.out::println) 式的调试。
+ *
+ * 计数使用 LongAdder，并行Stream下也没有竞争热点；
+ * 耗时只对约 1/SAMPLE_RATE 的元素调用 nanoTime，再按输入数量外推，
+ * 因此开销足够低，可以在生产环境常开。例外是sorted这样的屏障阶段：它的耗时是最后一个输入到第一个输出之间的时间，
+ * 无法抽样，每个输入元素都要记录一次时间（一次nanoTime和一次无屏障写）。
+ *
+ * <pre>
+ * InstrumentedStream.of(students.stream(), "优秀学生")
+ *         .filter(s -> s.getGpa() > 3.5)
+ *         .map(Student::getName)
+ *         .collect(Collectors.toList());
+ * </pre>
+ *
+ * @param <T> 元素类型
+ */
+public class InstrumentedStream<T> {
+
+    /** 耗时抽样频率：平均每多少个元素计时一次 */
+    static final int SAMPLE_RATE = 64;
+
+    private final Stream<T> stream;
+    private final PipelineReport report;
+
+    private InstrumentedStream(Stream<T> stream, PipelineReport report) {
+        this.stream = stream;
+        this.report = report;
+    }
+
+    /**
+     * 包装一个Stream，开始记录新的管道
+     */
+    public static <T> InstrumentedStream<T> of(Stream<T> source, String pipelineName) {
+        PipelineReport report = new PipelineReport(pipelineName);
+        StageStats sourceStage = report.addStage("source");
+        return new InstrumentedStream<>(source.peek(e -> sourceStage.recordOut()), report);
+    }
+
+    public PipelineReport getReport() { return report; }
+
+    public InstrumentedStream<T> filter(Predicate<? super T> predicate) {
+        StageStats stage = report.addStage("filter");
+        return next(stream.filter(e -> {
+            stage.recordIn();
+            boolean matched;
+            if (sample()) {
+                long start = System.nanoTime();
+                matched = predicate.test(e);
+                stage.recordSample(System.nanoTime() - start);
+            } else {
+                matched = predicate.test(e);
+            }
+            if (matched) {
+                stage.recordOut();
+            }
+            return matched;
+        }));
+    }
+
+    public <R> InstrumentedStream<R> map(Function<? super T, ? extends R> mapper) {
+        StageStats stage = report.addStage("map");
+        return next(stream.map(e -> {
+            stage.recordIn();
+            R result;
+            if (sample()) {
+                long start = System.nanoTime();
+                result = mapper.apply(e);
+                stage.recordSample(System.nanoTime() - start);
+            } else {
+                result = mapper.apply(e);
+            }
+            stage.recordOut();
+            return result;
+        }));
+    }
+
+    public InstrumentedStream<T> sorted() {
+        return sortedStage(stream.peek(report.barrierIn("sorted")).sorted());
+    }
+
+    public InstrumentedStream<T> sorted(Comparator<? super T> comparator) {
+        return sortedStage(stream.peek(report.barrierIn("sorted")).sorted(comparator));
+    }
+
+    /**
+     * 顺序Stream中distinct是逐个放行的，不是屏障，这里只统计元素数量
+     */
+    public InstrumentedStream<T> distinct() {
+        StageStats stage = report.addStage("distinct");
+        return next(stream.peek(e -> stage.recordIn()).distinct().peek(e -> stage.recordOut()));
+    }
+
+    public InstrumentedStream<T> limit(long maxSize) {
+        StageStats stage = report.addStage("limit");
+        return next(stream.peek(e -> stage.recordIn()).limit(maxSize).peek(e -> stage.recordOut()));
+    }
+
+    public InstrumentedStream<T> parallel() {
+        return next(stream.parallel());
+    }
+
+    public InstrumentedStream<T> sequential() {
+        return next(stream.sequential());
+    }
+
+    /**
+     * 终端操作：收集结果
+     * 累加器按抽样计时，finisher阶段单独完整计时
+     */
+    public <R, A> R collect(Collector<? super T, A, R> collector) {
+        StageStats stage = report.addStage("collect");
+        PipelineEvent event = PipelineEvent.start(report.getPipelineName(), stream.isParallel());
+        long start = System.nanoTime();
+        try {
+            return stream.collect(instrument(collector, stage, report.getPipelineName()));
+        } finally {
+            long nanos = System.nanoTime() - start;
+            report.finish(nanos);
+            event.finish(report.getSourceCount(), stage.getIn());
+            StreamMetrics.recordPipeline(report.getPipelineName(), stream.isParallel(), report.getSourceCount(), nanos);
+        }
+    }
+
+    public List<T> toList() {
+        return collect(Collectors.toList());
+    }
+
+    public long count() {
+        return collect(Collectors.counting());
+    }
+
+    public void forEach(Consumer<? super T> action) {
+        StageStats stage = report.addStage("forEach");
+        PipelineEvent event = PipelineEvent.start(report.getPipelineName(), stream.isParallel());
+        long start = System.nanoTime();
+        try {
+            stream.forEach(e -> {
+                stage.recordIn();
+                if (sample()) {
+                    long sampleStart = System.nanoTime();
+                    action.accept(e);
+                    stage.recordSample(System.nanoTime() - sampleStart);
+                } else {
+                    action.accept(e);
+                }
+                stage.recordOut();
+            });
+        } finally {
+            long nanos = System.nanoTime() - start;
+            report.finish(nanos);
+            event.finish(report.getSourceCount(), stage.getIn());
+            StreamMetrics.recordPipeline(report.getPipelineName(), stream.isParallel(), report.getSourceCount(), nanos);
+        }
+    }
+
+    /**
+     * 取出底层Stream，用于包装器未覆盖的操作（之后的阶段不再统计）
+     */
+    public Stream<T> unwrap() {
+        return stream;
+    }
+
+    private static <T, A, R> Collector<T, A, R> instrument(Collector<T, A, R> collector, StageStats stage,
+                                                             String pipelineName) {
+        BiConsumer<A, T> accumulator = collector.accumulator();
+        Function<A, R> finisher = collector.finisher();
+        return Collector.of(
+                collector.supplier(),
+                (container, e) -> {
+                    stage.recordIn();
+                    if (sample()) {
+                        long start = System.nanoTime();
+                        accumulator.accept(container, e);
+                        stage.recordSample(System.nanoTime() - start);
+                    } else {
+                        accumulator.accept(container, e);
+                    }
+                    stage.recordOut();
+                },
+                collector.combiner(),
+                container -> {
+                    CollectorFinishEvent event = new CollectorFinishEvent();
+                    event.begin();
+                    long start = System.nanoTime();
+                    try {
+                        return finisher.apply(container);
+                    } finally {
+                        long nanos = System.nanoTime() - start;
+                        stage.recordFinish(nanos);
+                        StreamMetrics.recordCollectorFinish(pipelineName, nanos);
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.pipeline = pipelineName;
+                            event.collector = stage.getName();
+                            event.elementCount = stage.getIn();
+                            event.commit();
+                        }
+                    }
+                },
+                collector.characteristics().toArray(new Collector.Characteristics[0]));
+    }
+
+    private InstrumentedStream<T> sortedStage(Stream<T> sortedStream) {
+        StageStats stage = report.lastStage();
+        return next(sortedStream.peek(e -> stage.barrierOut()));
+    }
+
+    private <R> InstrumentedStream<R> next(Stream<R> nextStream) {
+        return new InstrumentedStream<>(nextStream, report);
+    }
+
+    private static boolean sample() {
+        return ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0;
+    }
+
+    /**
+     * 单个阶段的统计数据
+     */
+    public static class StageStats {
+        private final String name;
+        private final LongAdder in = new LongAdder();
+        private final LongAdder out = new LongAdder();
+        private final LongAdder sampledNanos = new LongAdder();
+        private final LongAdder samples = new LongAdder();
+        // 屏障阶段(sorted)：最后一个输入到第一个输出之间的时间即为阶段耗时
+        private final AtomicLong lastInNanos = new AtomicLong();
+        private final AtomicLong firstOutNanos = new AtomicLong();
+        private volatile long finishNanos;
+
+        StageStats(String name) {
+            this.name = name;
+        }
+
+        void recordIn() { in.increment(); }
+        void recordOut() { out.increment(); }
+
+        void recordSample(long nanos) {
+            sampledNanos.add(nanos);
+            samples.increment();
+        }
+
+        void recordFinish(long nanos) { finishNanos = nanos; }
+
+        void barrierIn() {
+            in.increment();
+            // 每个元素都记录：只在时间更晚时写入，lazySet不需要内存屏障；
+            // 并行时多个线程的写入可能交错，误差只在最后几个输入之间
+            long now = System.nanoTime();
+            if (now > lastInNanos.get()) {
+                lastInNanos.lazySet(now);
+            }
+        }
+
+        void barrierOut() {
+            out.increment();
+            if (firstOutNanos.get() == 0) {
+                firstOutNanos.compareAndSet(0, System.nanoTime());
+            }
+        }
+
+        public String getName() { return name; }
+        public long getIn() { return in.sum(); }
+        public long getOut() { return out.sum(); }
+
+        /** 选择率：输出数/输入数 */
+        public double getSelectivity() {
+            long inCount = getIn();
+            return inCount > 0 ? (double) getOut() / inCount : 0;
+        }
+
+        /** 估算的阶段耗时（纳秒） */
+        public long getEstimatedNanos() {
+            long first = firstOutNanos.get();
+            if (first != 0) {
+                return Math.max(0, first - lastInNanos.get());
+            }
+            long sampleCount = samples.sum();
+            long accumulated = sampleCount > 0 ? sampledNanos.sum() * getIn() / sampleCount : 0;
+            return accumulated + finishNanos;
+        }
+    }
+
+    /**
+     * 管道统计报告
+     */
+    public static class PipelineReport {
+        private final String pipelineName;
+        private final List<StageStats> stages = Collections.synchronizedList(new ArrayList<>());
+        private volatile long wallNanos;
+
+        PipelineReport(String pipelineName) {
+            this.pipelineName = pipelineName;
+        }
+
+        StageStats addStage(String type) {
+            StageStats stage = new StageStats(type + "#" + stages.size());
+            stages.add(stage);
+            return stage;
+        }
+
+        StageStats lastStage() {
+            return stages.get(stages.size() - 1);
+        }
+
+        Consumer<Object> barrierIn(String type) {
+            StageStats stage = addStage(type);
+            return e -> stage.barrierIn();
+        }
+
+        void finish(long nanos) { wallNanos = nanos; }
+
+        public String getPipelineName() { return pipelineName; }
+        public List<StageStats> getStages() { return new ArrayList<>(stages); }
+        public long getWallNanos() { return wallNanos; }
+
+        /** 数据源发出的元素数 */
+        public long getSourceCount() {
+            return stages.isEmpty() ? 0 : stages.get(0).getOut();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                    "管道[%s] 总耗时 %.3fms%n", pipelineName, wallNanos / 1e6));
+            sb.append(String.format("    %-12s %10s %10s %8s %10s %6s%n", "阶段", "输入", "输出", "选择率", "耗时(ms)", "占比"));
+            for (StageStats stage : getStages()) {
+                long nanos = stage.getEstimatedNanos();
+                boolean isSource = stage.getName().startsWith("source");
+                sb.append(String.format(Locale.ROOT, "    %-12s %10s %10d %8s %10.3f %5.1f%%%n",
+                        stage.getName(),
+                        isSource ? "-" : String.valueOf(stage.getIn()),
+                        stage.getOut(),
+                        isSource ? "-" : String.format(Locale.ROOT, "%.1f%%", stage.getSelectivity() * 100),
+                        nanos / 1e6,
+                        wallNanos > 0 ? nanos * 100.0 / wallNanos : 0));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.learn.stream.monitor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR事件：Collector的finisher阶段
+ * 例如 groupingBy 的下游收集、collectingAndThen 的转换等都发生在这里
+ */
+@Name("com.learn.stream.CollectorFinish")
+@Label("Collector Finish")
+@Category({"Stream API", "Collector"})
+@Description("Collector执行finisher的过程")
+public class CollectorFinishEvent extends Event {
+
+    @Label("Pipeline")
+    public String pipeline;
+
+    @Label("Collector")
+    public String collector;
+
+    @Label("Accumulated Elements")
+    @Description("进入累加器的元素数")
+    public long elementCount;
+}
@@ -0,0 +1,46 @@
+package com.learn.stream.monitor.jfr;
+
+import com.learn.stream.monitor.metrics.StreamMetrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR事件：启动器或GUI运行一个示例
+ */
+@Name("com.learn.stream.ExampleRun")
+@Label("Example Run")
+@Category({"Stream API", "Example"})
+@Description("从StreamAPILauncher、StreamAPIGUI或命令行批量模式运行一个示例")
+public class ExampleRunEvent extends Event {
+
+    @Label("Example")
+    public String example;
+
+    @Label("Origin")
+    @Description("launcher、gui 或 cli")
+    public String origin;
+
+    @Label("Success")
+    public boolean success;
+
+    public static ExampleRunEvent start(String example, String origin) {
+        ExampleRunEvent event = new ExampleRunEvent();
+        event.example = example;
+        event.origin = origin;
+        event.begin();
+        return event;
+    }
+
+    public void finish(boolean success) {
+        end();
+        StreamMetrics.recordExampleResult(example, origin, success);
+        if (shouldCommit()) {
+            this.success = success;
+            commit();
+        }
+    }
+}
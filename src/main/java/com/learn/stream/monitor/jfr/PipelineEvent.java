@@ -0,0 +1,71 @@
+package com.learn.stream.monitor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * JFR事件：一次Stream管道从开始执行到终端操作结束
+ * 事件的持续时间即管道的执行时间
+ */
+@Name("com.learn.stream.Pipeline")
+@Label("Stream Pipeline")
+@Category({"Stream API", "Pipeline"})
+@Description("一条Stream管道的执行过程")
+public class PipelineEvent extends Event {
+
+    @Label("Pipeline")
+    public String pipeline;
+
+    @Label("Source Size")
+    @Description("数据源发出的元素数")
+    public long sourceSize;
+
+    @Label("Result Size")
+    @Description("到达终端操作的元素数")
+    public long resultSize;
+
+    @Label("Parallel")
+    public boolean parallel;
+
+    @Label("Pool")
+    @Description("执行管道的ForkJoinPool，顺序管道为caller")
+    public String pool;
+
+    @Label("Pool Parallelism")
+    public int poolParallelism;
+
+    /**
+     * 创建并开始计时，parallel为true时记录将要使用的线程池
+     */
+    public static PipelineEvent start(String pipeline, boolean parallel) {
+        PipelineEvent event = new PipelineEvent();
+        event.pipeline = pipeline;
+        event.parallel = parallel;
+        if (event.isEnabled() && !parallel) {
+            event.pool = "caller";
+            event.poolParallelism = 1;
+        } else if (event.isEnabled()) {
+            ForkJoinPool current = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : null;
+            ForkJoinPool pool = current != null ? current : ForkJoinPool.commonPool();
+            event.pool = current != null ? "ForkJoinPool@" + Integer.toHexString(System.identityHashCode(current)) : "commonPool";
+            event.poolParallelism = pool.getParallelism();
+        }
+        event.begin();
+        return event;
+    }
+
+    public void finish(long sourceSize, long resultSize) {
+        end();
+        if (shouldCommit()) {
+            this.sourceSize = sourceSize;
+            this.resultSize = resultSize;
+            commit();
+        }
+    }
+}
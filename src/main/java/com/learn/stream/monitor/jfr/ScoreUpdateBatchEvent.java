@@ -0,0 +1,29 @@
+package com.learn.stream.monitor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR事件：一批成绩更新被应用到学生数据上
+ */
+@Name("com.learn.stream.ScoreUpdateBatch")
+@Label("Score Update Batch")
+@Category({"Stream API", "Score Update"})
+@Description("一批成绩更新的处理过程")
+public class ScoreUpdateBatchEvent extends Event {
+
+    @Label("Batch Size")
+    @Description("本批成绩更新记录数")
+    public int batchSize;
+
+    @Label("Student Count")
+    @Description("参与处理的学生总数")
+    public long studentCount;
+
+    @Label("Updated Count")
+    @Description("实际匹配到并更新的学生数")
+    public long updatedCount;
+}
@@ -0,0 +1,305 @@
+package com.learn.stream.monitor.metrics;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 指标注册表，按Prometheus文本格式(0.0.4)导出
+ * 支持三种指标：
+ *
+ * 1. Counter：只增不减的计数，可以直接累加，也可以注册一个读取已有计数的回调
+ * 2. Gauge：通过回调读取的当前值，例如线程池活跃线程数、缓存命中率
+ * 3. Histogram：固定桶的分布，用于耗时
+ *
+ * 每种指标可以带标签，标签值的组合在第一次使用时创建。记录使用 LongAdder/DoubleAdder，
+ * 可以在并行Stream的热路径上调用。
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    /** 耗时直方图默认的桶上界（秒） */
+    public static final double[] LATENCY_BUCKETS = {
+        0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10
+    };
+
+    private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public Counter counter(String name, String help, String... labelNames) {
+        return register(new Counter(name, help, labelNames));
+    }
+
+    public Gauge gauge(String name, String help, String... labelNames) {
+        return register(new Gauge(name, help, labelNames));
+    }
+
+    public Histogram histogram(String name, String help, double[] buckets, String... labelNames) {
+        return register(new Histogram(name, help, buckets, labelNames));
+    }
+
+    /**
+     * 同名指标只注册一次，再次注册时返回已有的指标（类型或标签不同时报错）
+     */
+    @SuppressWarnings("unchecked")
+    private <M extends Metric> M register(M metric) {
+        Metric existing = metrics.putIfAbsent(metric.name, metric);
+        if (existing == null) {
+            return metric;
+        }
+        if (existing.getClass() != metric.getClass() || !Arrays.equals(existing.labelNames, metric.labelNames)) {
+            throw new IllegalArgumentException("指标 " + metric.name + " 已以不同的类型或标签注册");
+        }
+        return (M) existing;
+    }
+
+    /**
+     * 导出为Prometheus文本格式
+     */
+    public String scrape() {
+        StringBuilder sb = new StringBuilder();
+        for (Metric metric : metrics.values()) {
+            sb.append("# HELP ").append(metric.name).append(' ').append(escapeHelp(metric.help)).append('\n');
+            sb.append("# TYPE ").append(metric.name).append(' ').append(metric.type()).append('\n');
+            metric.write(sb);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 指标的公共部分：名称、说明和标签名
+     */
+    public abstract static class Metric {
+        final String name;
+        final String help;
+        final String[] labelNames;
+
+        Metric(String name, String help, String[] labelNames) {
+            if (!name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*")) {
+                throw new IllegalArgumentException("非法的指标名: " + name);
+            }
+            this.name = name;
+            this.help = help;
+            this.labelNames = labelNames.clone();
+        }
+
+        abstract String type();
+
+        abstract void write(StringBuilder sb);
+
+        List<String> key(String[] labelValues) {
+            if (labelValues.length != labelNames.length) {
+                throw new IllegalArgumentException("指标 " + name + " 需要 " + labelNames.length
+                        + " 个标签值，实际为 " + labelValues.length);
+            }
+            return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(labelValues)));
+        }
+
+        /**
+         * 按标签值排序，使每次导出的顺序稳定
+         */
+        static <V> List<Map.Entry<List<String>, V>> sorted(Map<List<String>, V> children) {
+            List<Map.Entry<List<String>, V>> entries = new ArrayList<>(children.entrySet());
+            entries.sort(Comparator.comparing(entry -> String.join("\u0000", entry.getKey())));
+            return entries;
+        }
+
+        void appendSample(StringBuilder sb, String suffix, List<String> labelValues,
+                          String extraLabel, String extraValue, double value) {
+            sb.append(name).append(suffix);
+            if (!labelValues.isEmpty() || extraLabel != null) {
+                sb.append('{');
+                for (int i = 0; i < labelValues.size(); i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(labelNames[i]).append("=\"").append(escapeLabel(labelValues.get(i))).append('"');
+                }
+                if (extraLabel != null) {
+                    if (!labelValues.isEmpty()) {
+                        sb.append(',');
+                    }
+                    sb.append(extraLabel).append("=\"").append(extraValue).append('"');
+                }
+                sb.append('}');
+            }
+            sb.append(' ').append(formatValue(value)).append('\n');
+        }
+    }
+
+    /**
+     * 计数器，名称应以 _total 结尾
+     */
+    public static final class Counter extends Metric {
+        private final Map<List<String>, LongAdder> values = new ConcurrentHashMap<>();
+        private final Map<List<String>, DoubleSupplier> callbacks = new ConcurrentHashMap<>();
+
+        Counter(String name, String help, String[] labelNames) {
+            super(name, help, labelNames);
+        }
+
+        public void inc(String... labelValues) {
+            add(1, labelValues);
+        }
+
+        public void add(long amount, String... labelValues) {
+            if (amount < 0) {
+                throw new IllegalArgumentException("计数器不能减少: " + amount);
+            }
+            values.computeIfAbsent(key(labelValues), k -> new LongAdder()).add(amount);
+        }
+
+        /**
+         * 从已有的计数读取值，例如缓存自身统计的命中次数；同一组标签再次注册时替换旧的回调
+         */
+        public void register(DoubleSupplier source, String... labelValues) {
+            callbacks.put(key(labelValues), source);
+        }
+
+        @Override
+        String type() {
+            return "counter";
+        }
+
+        @Override
+        void write(StringBuilder sb) {
+            for (Map.Entry<List<String>, LongAdder> entry : sorted(values)) {
+                appendSample(sb, "", entry.getKey(), null, null, entry.getValue().sum());
+            }
+            for (Map.Entry<List<String>, DoubleSupplier> entry : sorted(callbacks)) {
+                appendSample(sb, "", entry.getKey(), null, null, entry.getValue().getAsDouble());
+            }
+        }
+    }
+
+    /**
+     * 通过回调读取的瞬时值
+     */
+    public static final class Gauge extends Metric {
+        private final Map<List<String>, DoubleSupplier> callbacks = new ConcurrentHashMap<>();
+
+        Gauge(String name, String help, String[] labelNames) {
+            super(name, help, labelNames);
+        }
+
+        /**
+         * 注册一组标签值的回调；同一组标签再次注册时替换旧的回调
+         */
+        public void register(DoubleSupplier source, String... labelValues) {
+            callbacks.put(key(labelValues), source);
+        }
+
+        @Override
+        String type() {
+            return "gauge";
+        }
+
+        @Override
+        void write(StringBuilder sb) {
+            for (Map.Entry<List<String>, DoubleSupplier> entry : sorted(callbacks)) {
+                appendSample(sb, "", entry.getKey(), null, null, entry.getValue().getAsDouble());
+            }
+        }
+    }
+
+    /**
+     * 固定桶的直方图，导出累计的 _bucket、_sum 和 _count
+     */
+    public static final class Histogram extends Metric {
+        private final double[] buckets;
+        private final Map<List<String>, Child> children = new ConcurrentHashMap<>();
+
+        Histogram(String name, String help, double[] buckets, String[] labelNames) {
+            super(name, help, labelNames);
+            this.buckets = buckets.clone();
+            Arrays.sort(this.buckets);
+        }
+
+        public void observe(double value, String... labelValues) {
+            Child child = children.computeIfAbsent(key(labelValues), k -> new Child(buckets.length));
+            int index = Arrays.binarySearch(buckets, value);
+            // 找到第一个上界 >= value 的桶，超过所有上界时只计入 +Inf
+            int bucket = index >= 0 ? index : -index - 1;
+            if (bucket < buckets.length) {
+                child.counts[bucket].increment();
+            }
+            child.count.increment();
+            child.sum.add(value);
+        }
+
+        /**
+         * 记录以纳秒计的耗时，导出单位为秒
+         */
+        public void observeNanos(long nanos, String... labelValues) {
+            observe(nanos / 1e9, labelValues);
+        }
+
+        @Override
+        String type() {
+            return "histogram";
+        }
+
+        @Override
+        void write(StringBuilder sb) {
+            for (Map.Entry<List<String>, Child> entry : sorted(children)) {
+                List<String> labels = entry.getKey();
+                Child child = entry.getValue();
+                long cumulative = 0;
+                for (int i = 0; i < buckets.length; i++) {
+                    cumulative += child.counts[i].sum();
+                    appendSample(sb, "_bucket", labels, "le", formatValue(buckets[i]), cumulative);
+                }
+                long count = child.count.sum();
+                appendSample(sb, "_bucket", labels, "le", "+Inf", count);
+                appendSample(sb, "_sum", labels, null, null, child.sum.sum());
+                appendSample(sb, "_count", labels, null, null, count);
+            }
+        }
+
+        private static final class Child {
+            private final LongAdder[] counts;
+            private final LongAdder count = new LongAdder();
+            private final DoubleAdder sum = new DoubleAdder();
+
+            Child(int bucketCount) {
+                counts = new LongAdder[bucketCount];
+                for (int i = 0; i < bucketCount; i++) {
+                    counts[i] = new LongAdder();
+                }
+            }
+        }
+    }
+
+    static String formatValue(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        } else if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        // BigDecimal.valueOf(1e-4) 的标度来自 "1.0E-4"，需要去掉末尾的0，le标签在PromQL中按字符串匹配
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
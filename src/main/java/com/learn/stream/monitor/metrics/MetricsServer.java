@@ -0,0 +1,113 @@
+package com.learn.stream.monitor.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 内嵌的指标HTTP端点
+ * 基于JDK自带的 com.sun.net.httpserver，只绑定到本机回环地址，GET /metrics 返回Prometheus文本格式。
+ * 默认不启动；启动器和GUI在设置了系统属性 metrics.port 时启动（端口为0时自动选择空闲端口），
+ * 命令行批量模式也可以用 --metrics-port 指定。
+ */
+public final class MetricsServer implements AutoCloseable {
+
+    /** 启用端点的系统属性 */
+    public static final String PORT_PROPERTY = "metrics.port";
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private MetricsServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * 在 127.0.0.1:port 上启动端点，port为0时由系统选择端口
+     */
+    public static MetricsServer start(int port, MetricsRegistry registry) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", exchange -> {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "只支持GET\n");
+                return;
+            }
+            respond(exchange, 200, registry.scrape());
+        });
+        server.createContext("/", exchange -> respond(exchange, "/".equals(exchange.getRequestURI().getPath()) ? 200 : 404,
+                "Stream API 学习案例指标端点，请访问 /metrics\n"));
+        server.start();
+        return new MetricsServer(server, executor);
+    }
+
+    /**
+     * 设置了系统属性 metrics.port 时启动端点并注册内置指标，否则返回null
+     */
+    public static MetricsServer startFromSystemProperty() {
+        String port = System.getProperty(PORT_PROPERTY);
+        if (port == null || port.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return startDefault(Integer.parseInt(port.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("系统属性 " + PORT_PROPERTY + " 不是合法的端口: " + port);
+        } catch (IOException e) {
+            System.err.println("指标端点启动失败: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 使用全局注册表启动端点，并注册线程池等内置指标
+     */
+    public static MetricsServer startDefault(int port) throws IOException {
+        StreamMetrics.registerDefaults();
+        return start(port, MetricsRegistry.global());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 端点的完整URL
+     */
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + getPort() + "/metrics";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        boolean head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, head ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (!head) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.learn.stream.monitor.metrics;
+
+import com.learn.stream.cache.ResultCache;
+import com.learn.stream.compile.PipelineCompiler;
+import com.learn.stream.registry.StudentRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 本项目导出的指标及其记录入口
+ * 管道、Collector、示例运行和成绩更新在各自的代码中调用这里的 record 方法；
+ * 线程池和缓存通过 register 方法注册回调，抓取时读取当前值。
+ * 记录只是累加计数，没有启动指标端点时开销也很小。
+ */
+public final class StreamMetrics {
+
+    private static final MetricsRegistry REGISTRY = MetricsRegistry.global();
+
+    private static final MetricsRegistry.Counter PIPELINE_RUNS = REGISTRY.counter(
+            "stream_pipeline_runs_total", "InstrumentedStream管道执行次数", "pipeline", "parallel");
+    private static final MetricsRegistry.Counter PIPELINE_ELEMENTS = REGISTRY.counter(
+            "stream_pipeline_elements_total", "InstrumentedStream管道数据源发出的元素数", "pipeline");
+    private static final MetricsRegistry.Histogram PIPELINE_DURATION = REGISTRY.histogram(
+            "stream_pipeline_duration_seconds", "InstrumentedStream管道终止操作耗时",
+            MetricsRegistry.LATENCY_BUCKETS, "pipeline");
+    private static final MetricsRegistry.Histogram COLLECTOR_FINISH = REGISTRY.histogram(
+            "stream_collector_finish_duration_seconds", "Collector finisher耗时",
+            MetricsRegistry.LATENCY_BUCKETS, "pipeline");
+
+    private static final MetricsRegistry.Counter EXAMPLE_RUNS = REGISTRY.counter(
+            "stream_example_runs_total", "示例运行次数", "example", "origin", "result");
+    private static final MetricsRegistry.Histogram EXAMPLE_DURATION = REGISTRY.histogram(
+            "stream_example_duration_seconds", "示例运行耗时", MetricsRegistry.LATENCY_BUCKETS, "example");
+    private static final MetricsRegistry.Counter EXAMPLE_ALLOCATED = REGISTRY.counter(
+            "stream_example_allocated_bytes_total", "示例运行期间所有线程分配的字节数", "example");
+
+    private static final MetricsRegistry.Counter WORKLOAD_ELEMENTS = REGISTRY.counter(
+            "stream_workload_elements_total", "命令行基准负载处理的元素数", "workload", "parallel");
+    private static final MetricsRegistry.Histogram WORKLOAD_DURATION = REGISTRY.histogram(
+            "stream_workload_duration_seconds", "命令行基准负载单次执行耗时",
+            MetricsRegistry.LATENCY_BUCKETS, "workload", "parallel");
+
+    private static final MetricsRegistry.Counter SCORE_UPDATES = REGISTRY.counter(
+            "stream_score_updates_total", "成绩更新条数，result为applied或unknown_student", "result");
+    private static final MetricsRegistry.Histogram SCORE_UPDATE_BATCH = REGISTRY.histogram(
+            "stream_score_update_batch_duration_seconds", "一批成绩更新的处理耗时", MetricsRegistry.LATENCY_BUCKETS);
+
+    private static final Map<String, RegistryTotals> REGISTRY_TOTALS = new ConcurrentHashMap<>();
+
+    private StreamMetrics() {
+    }
+
+    public static void recordPipeline(String pipeline, boolean parallel, long sourceElements, long nanos) {
+        PIPELINE_RUNS.inc(pipeline, String.valueOf(parallel));
+        PIPELINE_ELEMENTS.add(sourceElements, pipeline);
+        PIPELINE_DURATION.observeNanos(nanos, pipeline);
+    }
+
+    public static void recordCollectorFinish(String pipeline, long nanos) {
+        COLLECTOR_FINISH.observeNanos(nanos, pipeline);
+    }
+
+    public static void recordExampleResult(String example, String origin, boolean success) {
+        EXAMPLE_RUNS.inc(example, origin, success ? "success" : "failure");
+    }
+
+    /**
+     * @param allocatedBytes 不支持统计分配时为负数，此时不记录分配量
+     */
+    public static void recordExample(String example, long nanos, long allocatedBytes) {
+        EXAMPLE_DURATION.observeNanos(nanos, example);
+        if (allocatedBytes >= 0) {
+            EXAMPLE_ALLOCATED.add(allocatedBytes, example);
+        }
+    }
+
+    public static void recordWorkload(String workload, boolean parallel, long elements, long nanos) {
+        WORKLOAD_ELEMENTS.add(elements, workload, String.valueOf(parallel));
+        WORKLOAD_DURATION.observeNanos(nanos, workload, String.valueOf(parallel));
+    }
+
+    public static void recordScoreUpdateBatch(long applied, long unknown, long nanos) {
+        SCORE_UPDATES.add(applied, "applied");
+        SCORE_UPDATES.add(unknown, "unknown_student");
+        SCORE_UPDATE_BATCH.observeNanos(nanos);
+    }
+
+    /**
+     * 注册ForkJoinPool的利用率指标；同名线程池再次注册时替换
+     */
+    public static void registerPool(String name, ForkJoinPool pool) {
+        REGISTRY.gauge("stream_forkjoin_parallelism", "线程池的目标并行度", "pool")
+                .register(pool::getParallelism, name);
+        REGISTRY.gauge("stream_forkjoin_pool_size", "线程池中已启动的线程数", "pool")
+                .register(pool::getPoolSize, name);
+        REGISTRY.gauge("stream_forkjoin_active_threads", "正在执行任务或窃取任务的线程数", "pool")
+                .register(pool::getActiveThreadCount, name);
+        REGISTRY.gauge("stream_forkjoin_running_threads", "没有阻塞在join或其他同步上的线程数", "pool")
+                .register(pool::getRunningThreadCount, name);
+        REGISTRY.gauge("stream_forkjoin_utilization", "活跃线程数 / 并行度", "pool")
+                .register(() -> (double) pool.getActiveThreadCount() / pool.getParallelism(), name);
+        REGISTRY.gauge("stream_forkjoin_queued_tasks", "工作线程队列中的任务数（估计值）", "pool")
+                .register(pool::getQueuedTaskCount, name);
+        REGISTRY.gauge("stream_forkjoin_queued_submissions", "外部提交尚未执行的任务数", "pool")
+                .register(pool::getQueuedSubmissionCount, name);
+        REGISTRY.counter("stream_forkjoin_steals_total", "线程之间窃取任务的次数", "pool")
+                .register(pool::getStealCount, name);
+    }
+
+    /**
+     * 注册ResultCache的命中率指标；同名缓存再次注册时替换
+     */
+    public static void registerCache(String name, ResultCache cache) {
+        REGISTRY.counter("stream_cache_hits_total", "报表缓存命中次数", "cache")
+                .register(cache::getHits, name);
+        REGISTRY.counter("stream_cache_misses_total", "报表缓存未命中次数", "cache")
+                .register(cache::getMisses, name);
+        REGISTRY.counter("stream_cache_evictions_total", "报表缓存淘汰次数", "cache")
+                .register(cache::getEvictions, name);
+        REGISTRY.gauge("stream_cache_hit_ratio", "报表缓存命中率(0-1)", "cache")
+                .register(cache::getHitRate, name);
+        REGISTRY.gauge("stream_cache_entries", "报表缓存当前条目数", "cache")
+                .register(cache::size, name);
+    }
+
+    /**
+     * 注册StudentRegistry的大小和写锁竞争指标；同名注册表再次注册时替换，
+     * 旧注册表已有的写次数和等待时间累加到计数器中，计数器不会因为换了注册表而回退
+     */
+    public static void registerRegistry(String name, StudentRegistry registry) {
+        RegistryTotals totals = REGISTRY_TOTALS.computeIfAbsent(name, RegistryTotals::new);
+        totals.replace(registry);
+        REGISTRY.gauge("stream_registry_students", "注册表中的学生数", "registry")
+                .register(registry::size, name);
+    }
+
+    /**
+     * 同名注册表的累计写锁竞争：已替换的注册表留下的计数加上当前注册表的计数
+     */
+    private static final class RegistryTotals {
+        private long retiredWrites;
+        private long retiredContendedWrites;
+        private long retiredWaitNanos;
+        private StudentRegistry current;
+
+        RegistryTotals(String name) {
+            REGISTRY.counter("stream_registry_writes_total", "注册表写操作次数", "registry")
+                    .register(() -> snapshot()[0], name);
+            REGISTRY.counter("stream_registry_contended_writes_total", "需要等待分段锁的写操作次数", "registry")
+                    .register(() -> snapshot()[1], name);
+            REGISTRY.counter("stream_registry_lock_wait_seconds_total", "等待分段锁的总时间", "registry")
+                    .register(() -> snapshot()[2] / 1e9, name);
+        }
+
+        synchronized void replace(StudentRegistry registry) {
+            if (current != null && current != registry) {
+                StudentRegistry.ContentionStats stats = current.getContentionStats();
+                retiredWrites += stats.getWrites();
+                retiredContendedWrites += stats.getContendedWrites();
+                retiredWaitNanos += stats.getWaitNanos();
+            }
+            current = registry;
+        }
+
+        synchronized long[] snapshot() {
+            StudentRegistry.ContentionStats stats = current.getContentionStats();
+            return new long[]{retiredWrites + stats.getWrites(),
+                    retiredContendedWrites + stats.getContendedWrites(),
+                    retiredWaitNanos + stats.getWaitNanos()};
+        }
+    }
+
+    /**
+     * 注册公共线程池和管道编译器的指标，可以重复调用
+     */
+    public static void registerDefaults() {
+        registerPool("common", ForkJoinPool.commonPool());
+        REGISTRY.gauge("stream_compiler_kernels", "管道编译器已生成的内核类个数")
+                .register(PipelineCompiler::getCompiledCount);
+        REGISTRY.counter("stream_compiler_cache_hits_total", "管道编译器内核缓存命中次数")
+                .register(PipelineCompiler::getCacheHits);
+        REGISTRY.counter("stream_compiler_fallbacks_total", "管道编译器退回解释执行的次数")
+                .register(PipelineCompiler::getFallbackCount);
+    }
+}
@@ -0,0 +1,41 @@
+package com.learn.stream.perf;
+
+/**
+ * 消费基准测试的结果，防止JIT把没有被使用的计算当作死代码消除
+ * 比较条件在运行时永远不成立，但JIT无法证明这一点，只能保留对结果的计算。
+ */
+public final class Blackhole {
+
+    private volatile Object guard = new Object();
+    private volatile long longGuard1 = 1;
+    private volatile long longGuard2 = 2;
+    private volatile double doubleGuard1 = 1;
+    private volatile double doubleGuard2 = 2;
+    private volatile boolean leaked;
+
+    public void consume(Object value) {
+        if (value == guard) {
+            leaked = true;
+        }
+    }
+
+    public void consume(long value) {
+        if (value == longGuard1 & value == longGuard2) {
+            leaked = true;
+        }
+    }
+
+    public void consume(int value) {
+        consume((long) value);
+    }
+
+    public void consume(double value) {
+        if (value == doubleGuard1 & value == doubleGuard2) {
+            leaked = true;
+        }
+    }
+
+    public void consume(boolean value) {
+        consume(value ? 1L : 0L);
+    }
+}
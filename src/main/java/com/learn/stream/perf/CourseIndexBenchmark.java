@@ -0,0 +1,58 @@
+package com.learn.stream.perf;
+
+import com.learn.stream.data.StudentDataGenerator;
+import com.learn.stream.index.CourseRangeIndex;
+import com.learn.stream.model.Course;
+
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+
+/**
+ * 学分 × 评分 范围查询：Stream扫描 vs {@link CourseRangeIndex}
+ * 在生成的大课程目录上比较每次查询都扫描全部课程和先建立索引再查询的耗时。
+ */
+public class CourseIndexBenchmark {
+
+    /**
+     * 命令行入口
+     * 参数: [课程数] [最低学分] [最高学分] [最低评分]
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int minCredit = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int maxCredit = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        double minScore = args.length > 3 ? Double.parseDouble(args[3]) : 85;
+
+        List<Course> catalog = new StudentDataGenerator(7).courseList(size);
+        long buildStart = System.nanoTime();
+        CourseRangeIndex index = new CourseRangeIndex(catalog);
+        long buildNanos = System.nanoTime() - buildStart;
+
+        MicroBenchmark benchmark = new MicroBenchmark(3, 50_000_000L, 10, 1_000_000L);
+        MicroBenchmark.Result scan = benchmark.run("Stream扫描", () -> catalog.stream()
+                .filter(course -> course.getCredit() >= minCredit && course.getCredit() <= maxCredit
+                        && course.getScore() >= minScore)
+                .mapToDouble(Course::getScore)
+                .summaryStatistics());
+        MicroBenchmark.Result indexed = benchmark.run("范围索引",
+                () -> index.stats(minCredit, maxCredit, minScore, Double.POSITIVE_INFINITY));
+
+        DoubleSummaryStatistics expected = catalog.stream()
+                .filter(course -> course.getCredit() >= minCredit && course.getCredit() <= maxCredit
+                        && course.getScore() >= minScore)
+                .mapToDouble(Course::getScore)
+                .summaryStatistics();
+        CourseRangeIndex.ScoreStats actual = index.stats(minCredit, maxCredit, minScore, Double.POSITIVE_INFINITY);
+
+        System.out.println("课程范围查询: " + size + "门课程, " + minCredit + "-" + maxCredit + "学分且评分≥" + minScore);
+        System.out.println("  " + actual);
+        System.out.println("  建立索引: " + MicroBenchmark.Result.formatNanos(buildNanos)
+                + ", Stream扫描: " + MicroBenchmark.Result.formatNanos(scan.getMedian())
+                + ", 索引查询: " + MicroBenchmark.Result.formatNanos(indexed.getMedian())
+                + String.format(" (%.0fx)", indexed.speedupOver(scan)));
+        if (actual.getCount() != expected.getCount()) {
+            System.out.println("⚠ 索引结果与Stream扫描不一致: " + actual.getCount() + " != " + expected.getCount());
+            System.exit(1);
+        }
+    }
+}
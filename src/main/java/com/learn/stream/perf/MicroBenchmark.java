@@ -0,0 +1,203 @@
+package com.learn.stream.perf;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 应用内微基准测试
+ * 用 System.currentTimeMillis 测一次Stream管道的耗时，结果受JIT编译、GC和计时精度影响很大。
+ * 本类用于示例中的性能对比（完整的基准测试仍应使用JMH）：
+ *
+ * 1. 使用 System.nanoTime 计时，先按轮数和时间预热，让JIT完成编译
+ * 2. 每个样本连续执行多次任务，使单个样本不短于 minSampleNanos，降低计时误差
+ * 3. 结果交给 {@link Blackhole} 消费，防止计算被消除
+ * 4. 报告中位数、p90、p99 以及中位数的95%置信区间（基于次序统计量，不受离群值影响）
+ *
+ * 默认参数可通过系统属性调整：benchmark.warmup、benchmark.warmupMillis、benchmark.iterations、benchmark.minSampleMillis
+ */
+public class MicroBenchmark {
+
+    private final int warmupIterations;
+    private final long minWarmupNanos;
+    private final int measureIterations;
+    private final long minSampleNanos;
+    private final Blackhole blackhole = new Blackhole();
+
+    public MicroBenchmark(int warmupIterations, int measureIterations, long minSampleNanos) {
+        this(warmupIterations, 0L, measureIterations, minSampleNanos);
+    }
+
+    /**
+     * @param warmupIterations  预热轮数
+     * @param minWarmupNanos    预热的最短总时间，轮数不够时继续预热，保证JIT有时间完成编译
+     * @param measureIterations 测量的样本数
+     * @param minSampleNanos    单个样本的最短时间
+     */
+    public MicroBenchmark(int warmupIterations, long minWarmupNanos, int measureIterations, long minSampleNanos) {
+        if (warmupIterations < 0 || minWarmupNanos < 0 || measureIterations <= 0 || minSampleNanos < 0) {
+            throw new IllegalArgumentException("预热次数不能为负数，测量次数必须大于0");
+        }
+        this.warmupIterations = warmupIterations;
+        this.minWarmupNanos = minWarmupNanos;
+        this.measureIterations = measureIterations;
+        this.minSampleNanos = minSampleNanos;
+    }
+
+    /**
+     * 使用系统属性中的参数，未设置时为 预热至少5轮且至少100ms、测量20轮、每个样本至少1ms
+     */
+    public static MicroBenchmark defaults() {
+        return new MicroBenchmark(
+                Integer.getInteger("benchmark.warmup", 5),
+                Long.getLong("benchmark.warmupMillis", 100L) * 1_000_000L,
+                Integer.getInteger("benchmark.iterations", 20),
+                Long.getLong("benchmark.minSampleMillis", 1L) * 1_000_000L);
+    }
+
+    /**
+     * 测量有返回值的任务，返回值自动交给Blackhole
+     */
+    public Result run(String name, Supplier<?> task) {
+        return measure(name, () -> blackhole.consume(task.get()));
+    }
+
+    /**
+     * 测量由任务自己把结果交给Blackhole的任务，适合返回基本类型的管道
+     */
+    public Result runWithBlackhole(String name, Consumer<Blackhole> task) {
+        return measure(name, () -> task.accept(blackhole));
+    }
+
+    private Result measure(String name, Runnable task) {
+        // 校准：确定每个样本执行几次任务，同时作为第一轮预热
+        int batch = 1;
+        while (true) {
+            long elapsed = timeBatch(task, batch);
+            if (elapsed >= minSampleNanos || batch >= 1 << 20) {
+                break;
+            }
+            batch = elapsed <= 0 ? batch * 2
+                    : (int) Math.min(1 << 20, Math.max(batch * 2L, batch * (minSampleNanos * 11 / 10) / elapsed));
+        }
+        long warmupStart = System.nanoTime();
+        for (int i = 0; i < warmupIterations || System.nanoTime() - warmupStart < minWarmupNanos; i++) {
+            timeBatch(task, batch);
+        }
+        double[] samples = new double[measureIterations];
+        for (int i = 0; i < measureIterations; i++) {
+            samples[i] = timeBatch(task, batch) / (double) batch;
+        }
+        return new Result(name, samples, batch);
+    }
+
+    private static long timeBatch(Runnable task, int batch) {
+        long start = System.nanoTime();
+        for (int i = 0; i < batch; i++) {
+            task.run();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 一个基准测试的统计结果，时间单位为纳秒/次
+     */
+    public static final class Result {
+        private final String name;
+        private final double[] sorted;
+        private final int batchSize;
+        private final double mean;
+        private final double standardDeviation;
+
+        Result(String name, double[] samples, int batchSize) {
+            this.name = name;
+            this.sorted = samples.clone();
+            Arrays.sort(sorted);
+            this.batchSize = batchSize;
+            double sum = 0;
+            for (double sample : sorted) {
+                sum += sample;
+            }
+            this.mean = sum / sorted.length;
+            double squares = 0;
+            for (double sample : sorted) {
+                squares += (sample - mean) * (sample - mean);
+            }
+            this.standardDeviation = sorted.length > 1 ? Math.sqrt(squares / (sorted.length - 1)) : 0.0;
+        }
+
+        /**
+         * 用外部测得的样本（纳秒/次）构造结果，例如整段示例的多次运行耗时
+         */
+        public static Result of(String name, double[] samples) {
+            if (samples.length == 0) {
+                throw new IllegalArgumentException("样本不能为空");
+            }
+            return new Result(name, samples, 1);
+        }
+
+        public String getName() { return name; }
+        public int getSampleCount() { return sorted.length; }
+        public int getBatchSize() { return batchSize; }
+        public double getMean() { return mean; }
+        public double getStandardDeviation() { return standardDeviation; }
+        public double getMin() { return sorted[0]; }
+        public double getMax() { return sorted[sorted.length - 1]; }
+        public double getMedian() { return percentile(50); }
+        public double getP90() { return percentile(90); }
+        public double getP99() { return percentile(99); }
+
+        /**
+         * 第p百分位数（线性插值）
+         */
+        public double percentile(double p) {
+            double rank = p / 100.0 * (sorted.length - 1);
+            int lower = (int) Math.floor(rank);
+            int upper = (int) Math.ceil(rank);
+            return sorted[lower] + (sorted[upper] - sorted[lower]) * (rank - lower);
+        }
+
+        /**
+         * 中位数95%置信区间的下界：取排序后第 n/2 - 0.98*sqrt(n) 个样本
+         */
+        public double getMedianCiLow() {
+            return sorted[Math.max(0, (int) Math.floor(sorted.length / 2.0 - 0.98 * Math.sqrt(sorted.length)))];
+        }
+
+        /**
+         * 中位数95%置信区间的上界：取排序后第 n/2 + 0.98*sqrt(n) 个样本
+         */
+        public double getMedianCiHigh() {
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length / 2.0 + 0.98 * Math.sqrt(sorted.length)))];
+        }
+
+        /**
+         * 以baseline为基准的加速比（中位数之比），大于1表示更快
+         */
+        public double speedupOver(Result baseline) {
+            return baseline.getMedian() / getMedian();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: 中位数 %s (95%% CI %s ~ %s), p90 %s, p99 %s, 样本%d×%d次",
+                    name, formatNanos(getMedian()), formatNanos(getMedianCiLow()), formatNanos(getMedianCiHigh()),
+                    formatNanos(getP90()), formatNanos(getP99()), sorted.length, batchSize);
+        }
+
+        /**
+         * 按量级选择 ns/µs/ms/s 格式化
+         */
+        public static String formatNanos(double nanos) {
+            if (nanos < 1_000) {
+                return String.format(Locale.ROOT, "%.1fns", nanos);
+            } else if (nanos < 1_000_000) {
+                return String.format(Locale.ROOT, "%.2fµs", nanos / 1_000);
+            } else if (nanos < 1_000_000_000) {
+                return String.format(Locale.ROOT, "%.3fms", nanos / 1_000_000);
+            }
+            return String.format(Locale.ROOT, "%.3fs", nanos / 1_000_000_000);
+        }
+    }
+}
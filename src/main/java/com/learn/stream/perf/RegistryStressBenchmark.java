@@ -0,0 +1,277 @@
+package com.learn.stream.perf;
+
+import com.learn.stream.data.StudentDataGenerator;
+import com.learn.stream.model.Student;
+import com.learn.stream.registry.StudentRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * StudentRegistry 多线程压力测试
+ * 每个线程在限定时间内随机执行按姓名读取、GPA覆盖写和年龄加1（读-改-写），
+ * 记录吞吐量和分段锁的竞争情况；结束后用年龄总和核对“读-改-写”没有丢失更新，
+ * 并可以按 {@link Result#checkTargets(double, double)} 检查吞吐量和竞争率目标。
+ */
+public class RegistryStressBenchmark {
+
+    private final int keyCount;
+    private final long durationNanos;
+    private final int writePercent;
+    private final boolean skewed;
+
+    // 防止JIT把读取结果当作死代码消除
+    private volatile double sink;
+
+    /**
+     * @param keyCount       学生数
+     * @param durationMillis 每个线程数下的运行时间
+     * @param writePercent   写操作占比(0-100)，其余为读
+     * @param skewed         为true时90%的操作集中在1%的学生上，用来观察热点竞争
+     */
+    public RegistryStressBenchmark(int keyCount, long durationMillis, int writePercent, boolean skewed) {
+        if (keyCount <= 0 || durationMillis <= 0 || writePercent < 0 || writePercent > 100) {
+            throw new IllegalArgumentException("参数不合法: keys=" + keyCount + ", duration=" + durationMillis
+                    + "ms, write=" + writePercent + "%");
+        }
+        this.keyCount = keyCount;
+        this.durationNanos = durationMillis * 1_000_000L;
+        this.writePercent = writePercent;
+        this.skewed = skewed;
+    }
+
+    public Result run(int[] threadCounts) {
+        List<Student> students = createStudents(keyCount);
+        List<Point> points = new ArrayList<>();
+        // 先用最大线程数跑一轮预热
+        measure(students, threadCounts[threadCounts.length - 1]);
+        for (int threads : threadCounts) {
+            points.add(measure(students, threads));
+        }
+        return new Result(points);
+    }
+
+    private Point measure(List<Student> students, int threadCount) {
+        StudentRegistry registry = new StudentRegistry(students);
+        String[] names = students.stream().map(Student::getName).toArray(String[]::new);
+        long initialAgeSum = registry.stream().mapToLong(Student::getAge).sum();
+
+        long[] reads = new long[threadCount];
+        long[] writes = new long[threadCount];
+        long[] increments = new long[threadCount];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int id = t;
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                awaitQuietly(start);
+                long deadline = System.nanoTime() + durationNanos;
+                long readCount = 0;
+                long writeCount = 0;
+                long incrementCount = 0;
+                double readSum = 0;
+                do {
+                    // 每64次操作检查一次时间，避免nanoTime本身成为开销
+                    for (int i = 0; i < 64; i++) {
+                        String name = names[pickKey(random)];
+                        if (random.nextInt(100) < writePercent) {
+                            if (random.nextBoolean()) {
+                                registry.updateGpa(name, 2.0 + random.nextInt(250) / 100.0);
+                            } else {
+                                registry.update(name, student -> {
+                                    student.setAge(student.getAge() + 1);
+                                    return student;
+                                });
+                                incrementCount++;
+                            }
+                            writeCount++;
+                        } else {
+                            readSum += registry.get(name).map(Student::getGpa).orElse(0.0);
+                            readCount++;
+                        }
+                    }
+                } while (System.nanoTime() < deadline);
+                reads[id] = readCount;
+                writes[id] = writeCount;
+                increments[id] = incrementCount;
+                sink = readSum;
+            }, "registry-stress-" + t);
+            worker.start();
+            workers.add(worker);
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("压力测试被中断", e);
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        long expectedIncrements = sum(increments);
+        long actualIncrements = registry.stream().mapToLong(Student::getAge).sum() - initialAgeSum;
+        return new Point(threadCount, elapsed, sum(reads), sum(writes),
+                expectedIncrements - actualIncrements, registry.getContentionStats());
+    }
+
+    private int pickKey(ThreadLocalRandom random) {
+        if (skewed && random.nextInt(10) != 0) {
+            return random.nextInt(Math.max(1, keyCount / 100));
+        }
+        return random.nextInt(keyCount);
+    }
+
+    private static List<Student> createStudents(int count) {
+        List<Student> generated = new StudentDataGenerator(42).studentList(count);
+        List<Student> students = new ArrayList<>(count);
+        for (int i = 0; i < generated.size(); i++) {
+            Student s = generated.get(i);
+            // 生成的姓名可能重复，加上序号保证每个学生一个键
+            students.add(new Student(s.getName() + "#" + i, s.getAge(), s.getMajor(), s.getGpa(), s.getGender()));
+        }
+        return students;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    /**
+     * 某个线程数下的测量结果
+     */
+    public static class Point {
+        private final int threads;
+        private final long nanos;
+        private final long reads;
+        private final long writes;
+        private final long lostUpdates;
+        private final StudentRegistry.ContentionStats contention;
+
+        Point(int threads, long nanos, long reads, long writes, long lostUpdates,
+              StudentRegistry.ContentionStats contention) {
+            this.threads = threads;
+            this.nanos = nanos;
+            this.reads = reads;
+            this.writes = writes;
+            this.lostUpdates = lostUpdates;
+            this.contention = contention;
+        }
+
+        public int getThreads() { return threads; }
+        public long getReads() { return reads; }
+        public long getWrites() { return writes; }
+
+        /** “读-改-写”丢失的更新数，正确实现应为0 */
+        public long getLostUpdates() { return lostUpdates; }
+        public StudentRegistry.ContentionStats getContention() { return contention; }
+
+        /** 每秒操作数 */
+        public double getThroughput() {
+            return nanos > 0 ? (reads + writes) * 1e9 / nanos : 0;
+        }
+    }
+
+    /**
+     * 所有线程数的测量结果
+     */
+    public static class Result {
+        private final List<Point> points;
+
+        Result(List<Point> points) {
+            this.points = Collections.unmodifiableList(points);
+        }
+
+        public List<Point> getPoints() { return points; }
+
+        public boolean hasLostUpdates() {
+            return points.stream().anyMatch(p -> p.getLostUpdates() != 0);
+        }
+
+        /**
+         * 检查每个线程数下的性能目标
+         *
+         * @param minThroughput     最低每秒操作数，0表示不检查
+         * @param maxContentionRate 写操作遇到锁竞争的最高比例(0-1)，1表示不检查
+         * @return 未达标的说明，全部达标时为空
+         */
+        public List<String> checkTargets(double minThroughput, double maxContentionRate) {
+            List<String> misses = new ArrayList<>();
+            for (Point p : points) {
+                if (p.getThroughput() < minThroughput) {
+                    misses.add(String.format(Locale.ROOT, "%d线程吞吐量 %,.0f ops/s 低于目标 %,.0f ops/s",
+                            p.getThreads(), p.getThroughput(), minThroughput));
+                }
+                double contentionRate = p.getContention().getContentionRate();
+                if (contentionRate > maxContentionRate) {
+                    misses.add(String.format(Locale.ROOT, "%d线程竞争率 %.2f%% 高于目标 %.2f%%",
+                            p.getThreads(), contentionRate * 100, maxContentionRate * 100));
+                }
+            }
+            return misses;
+        }
+
+        public String toTextTable() {
+            return points.stream()
+                    .map(p -> String.format(Locale.ROOT, "%4d线程  %,12.0f ops/s  读%,11d  写%,10d  竞争%6.2f%%  等待%7.1fµs  丢失更新%d",
+                            p.getThreads(), p.getThroughput(), p.getReads(), p.getWrites(),
+                            p.getContention().getContentionRate() * 100, p.getContention().getAverageWaitMicros(),
+                            p.getLostUpdates()))
+                    .collect(Collectors.joining("\n", "", "\n"));
+        }
+    }
+
+    /**
+     * 命令行入口
+     * 参数: [最大线程数] [每档毫秒数] [学生数] [写百分比] [uniform|skewed] [最低ops/s] [最高竞争百分比]
+     * 出现丢失更新或未达到目标时以状态码1退出
+     */
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        int keys = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        int writePercent = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        boolean skewed = args.length > 4 && "skewed".equals(args[4]);
+        double minThroughput = args.length > 5 ? Double.parseDouble(args[5]) : 0;
+        double maxContentionPercent = args.length > 6 ? Double.parseDouble(args[6]) : 100;
+
+        RegistryStressBenchmark benchmark = new RegistryStressBenchmark(keys, millis, writePercent, skewed);
+        Result result = benchmark.run(ScalingSweep.powersOfTwoUpTo(maxThreads));
+        System.out.println("StudentRegistry压力测试: " + keys + "个学生, 写" + writePercent + "%, "
+                + (skewed ? "热点分布" : "均匀分布"));
+        System.out.print(result.toTextTable());
+        boolean failed = false;
+        if (result.hasLostUpdates()) {
+            System.out.println("⚠ 检测到丢失的更新");
+            failed = true;
+        }
+        for (String miss : result.checkTargets(minThroughput, maxContentionPercent / 100)) {
+            System.out.println("⚠ 未达到目标: " + miss);
+            failed = true;
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
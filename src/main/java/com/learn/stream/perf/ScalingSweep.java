@@ -0,0 +1,282 @@
+package com.learn.stream.perf;
+
+import com.learn.stream.data.StudentDataGenerator;
+import com.learn.stream.model.Student;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 并行扩展性扫描
+ * 在 数据量 × 线程数 的网格上运行同一条Stream管道，
+ * 记录吞吐量、加速比、并行效率以及Amdahl串行比例(Karp-Flatt估计)
+ *
+ * 管道内部应使用 parallelStream()，扫描时会把它提交到指定大小的ForkJoinPool中执行，
+ * 以1个线程的耗时作为基准计算加速比。
+ *
+ * @param <T> 数据元素类型
+ */
+public class ScalingSweep<T> {
+
+    private final String pipelineName;
+    private final IntFunction<List<T>> dataFactory;
+    private final Function<List<T>, ?> pipeline;
+    private final int warmupIterations;
+    private final int measureIterations;
+
+    // 防止JIT把管道结果当作死代码消除
+    private volatile Object sink;
+
+    public ScalingSweep(String pipelineName, IntFunction<List<T>> dataFactory, Function<List<T>, ?> pipeline) {
+        this(pipelineName, dataFactory, pipeline, 3, 5);
+    }
+
+    public ScalingSweep(String pipelineName, IntFunction<List<T>> dataFactory, Function<List<T>, ?> pipeline,
+                        int warmupIterations, int measureIterations) {
+        if (measureIterations <= 0) {
+            throw new IllegalArgumentException("测量次数必须大于0: " + measureIterations);
+        }
+        this.pipelineName = pipelineName;
+        this.dataFactory = dataFactory;
+        this.pipeline = pipeline;
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = measureIterations;
+    }
+
+    /**
+     * 在给定的数据量和线程数网格上运行扫描
+     * 线程数列表中缺少1时会自动补上，用作加速比的基准
+     */
+    public Result run(int[] sizes, int[] threadCounts) {
+        int[] threads = withBaseline(threadCounts);
+        List<Point> points = new ArrayList<>();
+
+        for (int size : sizes) {
+            List<T> data = dataFactory.apply(size);
+            // 先用最大线程数跑一轮，让JIT在测量基准前完成编译，避免出现虚假的超线性加速
+            measure(data, threads[threads.length - 1]);
+            double baselineNanos = 0;
+            for (int threadCount : threads) {
+                double nanos = measure(data, threadCount);
+                if (threadCount == 1) {
+                    baselineNanos = nanos;
+                }
+                points.add(new Point(size, threadCount, nanos, baselineNanos));
+            }
+        }
+        return new Result(pipelineName, points);
+    }
+
+    /**
+     * 在1..最大线程数范围内扫描（1, 2, 4, ... 以及最大值本身）
+     */
+    public Result run(int[] sizes) {
+        return run(sizes, powersOfTwoUpTo(Runtime.getRuntime().availableProcessors()));
+    }
+
+    private double measure(List<T> data, int threadCount) {
+        ForkJoinPool pool = new ForkJoinPool(threadCount);
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                runOnce(pool, data);
+            }
+            long[] samples = new long[measureIterations];
+            for (int i = 0; i < measureIterations; i++) {
+                long start = System.nanoTime();
+                runOnce(pool, data);
+                samples[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(samples);
+            // 取中位数，减少GC等偶发干扰
+            return samples[samples.length / 2];
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void runOnce(ForkJoinPool pool, List<T> data) {
+        try {
+            sink = pool.submit(() -> pipeline.apply(data)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("扫描被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("管道执行失败: " + pipelineName, e.getCause());
+        }
+    }
+
+    static int[] powersOfTwoUpTo(int max) {
+        List<Integer> counts = new ArrayList<>();
+        for (int n = 1; n < max; n *= 2) {
+            counts.add(n);
+        }
+        counts.add(max);
+        return counts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] withBaseline(int[] threadCounts) {
+        return IntStream.concat(IntStream.of(1), Arrays.stream(threadCounts))
+                .filter(n -> n > 0)
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * 单个网格点的测量结果
+     */
+    public static class Point {
+        private final int size;
+        private final int threads;
+        private final double nanos;
+        private final double baselineNanos;
+
+        Point(int size, int threads, double nanos, double baselineNanos) {
+            this.size = size;
+            this.threads = threads;
+            this.nanos = nanos;
+            this.baselineNanos = baselineNanos;
+        }
+
+        public int getSize() { return size; }
+        public int getThreads() { return threads; }
+        public double getMillis() { return nanos / 1_000_000.0; }
+
+        /** 每秒处理的元素数 */
+        public double getThroughput() {
+            return nanos > 0 ? size * 1e9 / nanos : 0;
+        }
+
+        /** 加速比 S(p) = T(1) / T(p) */
+        public double getSpeedup() {
+            return nanos > 0 ? baselineNanos / nanos : 0;
+        }
+
+        /** 并行效率 E(p) = S(p) / p */
+        public double getEfficiency() {
+            return getSpeedup() / threads;
+        }
+
+        /**
+         * Amdahl串行比例的Karp-Flatt估计: e = (1/S - 1/p) / (1 - 1/p)
+         * 只有一个线程时没有意义，返回NaN
+         */
+        public double getSerialFraction() {
+            if (threads == 1 || getSpeedup() == 0) {
+                return Double.NaN;
+            }
+            double p = threads;
+            return (1 / getSpeedup() - 1 / p) / (1 - 1 / p);
+        }
+    }
+
+    /**
+     * 扫描结果，可导出为CSV、JSON和文本图表
+     */
+    public static class Result {
+        private final String pipelineName;
+        private final List<Point> points;
+
+        Result(String pipelineName, List<Point> points) {
+            this.pipelineName = pipelineName;
+            this.points = Collections.unmodifiableList(points);
+        }
+
+        public String getPipelineName() { return pipelineName; }
+        public List<Point> getPoints() { return points; }
+
+        public String toCsv() {
+            StringBuilder sb = new StringBuilder("pipeline,size,threads,millis,throughput,speedup,efficiency,serialFraction\n");
+            for (Point p : points) {
+                sb.append(String.format(Locale.ROOT, "%s,%d,%d,%.3f,%.1f,%.3f,%.3f,%s%n",
+                        pipelineName, p.getSize(), p.getThreads(), p.getMillis(), p.getThroughput(),
+                        p.getSpeedup(), p.getEfficiency(), formatFraction(p.getSerialFraction())));
+            }
+            return sb.toString();
+        }
+
+        public String toJson() {
+            String rows = points.stream()
+                    .map(p -> String.format(Locale.ROOT,
+                            "{\"size\":%d,\"threads\":%d,\"millis\":%.3f,\"throughput\":%.1f," +
+                            "\"speedup\":%.3f,\"efficiency\":%.3f,\"serialFraction\":%s}",
+                            p.getSize(), p.getThreads(), p.getMillis(), p.getThroughput(),
+                            p.getSpeedup(), p.getEfficiency(),
+                            Double.isNaN(p.getSerialFraction()) ? "null" : formatFraction(p.getSerialFraction())))
+                    .collect(Collectors.joining(",\n    ", "[\n    ", "\n  ]"));
+            return "{\n  \"pipeline\": \"" + pipelineName.replace("\"", "\\\"") + "\",\n  \"points\": " + rows + "\n}";
+        }
+
+        /**
+         * 每个数据量一组，用条形长度表示加速比
+         */
+        public String toTextChart() {
+            double maxSpeedup = points.stream().mapToDouble(Point::getSpeedup).max().orElse(1);
+            int barWidth = 40;
+            StringBuilder sb = new StringBuilder("扩展性曲线: " + pipelineName + "\n");
+            int currentSize = -1;
+            for (Point p : points) {
+                if (p.getSize() != currentSize) {
+                    currentSize = p.getSize();
+                    sb.append("  数据量 ").append(currentSize).append('\n');
+                }
+                int bar = (int) Math.round(p.getSpeedup() / maxSpeedup * barWidth);
+                sb.append(String.format(Locale.ROOT, "    %3d线程 |%-" + barWidth + "s| %.2fx  效率%.0f%%%n",
+                        p.getThreads(), repeat('#', bar), p.getSpeedup(), p.getEfficiency() * 100));
+            }
+            return sb.toString();
+        }
+
+        private static String formatFraction(double value) {
+            return Double.isNaN(value) ? "" : String.format(Locale.ROOT, "%.4f", value);
+        }
+
+        private static String repeat(char c, int count) {
+            char[] chars = new char[Math.max(0, count)];
+            Arrays.fill(chars, c);
+            return new String(chars);
+        }
+    }
+
+    /**
+     * 命令行入口
+     * 参数: [逗号分隔的数据量] [最大线程数] [text|csv|json]
+     */
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args[0].split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray()
+                : new int[]{10000, 100000, 1000000};
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        String format = args.length > 2 ? args[2] : "text";
+
+        StudentDataGenerator generator = new StudentDataGenerator(42);
+        ScalingSweep<Student> sweep = new ScalingSweep<>(
+                "按专业统计平均GPA",
+                generator::studentList,
+                data -> data.parallelStream()
+                        .filter(s -> s.getAge() >= 20)
+                        .collect(Collectors.groupingBy(Student::getMajor, Collectors.averagingDouble(Student::getGpa))));
+
+        Result result = sweep.run(sizes, powersOfTwoUpTo(maxThreads));
+        switch (format) {
+            case "csv":
+                System.out.print(result.toCsv());
+                break;
+            case "json":
+                System.out.println(result.toJson());
+                break;
+            default:
+                System.out.print(result.toTextChart());
+                break;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.learn.stream.registry;
+
+import com.learn.stream.model.Student;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * 可被多个线程同时读写的学生注册表，以姓名为键
+ * 数据存放在 ConcurrentHashMap 中，按姓名读取不加锁；
+ * 写操作按姓名的哈希值落到若干把锁（分段锁）之一上，不同分段的写互不阻塞，
+ * 同一学生的“读-改-写”（例如在原GPA基础上调整）在锁内完成，不会丢失更新。
+ *
+ * 注册表保存的是学生的副本，写入时总是用新对象替换旧对象而不修改旧对象，
+ * 因此读者拿到的学生不会被改到一半；读到的对象只能读，不要调用其setter。
+ * stream()/parallelStream() 是弱一致的：遍历期间的写入可能看到也可能看不到，但每个学生都是完整的。
+ */
+public class StudentRegistry {
+
+    private final ConcurrentHashMap<String, Student> students = new ConcurrentHashMap<>();
+    private final Stripe[] stripes;
+    private final int mask;
+
+    /**
+     * 分段数取CPU核数的4倍
+     */
+    public StudentRegistry() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * @param stripeCount 写锁的分段数，向上取整为2的幂
+     */
+    public StudentRegistry(int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("分段数必须大于0: " + stripeCount);
+        }
+        int size = stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+    }
+
+    public StudentRegistry(Collection<? extends Student> initialData) {
+        this();
+        for (Student student : initialData) {
+            students.put(student.getName(), new Student(student));
+        }
+    }
+
+    /**
+     * 按姓名读取，不加锁
+     */
+    public Optional<Student> get(String name) {
+        return Optional.ofNullable(students.get(name));
+    }
+
+    public boolean contains(String name) {
+        return students.containsKey(name);
+    }
+
+    public int size() {
+        return students.size();
+    }
+
+    /**
+     * 插入或整体替换学生
+     *
+     * @return 被替换的旧记录
+     */
+    public Optional<Student> upsert(Student student) {
+        Student copy = new Student(student);
+        Stripe stripe = lock(copy.getName());
+        try {
+            return Optional.ofNullable(students.put(copy.getName(), copy));
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * 更新已有学生的GPA
+     *
+     * @return 学生不存在时返回false
+     */
+    public boolean updateGpa(String name, double gpa) {
+        return update(name, student -> {
+            student.setGpa(gpa);
+            return student;
+        }).isPresent();
+    }
+
+    /**
+     * 在分段锁内对学生做“读-改-写”，operator收到的是副本，可以直接修改后返回
+     *
+     * @return 更新后的学生，学生不存在时为空
+     */
+    public Optional<Student> update(String name, UnaryOperator<Student> operator) {
+        Stripe stripe = lock(name);
+        try {
+            Student current = students.get(name);
+            if (current == null) {
+                return Optional.empty();
+            }
+            Student updated = operator.apply(new Student(current));
+            if (!name.equals(updated.getName())) {
+                throw new IllegalArgumentException("update不能修改姓名: " + name + " -> " + updated.getName());
+            }
+            students.put(name, updated);
+            return Optional.of(updated);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public Optional<Student> remove(String name) {
+        Stripe stripe = lock(name);
+        try {
+            return Optional.ofNullable(students.remove(name));
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * 弱一致的遍历，不阻塞写入
+     */
+    public Stream<Student> stream() {
+        return students.values().stream();
+    }
+
+    public Stream<Student> parallelStream() {
+        return students.values().parallelStream();
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * 写锁的竞争统计
+     */
+    public ContentionStats getContentionStats() {
+        long[] writesPerStripe = new long[stripes.length];
+        long contended = 0;
+        long waitNanos = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            writesPerStripe[i] = stripes[i].acquisitions.sum();
+            contended += stripes[i].contended.sum();
+            waitNanos += stripes[i].waitNanos.sum();
+        }
+        return new ContentionStats(writesPerStripe, contended, waitNanos);
+    }
+
+    public void resetContentionStats() {
+        for (Stripe stripe : stripes) {
+            stripe.acquisitions.reset();
+            stripe.contended.reset();
+            stripe.waitNanos.reset();
+        }
+    }
+
+    private Stripe lock(String name) {
+        Stripe stripe = stripes[spread(name.hashCode()) & mask];
+        stripe.acquisitions.increment();
+        if (!stripe.lock.tryLock()) {
+            // 锁被占用：记录一次竞争和等待时间
+            long start = System.nanoTime();
+            stripe.lock.lock();
+            stripe.contended.increment();
+            stripe.waitNanos.add(System.nanoTime() - start);
+        }
+        return stripe;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final LongAdder acquisitions = new LongAdder();
+        final LongAdder contended = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+    }
+
+    /**
+     * 写锁竞争统计
+     */
+    public static final class ContentionStats {
+        private final long[] writesPerStripe;
+        private final long writes;
+        private final long contendedWrites;
+        private final long waitNanos;
+
+        ContentionStats(long[] writesPerStripe, long contendedWrites, long waitNanos) {
+            this.writesPerStripe = writesPerStripe;
+            long total = 0;
+            for (long count : writesPerStripe) {
+                total += count;
+            }
+            this.writes = total;
+            this.contendedWrites = contendedWrites;
+            this.waitNanos = waitNanos;
+        }
+
+        public long getWrites() { return writes; }
+        public long getContendedWrites() { return contendedWrites; }
+        public long getWaitNanos() { return waitNanos; }
+
+        /**
+         * 需要等待锁的写操作比例
+         */
+        public double getContentionRate() {
+            return writes == 0 ? 0 : (double) contendedWrites / writes;
+        }
+
+        /**
+         * 发生竞争时的平均等待时间（微秒）
+         */
+        public double getAverageWaitMicros() {
+            return contendedWrites == 0 ? 0 : waitNanos / 1000.0 / contendedWrites;
+        }
+
+        /**
+         * 最繁忙分段的写入量 / 平均每段写入量，1表示完全均匀
+         */
+        public double getHottestStripeRatio() {
+            long max = 0;
+            for (long count : writesPerStripe) {
+                max = Math.max(max, count);
+            }
+            return writes == 0 ? 0 : max * (double) writesPerStripe.length / writes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("写入%d次, 竞争%d次(%.2f%%), 平均等待%.1fµs, 最热分段/平均=%.2f",
+                    writes, contendedWrites, getContentionRate() * 100, getAverageWaitMicros(),
+                    getHottestStripeRatio());
+        }
+    }
+}
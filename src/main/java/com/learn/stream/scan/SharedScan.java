@@ -0,0 +1,183 @@
+package com.learn.stream.scan;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * 共享扫描：一次遍历同时计算多个报表
+ * 对同一个列表分别执行 N 个 collect，数据会被从内存中读取 N 遍。
+ * 本类把注册的 N 个Collector组合成一个Collector，每个元素只读取一次、依次交给所有Collector，
+ * 并行执行时每个叶子任务各持有一组容器，最后按Collector逐个合并。
+ *
+ * 用法：
+ * <pre>
+ * SharedScan&lt;Student&gt; scan = new SharedScan&lt;&gt;();
+ * SharedScan.Handle&lt;Long&gt; count = scan.add(Collectors.counting());
+ * SharedScan.Handle&lt;Map&lt;String, Long&gt;&gt; byMajor = scan.add(Collectors.groupingBy(Student::getMajor, Collectors.counting()));
+ * SharedScan.Results results = scan.run(students, true);
+ * results.get(byMajor);
+ * </pre>
+ *
+ * 注册完成后可以被多个线程同时运行。
+ *
+ * @param <T> 元素类型
+ */
+public class SharedScan<T> {
+
+    private final List<Collector<? super T, Object, ?>> collectors = new ArrayList<>();
+
+    /**
+     * 注册一个Collector，返回用于读取结果的句柄
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <R> Handle<R> add(Collector<? super T, ?, R> collector) {
+        collectors.add((Collector<? super T, Object, ?>) collector);
+        return new Handle<>(this, collectors.size() - 1);
+    }
+
+    /**
+     * 注册一个只统计满足条件的元素的Collector，相当于先filter再collect
+     */
+    public <A, R> Handle<R> add(Predicate<? super T> filter, Collector<? super T, A, R> collector) {
+        BiConsumer<A, ? super T> accumulator = collector.accumulator();
+        return add(Collector.of(
+                collector.supplier(),
+                (A container, T element) -> {
+                    if (filter.test(element)) {
+                        accumulator.accept(container, element);
+                    }
+                },
+                collector.combiner(),
+                collector.finisher(),
+                collector.characteristics().stream()
+                        .filter(characteristic -> characteristic != Collector.Characteristics.IDENTITY_FINISH)
+                        .toArray(Collector.Characteristics[]::new)));
+    }
+
+    public synchronized int size() {
+        return collectors.size();
+    }
+
+    /**
+     * 遍历一次source，计算所有已注册的Collector
+     */
+    public Results run(Collection<? extends T> source, boolean parallel) {
+        return run(parallel ? source.parallelStream() : source.stream());
+    }
+
+    /**
+     * 用source计算所有已注册的Collector，是否并行由source决定
+     */
+    public Results run(Stream<? extends T> source) {
+        return source.collect(collector());
+    }
+
+    /**
+     * 组合后的Collector，可用于任意Stream
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Collector<T, ?, Results> collector() {
+        List<Collector<? super T, Object, ?>> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(collectors);
+        }
+        int n = snapshot.size();
+        Supplier<Object>[] suppliers = new Supplier[n];
+        BiConsumer<Object, ? super T>[] accumulators = new BiConsumer[n];
+        BinaryOperator<Object>[] combiners = new BinaryOperator[n];
+        Function<Object, ?>[] finishers = new Function[n];
+        // 所有Collector都不关心顺序时，组合后的Collector也不关心顺序
+        Set<Collector.Characteristics> characteristics = EnumSet.of(Collector.Characteristics.UNORDERED);
+        for (int i = 0; i < n; i++) {
+            Collector<? super T, Object, ?> collector = snapshot.get(i);
+            suppliers[i] = collector.supplier();
+            accumulators[i] = collector.accumulator();
+            combiners[i] = collector.combiner();
+            finishers[i] = collector.finisher();
+            if (!collector.characteristics().contains(Collector.Characteristics.UNORDERED)) {
+                characteristics.clear();
+            }
+        }
+
+        return Collector.of(
+                () -> {
+                    Object[] containers = new Object[n];
+                    for (int i = 0; i < n; i++) {
+                        containers[i] = suppliers[i].get();
+                    }
+                    return containers;
+                },
+                (containers, element) -> {
+                    for (int i = 0; i < n; i++) {
+                        accumulators[i].accept(containers[i], element);
+                    }
+                },
+                (left, right) -> {
+                    for (int i = 0; i < n; i++) {
+                        left[i] = combiners[i].apply(left[i], right[i]);
+                    }
+                    return left;
+                },
+                containers -> {
+                    Object[] values = new Object[n];
+                    for (int i = 0; i < n; i++) {
+                        values[i] = finishers[i].apply(containers[i]);
+                    }
+                    return new Results(this, values);
+                },
+                characteristics.toArray(new Collector.Characteristics[0]));
+    }
+
+    /**
+     * 一个已注册Collector的结果句柄
+     *
+     * @param <R> 结果类型
+     */
+    public static final class Handle<R> {
+        private final SharedScan<?> owner;
+        private final int index;
+
+        private Handle(SharedScan<?> owner, int index) {
+            this.owner = owner;
+            this.index = index;
+        }
+    }
+
+    /**
+     * 一次扫描的所有结果
+     */
+    public static final class Results {
+        private final SharedScan<?> owner;
+        private final Object[] values;
+
+        private Results(SharedScan<?> owner, Object[] values) {
+            this.owner = owner;
+            this.values = values;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <R> R get(Handle<R> handle) {
+            if (handle.owner != owner) {
+                throw new IllegalArgumentException("句柄不属于产生该结果的SharedScan");
+            }
+            if (handle.index >= values.length) {
+                throw new IllegalStateException("该Collector在本次扫描之后才注册");
+            }
+            return (R) values[handle.index];
+        }
+
+        public int size() {
+            return values.length;
+        }
+    }
+}
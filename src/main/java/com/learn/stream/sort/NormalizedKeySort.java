@@ -0,0 +1,324 @@
+package com.learn.stream.sort;
+
+import com.learn.stream.collections.ObjectLongMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * 归一化键多列排序
+ * sorted(Comparator.comparing(...).thenComparing(...)) 排序n个元素要调用O(n log n)次多层lambda比较器；
+ * 这里先把每行的各个排序列编码进一个long（前面的列在高位），再对 (键, 行号) 做LSD基数排序，
+ * 整个排序过程不调用比较器，每8位一趟，趟数只取决于键的总位数。
+ *
+ * 支持的列：
+ * - 整数列：给定取值范围，按范围宽度占用位数
+ * - 定点数列：例如GPA保留2位小数后按整数编码
+ * - 字典列：字符串先按给定顺序（如 CollationKeyCache）排好得到名次，再按名次编码
+ * 降序列在编码时取反，因此一趟排序就能混合升降序。
+ *
+ * 排序是稳定的：键相同的行保持输入顺序，与 Stream.sorted 一致。
+ * 数据量较大且要求并行时，每趟的计数和分发都按数据块并行执行（在当前ForkJoinPool中）。
+ * 配置方法返回this以便链式调用；配置完成后可以在多个线程中同时使用。
+ *
+ * @param <T> 元素类型
+ */
+public class NormalizedKeySort<T> {
+
+    private static final int RADIX_BITS = 8;
+    private static final int BUCKETS = 1 << RADIX_BITS;
+    private static final int MIN_PARALLEL_SIZE = 1 << 16;
+    private static final int MIN_CHUNK_SIZE = 1 << 14;
+
+    private final List<Column<T>> columns = new ArrayList<>();
+
+    /**
+     * 整数列，取值必须在 [min, max] 内
+     */
+    public NormalizedKeySort<T> thenByInt(ToIntFunction<? super T> extractor, int min, int max, boolean descending) {
+        columns.add(new RangeColumn<>(row -> extractor.applyAsInt(row), min, max, descending));
+        return this;
+    }
+
+    /**
+     * 定点数列，按保留decimals位小数后的整数编码，取值必须在 [min, max] 内
+     */
+    public NormalizedKeySort<T> thenByFixedPoint(ToDoubleFunction<? super T> extractor, double min, double max,
+                                                 int decimals, boolean descending) {
+        if (decimals < 0 || decimals > 9) {
+            throw new IllegalArgumentException("小数位数必须在0到9之间: " + decimals);
+        }
+        double factor = Math.pow(10, decimals);
+        columns.add(new RangeColumn<>(row -> {
+            double value = extractor.applyAsDouble(row);
+            if (Double.isNaN(value)) {
+                throw new IllegalArgumentException("排序列的值不能是NaN");
+            }
+            return Math.round(value * factor);
+        }, Math.round(min * factor), Math.round(max * factor), descending));
+        return this;
+    }
+
+    /**
+     * 字典编码的字符串列，按order排序，值不能为null
+     */
+    public NormalizedKeySort<T> thenByDictionary(Function<? super T, String> extractor,
+                                                 Comparator<? super String> order, boolean descending) {
+        columns.add(new DictionaryColumn<>(extractor, order, descending));
+        return this;
+    }
+
+    /**
+     * 顺序排序，返回新列表
+     */
+    public List<T> sort(Collection<? extends T> rows) {
+        return sort(rows, false);
+    }
+
+    /**
+     * 并行排序，返回新列表
+     */
+    public List<T> parallelSort(Collection<? extends T> rows) {
+        return sort(rows, true);
+    }
+
+    private List<T> sort(Collection<? extends T> rows, boolean parallel) {
+        List<T> list = new ArrayList<>(rows);
+        int[] permutation = permutation(list, parallel);
+        List<T> sorted = new ArrayList<>(permutation.length);
+        for (int index : permutation) {
+            sorted.add(list.get(index));
+        }
+        return sorted;
+    }
+
+    /**
+     * 排序后的行号：第i个位置是排在第i位的行在rows中的下标
+     */
+    public int[] permutation(List<? extends T> rows, boolean parallel) {
+        if (columns.isEmpty()) {
+            throw new IllegalStateException("没有配置排序列");
+        }
+        int n = rows.size();
+        boolean parallelRun = parallel && n >= MIN_PARALLEL_SIZE;
+        List<Encoder<T>> encoders = new ArrayList<>(columns.size());
+        int totalBits = 0;
+        for (Column<T> column : columns) {
+            Encoder<T> encoder = column.prepare(rows, parallelRun);
+            encoders.add(encoder);
+            totalBits += encoder.bits;
+        }
+        if (totalBits > Long.SIZE) {
+            throw new IllegalStateException("排序键共需要" + totalBits + "位，超过了64位");
+        }
+        long[] keys = new long[n];
+        IntStream range = IntStream.range(0, n);
+        (parallelRun ? range.parallel() : range).forEach(i -> {
+            T row = rows.get(i);
+            long key = 0;
+            for (Encoder<T> encoder : encoders) {
+                key = (key << encoder.bits) | encoder.encode(row);
+            }
+            keys[i] = key;
+        });
+        return radixSort(keys, totalBits, parallelRun);
+    }
+
+    /**
+     * 按keys的低bits位做稳定的LSD基数排序，返回行号排列
+     */
+    static int[] radixSort(long[] keys, int bits, boolean parallel) {
+        int n = keys.length;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        long[] keyBuffer = new long[n];
+        int[] orderBuffer = new int[n];
+        int chunks = parallel ? chunkCount(n) : 1;
+        for (int shift = 0; shift < bits; shift += RADIX_BITS) {
+            boolean moved = chunks > 1
+                    ? parallelPass(keys, order, keyBuffer, orderBuffer, shift, chunks)
+                    : sequentialPass(keys, order, keyBuffer, orderBuffer, shift);
+            if (moved) {
+                long[] k = keys;
+                keys = keyBuffer;
+                keyBuffer = k;
+                int[] o = order;
+                order = orderBuffer;
+                orderBuffer = o;
+            }
+        }
+        return order;
+    }
+
+    private static boolean sequentialPass(long[] keys, int[] order, long[] keysOut, int[] orderOut, int shift) {
+        int n = keys.length;
+        int[] offsets = new int[BUCKETS];
+        for (long key : keys) {
+            offsets[(int) (key >>> shift) & (BUCKETS - 1)]++;
+        }
+        // 这一趟所有键的数位都相同，不需要移动
+        for (int count : offsets) {
+            if (count == n) {
+                return false;
+            }
+        }
+        int sum = 0;
+        for (int digit = 0; digit < BUCKETS; digit++) {
+            int count = offsets[digit];
+            offsets[digit] = sum;
+            sum += count;
+        }
+        for (int i = 0; i < n; i++) {
+            int position = offsets[(int) (keys[i] >>> shift) & (BUCKETS - 1)]++;
+            keysOut[position] = keys[i];
+            orderOut[position] = order[i];
+        }
+        return true;
+    }
+
+    private static boolean parallelPass(long[] keys, int[] order, long[] keysOut, int[] orderOut,
+                                        int shift, int chunks) {
+        int n = keys.length;
+        int chunkSize = (n + chunks - 1) / chunks;
+        int[][] offsets = new int[chunks][BUCKETS];
+        // 每个数据块各自计数
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int[] counts = offsets[c];
+            for (int i = c * chunkSize, end = Math.min(n, i + chunkSize); i < end; i++) {
+                counts[(int) (keys[i] >>> shift) & (BUCKETS - 1)]++;
+            }
+        });
+        // 按 数位优先、块次之 的顺序求前缀和，保证稳定
+        int sum = 0;
+        for (int digit = 0; digit < BUCKETS; digit++) {
+            int digitTotal = 0;
+            for (int c = 0; c < chunks; c++) {
+                int count = offsets[c][digit];
+                offsets[c][digit] = sum + digitTotal;
+                digitTotal += count;
+            }
+            if (digitTotal == n) {
+                return false;
+            }
+            sum += digitTotal;
+        }
+        // 各块写入的位置互不重叠，可以并行分发
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int[] positions = offsets[c];
+            for (int i = c * chunkSize, end = Math.min(n, i + chunkSize); i < end; i++) {
+                int position = positions[(int) (keys[i] >>> shift) & (BUCKETS - 1)]++;
+                keysOut[position] = keys[i];
+                orderOut[position] = order[i];
+            }
+        });
+        return true;
+    }
+
+    private static int chunkCount(int n) {
+        int parallelism = ForkJoinTask.inForkJoinPool()
+                ? ForkJoinTask.getPool().getParallelism()
+                : ForkJoinPool.getCommonPoolParallelism();
+        return Math.max(1, Math.min(parallelism * 4, n / MIN_CHUNK_SIZE));
+    }
+
+    private static int bitsFor(long maxValue) {
+        return Long.SIZE - Long.numberOfLeadingZeros(maxValue);
+    }
+
+    private interface Column<T> {
+        /**
+         * 为一次排序做准备（例如建立字典），返回编码器
+         */
+        Encoder<T> prepare(List<? extends T> rows, boolean parallel);
+    }
+
+    private abstract static class Encoder<T> {
+        final int bits;
+
+        Encoder(int bits) {
+            this.bits = bits;
+        }
+
+        abstract long encode(T row);
+    }
+
+    private interface ToLong<T> {
+        long apply(T row);
+    }
+
+    private static final class RangeColumn<T> implements Column<T> {
+        private final ToLong<? super T> extractor;
+        private final long min;
+        private final long max;
+        private final boolean descending;
+
+        RangeColumn(ToLong<? super T> extractor, long min, long max, boolean descending) {
+            if (min > max) {
+                throw new IllegalArgumentException("取值范围不合法: [" + min + ", " + max + "]");
+            }
+            this.extractor = extractor;
+            this.min = min;
+            this.max = max;
+            this.descending = descending;
+        }
+
+        @Override
+        public Encoder<T> prepare(List<? extends T> rows, boolean parallel) {
+            return new Encoder<T>(bitsFor(max - min)) {
+                @Override
+                long encode(T row) {
+                    long value = extractor.apply(row);
+                    if (value < min || value > max) {
+                        throw new IllegalArgumentException("排序列的值" + value + "超出范围[" + min + ", " + max + "]");
+                    }
+                    return descending ? max - value : value - min;
+                }
+            };
+        }
+    }
+
+    private static final class DictionaryColumn<T> implements Column<T> {
+        private final Function<? super T, String> extractor;
+        private final Comparator<? super String> order;
+        private final boolean descending;
+
+        DictionaryColumn(Function<? super T, String> extractor, Comparator<? super String> order, boolean descending) {
+            this.extractor = extractor;
+            this.order = order;
+            this.descending = descending;
+        }
+
+        @Override
+        public Encoder<T> prepare(List<? extends T> rows, boolean parallel) {
+            Stream<? extends T> stream = parallel ? rows.parallelStream() : rows.stream();
+            Set<String> distinct = stream.map(extractor).collect(Collectors.toSet());
+            String[] values = distinct.toArray(new String[0]);
+            Arrays.sort(values, order);
+            ObjectLongMap<String> codes = new ObjectLongMap<>(values.length);
+            long last = values.length - 1;
+            for (int rank = 0; rank < values.length; rank++) {
+                codes.put(values[rank], descending ? last - rank : rank);
+            }
+            return new Encoder<T>(bitsFor(Math.max(0, last))) {
+                @Override
+                long encode(T row) {
+                    return codes.getOrDefault(extractor.apply(row), -1L);
+                }
+            };
+        }
+    }
+}